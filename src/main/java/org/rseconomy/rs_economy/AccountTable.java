@@ -0,0 +1,394 @@
+/*
+ * Copyright (c) 2025 Rosti Studios. All rights reserved.
+ * Licensed under the Rosti Studios Minecraft Mod License (RSMML).
+ * For more information, see the LICENSE file in the project root
+ * or contact us via Discord: https://dsc.gg/rosti-studios
+ */
+package org.rseconomy.rs_economy;
+
+import java.util.UUID;
+import java.util.random.RandomGenerator;
+
+/**
+ * Open-addressing hash table mapping player UUIDs to balances in minor units.
+ * Keys are stored as the two raw longs of the UUID and values as primitive longs,
+ * so lookups and updates neither box nor allocate. Each account costs 24 bytes of
+ * slot storage instead of a HashMap node, a UUID and a boxed Double (~88 bytes).
+ * <p>
+ * This class is not thread-safe.
+ */
+public class AccountTable {
+    private static final int DEFAULT_CAPACITY = 16;
+    /** Slots drawn per sampled account before falling back to scanning forward. */
+    private static final int SAMPLE_DRAWS = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /** Interleaved key storage: slot i holds the most significant bits at 2i and the least at 2i + 1. */
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int maxFill;
+    private int size;
+
+    // The nil UUID (0, 0) marks free slots, so it is kept outside the table.
+    private boolean hasNilKey;
+    private long nilValue;
+
+    /**
+     * Constructs an empty AccountTable.
+     */
+    public AccountTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty AccountTable sized for the given number of accounts.
+     *
+     * @param expectedAccounts The number of accounts the table should hold without resizing.
+     */
+    public AccountTable(int expectedAccounts) {
+        allocate(capacityFor(expectedAccounts));
+    }
+
+    /**
+     * Retrieves the balance stored for an account.
+     *
+     * @param playerId     The UUID of the player.
+     * @param defaultValue The value to return if the account is not present.
+     * @return The stored balance, or defaultValue if not found.
+     */
+    public long get(UUID playerId, long defaultValue) {
+        return get(playerId.getMostSignificantBits(), playerId.getLeastSignificantBits(), defaultValue);
+    }
+
+    /**
+     * Retrieves the balance stored for an account given the raw UUID bits.
+     *
+     * @param most         The most significant bits of the UUID.
+     * @param least        The least significant bits of the UUID.
+     * @param defaultValue The value to return if the account is not present.
+     * @return The stored balance, or defaultValue if not found.
+     */
+    public long get(long most, long least, long defaultValue) {
+        if (most == 0 && least == 0) {
+            return hasNilKey ? nilValue : defaultValue;
+        }
+        // Reads each array once and bounds the probe so that a racing writer can at worst
+        // produce a stale value, never an exception; ConcurrentAccountTable relies on this
+        // for its optimistic reads and validates the result afterwards.
+        long[] k = keys;
+        long[] v = values;
+        int m = (k.length >> 1) - 1;
+        int slot = hash(most, least) & m;
+        for (int probes = 0; probes <= m; probes++) {
+            long km = k[slot << 1];
+            long kl = k[(slot << 1) + 1];
+            if (km == most && kl == least) {
+                return slot < v.length ? v[slot] : defaultValue;
+            }
+            if (km == 0 && kl == 0) {
+                return defaultValue;
+            }
+            slot = (slot + 1) & m;
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Checks whether an account is present in the table.
+     *
+     * @param playerId The UUID of the player.
+     * @return True if the account is present.
+     */
+    public boolean containsKey(UUID playerId) {
+        return containsKey(playerId.getMostSignificantBits(), playerId.getLeastSignificantBits());
+    }
+
+    /**
+     * Checks whether an account is present in the table given the raw UUID bits.
+     *
+     * @param most  The most significant bits of the UUID.
+     * @param least The least significant bits of the UUID.
+     * @return True if the account is present.
+     */
+    public boolean containsKey(long most, long least) {
+        if (most == 0 && least == 0) {
+            return hasNilKey;
+        }
+        return find(most, least) >= 0;
+    }
+
+    /**
+     * Stores a balance for an account, replacing any previous value.
+     *
+     * @param playerId The UUID of the player.
+     * @param value    The balance to store.
+     */
+    public void put(UUID playerId, long value) {
+        put(playerId.getMostSignificantBits(), playerId.getLeastSignificantBits(), value);
+    }
+
+    /**
+     * Stores a balance for an account given the raw UUID bits.
+     *
+     * @param most  The most significant bits of the UUID.
+     * @param least The least significant bits of the UUID.
+     * @param value The balance to store.
+     */
+    public void put(long most, long least, long value) {
+        if (most == 0 && least == 0) {
+            if (!hasNilKey) {
+                hasNilKey = true;
+                size++;
+            }
+            nilValue = value;
+            return;
+        }
+        int slot = hash(most, least) & mask;
+        while (true) {
+            long m = keys[slot << 1];
+            long l = keys[(slot << 1) + 1];
+            if (m == 0 && l == 0) {
+                break;
+            }
+            if (m == most && l == least) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot << 1] = most;
+        keys[(slot << 1) + 1] = least;
+        values[slot] = value;
+        if (++size > maxFill) {
+            allocateAndRehash(capacityFor(size + 1));
+        }
+    }
+
+    /**
+     * Removes an account from the table.
+     *
+     * @param playerId The UUID of the player.
+     * @return True if the account was present.
+     */
+    public boolean remove(UUID playerId) {
+        return remove(playerId.getMostSignificantBits(), playerId.getLeastSignificantBits());
+    }
+
+    /**
+     * Removes an account from the table given the raw UUID bits.
+     *
+     * @param most  The most significant bits of the UUID.
+     * @param least The least significant bits of the UUID.
+     * @return True if the account was present.
+     */
+    public boolean remove(long most, long least) {
+        if (most == 0 && least == 0) {
+            if (!hasNilKey) {
+                return false;
+            }
+            hasNilKey = false;
+            nilValue = 0;
+            size--;
+            return true;
+        }
+        int slot = find(most, least);
+        if (slot < 0) {
+            return false;
+        }
+        shiftKeys(slot);
+        size--;
+        return true;
+    }
+
+    /**
+     * Gets the number of accounts in the table.
+     *
+     * @return The number of accounts.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all accounts from the table, keeping the current capacity.
+     */
+    public void clear() {
+        java.util.Arrays.fill(keys, 0L);
+        java.util.Arrays.fill(values, 0L);
+        hasNilKey = false;
+        nilValue = 0;
+        size = 0;
+    }
+
+    /**
+     * Visits every account in the table without allocating UUID objects.
+     *
+     * @param consumer The consumer receiving the raw UUID bits and balance of each account.
+     */
+    public void forEach(EntryConsumer consumer) {
+        if (hasNilKey) {
+            consumer.accept(0L, 0L, nilValue);
+        }
+        for (int slot = 0; slot < values.length; slot++) {
+            long most = keys[slot << 1];
+            long least = keys[(slot << 1) + 1];
+            if (most != 0 || least != 0) {
+                consumer.accept(most, least, values[slot]);
+            }
+        }
+    }
+
+    /**
+     * Visits limit accounts picked independently and uniformly: slots are drawn from the
+     * random generator until one holds an account. Gives a cheap random sample of the
+     * table without a full scan. An account may be visited more than once.
+     *
+     * @param random   The generator the starting slots are drawn from.
+     * @param limit    The number of accounts to visit; none if the table is empty.
+     * @param consumer The consumer receiving the raw UUID bits and balance of each visited account.
+     */
+    void sample(RandomGenerator random, int limit, EntryConsumer consumer) {
+        if (size == 0) {
+            return;
+        }
+        // The nil key has no slot; when present it is one extra outcome, as likely as any slot
+        int outcomes = mask + 1 + (hasNilKey ? 1 : 0);
+        for (int n = 0; n < limit; n++) {
+            int slot = random.nextInt(outcomes);
+            // Redraw empty slots so every account is equally likely; scan only if the table is sparse
+            for (int tries = 1; slot <= mask && isFree(slot) && tries < SAMPLE_DRAWS; tries++) {
+                slot = random.nextInt(outcomes);
+            }
+            if (slot > mask || hasNilKey && size == 1) {
+                consumer.accept(0L, 0L, nilValue);
+                continue;
+            }
+            while (isFree(slot)) {
+                slot = (slot + 1) & mask;
+            }
+            consumer.accept(keys[slot << 1], keys[(slot << 1) + 1], values[slot]);
+        }
+    }
+
+    private boolean isFree(int slot) {
+        return keys[slot << 1] == 0 && keys[(slot << 1) + 1] == 0;
+    }
+
+    /**
+     * Receives the entries of an AccountTable.
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(long most, long least, long value);
+    }
+
+    /**
+     * Finds the slot holding the given key.
+     *
+     * @return The slot index, or -1 if the key is not present.
+     */
+    private int find(long most, long least) {
+        int slot = hash(most, least) & mask;
+        while (true) {
+            long m = keys[slot << 1];
+            long l = keys[(slot << 1) + 1];
+            if (m == most && l == least) {
+                return slot;
+            }
+            if (m == 0 && l == 0) {
+                return -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Removes the entry at the given slot and shifts later entries of its probe
+     * sequence back, so no tombstones are needed.
+     */
+    private void shiftKeys(int slot) {
+        int last;
+        while (true) {
+            last = slot;
+            slot = (slot + 1) & mask;
+            long m;
+            long l;
+            while (true) {
+                m = keys[slot << 1];
+                l = keys[(slot << 1) + 1];
+                if (m == 0 && l == 0) {
+                    keys[last << 1] = 0;
+                    keys[(last << 1) + 1] = 0;
+                    values[last] = 0;
+                    return;
+                }
+                int home = hash(m, l) & mask;
+                if (last <= slot ? (last >= home || home > slot) : (last >= home && home > slot)) {
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[last << 1] = m;
+            keys[(last << 1) + 1] = l;
+            values[last] = values[slot];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity << 1];
+        values = new long[capacity];
+        mask = capacity - 1;
+        maxFill = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void allocateAndRehash(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            long most = oldKeys[i << 1];
+            long least = oldKeys[(i << 1) + 1];
+            if (most == 0 && least == 0) {
+                continue;
+            }
+            int slot = hash(most, least) & mask;
+            while (keys[slot << 1] != 0 || keys[(slot << 1) + 1] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot << 1] = most;
+            keys[(slot << 1) + 1] = least;
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private static int capacityFor(int expected) {
+        int needed = (int) Math.ceil(Math.max(expected, 1) / (double) LOAD_FACTOR);
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity < needed) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Mixes both halves of a UUID into a well-distributed 64-bit hash.
+     *
+     * @param most  The most significant bits of the UUID.
+     * @param least The least significant bits of the UUID.
+     * @return The mixed hash.
+     */
+    static long mix(long most, long least) {
+        long h = most * 0x9E3779B97F4A7C15L ^ least;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static int hash(long most, long least) {
+        return (int) mix(most, least);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2025 Rosti Studios. All rights reserved.
+ * Licensed under the Rosti Studios Minecraft Mod License (RSMML).
+ * For more information, see the LICENSE file in the project root
+ * or contact us via Discord: https://dsc.gg/rosti-studios
+ */
+package org.rseconomy.rs_economy;
+
+import com.mojang.logging.LogUtils;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtUtils;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Encodes and writes EconomyData snapshots on a background thread, so the server
+ * thread only pays for copying the data. Files are written in the same format as
+ * vanilla saved data, to a temporary file that is then renamed over the target, so
+ * a crash mid-write leaves the previous file intact. The temporary file is forced to
+ * disk before the rename and the directory after it, so once a write has completed the
+ * journal records it covers may be deleted even if the machine loses power. Writes run
+ * one at a time in submission order.
+ */
+public class AsyncEconomySaver {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "RSEconomy-Save");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean failed = new AtomicBoolean();
+
+    /**
+     * Queues a snapshot to be written.
+     *
+     * @param target   The saved data file to replace.
+     * @param snapshot The snapshot to write.
+     * @param onError  Run on the writer thread if the write fails.
+     */
+    public void write(Path target, EconomySnapshot snapshot, Runnable onError) {
+        executor.execute(() -> {
+            try {
+                CompoundTag root = new CompoundTag();
+                root.put("data", snapshot.write(new CompoundTag()));
+                NbtUtils.addCurrentDataVersion(root);
+                Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+                try {
+                    NbtIo.writeCompressed(root, temp);
+                    try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                        channel.force(true);
+                    }
+                    try {
+                        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                    } catch (AtomicMoveNotSupportedException e) {
+                        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    forceDirectory(target.getParent());
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.error("Failed to save economy data to {}: {}", target, e.getMessage(), e);
+                failed.set(true);
+                onError.run();
+            }
+        });
+    }
+
+    /**
+     * Forces a directory's entries to disk, so a rename in it survives a power loss.
+     * Not every platform can open a directory for this; there the rename is left to the
+     * file system.
+     */
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            LOGGER.debug("Cannot force directory {} to disk: {}", directory, e.getMessage());
+        }
+    }
+
+    /**
+     * Waits until every write queued so far has finished.
+     *
+     * @return True if all writes since the previous call succeeded.
+     */
+    public boolean await() {
+        try {
+            executor.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            return false;
+        }
+        return !failed.getAndSet(false);
+    }
+
+    /**
+     * Finishes all queued writes and stops the writer thread.
+     */
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOGGER.error("Timed out waiting for economy data to be saved");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2025 Rosti Studios. All rights reserved.
+ * Licensed under the Rosti Studios Minecraft Mod License (RSMML).
+ * For more information, see the LICENSE file in the project root
+ * or contact us via Discord: https://dsc.gg/rosti-studios
+ */
+package org.rseconomy.rs_economy;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Approximate distribution of all balances in constant memory, for percentile and
+ * quantile queries without touching the ranking.
+ * <p>
+ * Positive balances are counted in logarithmic buckets whose bounds grow by 2% each
+ * (the bucketing of a DDSketch), so any quantile is estimated within 1% of the true
+ * balance; balances of zero or less share one bucket. Unlike sampling sketches such as
+ * KLL or t-digest, a bucket count can be decremented, so a balance change moves one
+ * account between buckets exactly. Histograms are merged by adding their counts.
+ * About 2200 buckets cover the whole long range, roughly 17 KB.
+ * <p>
+ * Counts are atomic, so updates may come from any thread; queries see each bucket
+ * consistently but not all buckets at one instant.
+ */
+public class BalanceHistogram {
+    private static final double GAMMA = 1.02;
+    private static final double INV_LOG_GAMMA = 1.0 / Math.log(GAMMA);
+    private static final int BUCKETS = index(Long.MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Counts an account.
+     *
+     * @param amount The account's balance in minor units.
+     */
+    public void add(long amount) {
+        counts.incrementAndGet(index(amount));
+    }
+
+    /**
+     * Moves an account from one balance to another.
+     *
+     * @param oldAmount The previous balance in minor units.
+     * @param newAmount The new balance in minor units.
+     */
+    public void move(long oldAmount, long newAmount) {
+        int from = index(oldAmount);
+        int to = index(newAmount);
+        if (from != to) {
+            counts.decrementAndGet(from);
+            counts.incrementAndGet(to);
+        }
+    }
+
+    /**
+     * Removes all counts.
+     */
+    public void clear() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0L);
+        }
+    }
+
+    /**
+     * Adds the counts of another histogram to this one.
+     *
+     * @param other The histogram to merge in.
+     */
+    public void merge(BalanceHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = other.counts.get(i);
+            if (count != 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of accounts counted.
+     *
+     * @return The account count.
+     */
+    public long count() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Estimates the share of accounts with a lower balance. Accounts in the same bucket
+     * count as half below and half above.
+     *
+     * @param amount The balance in minor units.
+     * @return The percentile from 0 to 100, or 0 if no accounts are counted.
+     */
+    public double percentileOf(long amount) {
+        int bucket = index(amount);
+        long below = 0;
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = counts.get(i);
+            total += count;
+            if (i < bucket) {
+                below += count;
+            } else if (i == bucket) {
+                below += count / 2;
+            }
+        }
+        return total == 0 ? 0.0 : 100.0 * below / total;
+    }
+
+    /**
+     * Estimates the balance below which the given share of accounts lies.
+     *
+     * @param quantile The share from 0 to 1, e.g. 0.5 for the median.
+     * @return The estimated balance in minor units, or 0 if no accounts are counted.
+     */
+    public long quantile(double quantile) {
+        long total = count();
+        if (total == 0) {
+            return 0L;
+        }
+        long rank = (long) Math.ceil(Math.min(1.0, Math.max(0.0, quantile)) * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= Math.max(1, rank)) {
+                return i == 0 ? 0L : Math.round(2 * Math.pow(GAMMA, i - 1) / (GAMMA + 1));
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    /**
+     * Visits every non-empty bucket in ascending order of balance.
+     *
+     * @param consumer Receives the bounds and count of each bucket.
+     */
+    public void forEachBucket(BucketConsumer consumer) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = counts.get(i);
+            if (count != 0) {
+                consumer.accept(i == 0 ? Long.MIN_VALUE : upperBound(i - 1), upperBound(i), count);
+            }
+        }
+    }
+
+    /**
+     * Receives the buckets of a BalanceHistogram.
+     */
+    @FunctionalInterface
+    public interface BucketConsumer {
+        /**
+         * @param lowerBound The bucket holds balances above this value, in minor units.
+         * @param upperBound The bucket holds balances up to and including this value, in minor units.
+         * @param count      The number of accounts in the bucket.
+         */
+        void accept(long lowerBound, long upperBound, long count);
+    }
+
+    /**
+     * Gets the bucket of a balance: 0 for balances of zero or less, otherwise 1 + ceil(log_gamma(amount)).
+     */
+    private static int index(long amount) {
+        if (amount <= 0) {
+            return 0;
+        }
+        // The small epsilon keeps exact powers of gamma in the lower bucket despite rounding
+        return 1 + (int) Math.ceil(Math.log(amount) * INV_LOG_GAMMA - 1e-9);
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket == 0) {
+            return 0L;
+        }
+        double bound = Math.floor(Math.pow(GAMMA, bucket - 1));
+        return bound >= Long.MAX_VALUE ? Long.MAX_VALUE : (long) bound;
+    }
+}
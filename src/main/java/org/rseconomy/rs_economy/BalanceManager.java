@@ -9,25 +9,82 @@ package org.rseconomy.rs_economy;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.function.LongUnaryOperator;
 
 /**
  * Manages player balances for the RSEconomy mod.
- * Synchronizes in-memory balances with persistent storage in EconomyData.
+ * Synchronizes in-memory balances with an {@link EconomyStorage} backend.
+ * <p>
+ * All methods are safe to call from any thread. Accounts are guarded by lock
+ * stripes, and every update is written through to storage while its stripe is
+ * still held, so the persisted value never falls behind a later update.
+ * <p>
+ * Storage is the only authoritative copy of every balance. Backends that hold all
+ * accounts in memory are read and written directly, and the manager only adds the
+ * lock stripes, so no cache holds a second copy of an account. The ranking below still
+ * does, see {@link RankingIndex}. Other
+ * backends get a cache that can be bounded in size: accounts are read from storage
+ * when first accessed, so offline players who have not been touched recently do not
+ * occupy a second copy in memory. Queries over all accounts read storage directly.
+ * The bound applies to the cache only: the ranking is built by reading every stored
+ * account on construction and keeps an entry for each, so memory still grows with the
+ * number of accounts that ever existed.
+ * <p>
+ * A {@link RankingIndex} over all accounts is built from storage on construction and
+ * told about every balance change, so rankings are always live. Only the storage write is
+ * done under the account's lock stripe; the ranking buffers the change without locking and
+ * applies it when next read. A {@link BalanceHistogram} is kept in step by the ranking for
+ * approximate percentiles in constant memory.
  */
 public class BalanceManager {
     /** The name of the currency used in the economy system. */
     public static String CURRENCY;
 
-    private final Map<UUID, Double> playerBalances = new HashMap<>();
-    private final EconomyData economyData;
+    /** Lock stripes used when concurrent access is enabled. */
+    private static final int CONCURRENT_STRIPES = 64;
+
+    private final ConcurrentAccountTable playerBalances;
+    private final EconomyStorage storage;
+    private final BalanceHistogram distribution = new BalanceHistogram();
+    private final RankingIndex ranking = new RankingIndex(distribution);
 
     /**
-     * Constructs a BalanceManager with the specified EconomyData instance.
+     * Constructs a BalanceManager with the specified storage that caches every account it touches.
      *
-     * @param economyData The EconomyData instance for persistent storage.
+     * @param storage The storage backend balances are persisted in.
      */
-    public BalanceManager(EconomyData economyData) {
-        this.economyData = economyData;
+    public BalanceManager(EconomyStorage storage) {
+        this(storage, 0);
+    }
+
+    /**
+     * Constructs a BalanceManager with the specified storage.
+     *
+     * @param storage   The storage backend balances are persisted in.
+     * @param cacheSize The maximum number of accounts to keep cached, or 0 for no limit.
+     *                  Ignored for backends that hold every account in memory themselves.
+     */
+    public BalanceManager(EconomyStorage storage, int cacheSize) {
+        this.storage = storage;
+        ranking.rebuild(accounts -> storage.forEachBalance((most, least, amount) -> {
+            accounts.accept(most, least, amount);
+            distribution.add(amount);
+        }));
+        int capacity = storage.isResident() ? ConcurrentAccountTable.NO_CACHE : cacheSize;
+        this.playerBalances = new ConcurrentAccountTable(lockStripes(), capacity, storage::getBalanceMinor,
+                (most, least, oldAmount, newAmount) -> {
+                    storage.putBalanceMinor(most, least, newAmount);
+                    ranking.update(most, least, newAmount);
+                });
+    }
+
+    /**
+     * Gets the number of lock stripes balance tables should use, based on the configuration.
+     *
+     * @return The stripe count.
+     */
+    public static int lockStripes() {
+        return ModConfigs.CONCURRENT_ACCESS.get() ? CONCURRENT_STRIPES : 1;
     }
 
     /**
@@ -44,7 +101,17 @@ public class BalanceManager {
      * @return The player's balance, or 0.0 if not found.
      */
     public double getBalance(UUID playerId) {
-        return playerBalances.getOrDefault(playerId, 0.0);
+        return Money.toMajor(getBalanceMinor(playerId));
+    }
+
+    /**
+     * Retrieves a player's balance in minor units.
+     *
+     * @param playerId The UUID of the player.
+     * @return The player's balance in minor units, or 0 if not found.
+     */
+    public long getBalanceMinor(UUID playerId) {
+        return playerBalances.get(playerId, 0L);
     }
 
     /**
@@ -54,8 +121,17 @@ public class BalanceManager {
      * @param amount   The new balance amount.
      */
     public void setBalance(UUID playerId, double amount) {
+        setBalanceMinor(playerId, Money.toMinor(amount));
+    }
+
+    /**
+     * Sets a player's balance to a specific amount of minor units.
+     *
+     * @param playerId The UUID of the player.
+     * @param amount   The new balance in minor units.
+     */
+    public void setBalanceMinor(UUID playerId, long amount) {
         playerBalances.put(playerId, amount);
-        economyData.setBalance(playerId, amount);
     }
 
     /**
@@ -65,8 +141,106 @@ public class BalanceManager {
      * @param amount   The amount to add.
      */
     public void addBalance(UUID playerId, double amount) {
-        double newAmount = getBalance(playerId) + amount;
-        setBalance(playerId, newAmount);
+        addBalanceMinor(playerId, Money.toMinor(amount));
+    }
+
+    /**
+     * Adds an amount of minor units to a player's balance.
+     *
+     * @param playerId The UUID of the player.
+     * @param amount   The amount to add in minor units.
+     */
+    public void addBalanceMinor(UUID playerId, long amount) {
+        playerBalances.add(playerId, amount);
+    }
+
+    /**
+     * Atomically replaces a player's balance with a function of it, for changes that
+     * depend on the balance itself, such as a percentage.
+     *
+     * @param most     The most significant bits of the player's UUID.
+     * @param least    The least significant bits of the player's UUID.
+     * @param function Computes the new balance in minor units from the current one. Runs while
+     *                 the account is locked, so it must be fast and must not call back into the
+     *                 balance manager.
+     * @return The new balance in minor units.
+     */
+    public long updateBalanceMinor(long most, long least, LongUnaryOperator function) {
+        return playerBalances.update(most, least, function);
+    }
+
+    /**
+     * Moves money between a player's wallet and savings as one change: the new balance is
+     * stored together with the new savings, so a crash cannot keep one without the other.
+     *
+     * @param playerId The UUID of the player.
+     * @param delta    The signed amount to add to the wallet, in minor units; not zero.
+     * @param savings  The player's savings after the move, in minor units.
+     * @param period   The interest period the savings are up to date for.
+     * @return False, with nothing changed, if the wallet does not cover a negative delta
+     *         or cannot hold a positive one.
+     */
+    public boolean transferWithSavings(UUID playerId, long delta, long savings, int period) {
+        boolean[] applied = {true};
+        playerBalances.update(playerId.getMostSignificantBits(), playerId.getLeastSignificantBits(), balance -> {
+            if (delta > 0 ? balance > Long.MAX_VALUE - delta : balance < -delta) {
+                applied[0] = false;
+                return balance;
+            }
+            return balance + delta;
+        }, (most, least, oldAmount, newAmount) -> {
+            storage.putBalanceAndSavings(most, least, newAmount, savings, period);
+            ranking.update(most, least, newAmount);
+        });
+        return applied[0];
+    }
+
+    /**
+     * Atomically applies a change computed from a player's wallet and savings together.
+     * A credit goes to the wallet; a debit is taken from the wallet first and from the
+     * savings for the rest. When the savings change, they are stored as one change with
+     * the new balance, like {@link #transferWithSavings}. The caller must hold the savings
+     * ledger's lock of the account, so the savings cannot change meanwhile.
+     *
+     * @param most     The most significant bits of the player's UUID.
+     * @param least    The least significant bits of the player's UUID.
+     * @param savings  The player's savings in minor units, up to date for the period.
+     * @param period   The interest period the savings are up to date for.
+     * @param function Computes the signed change in minor units from the sum of balance and
+     *                 savings; a debit must not exceed that sum. Runs while the account is locked.
+     * @return The signed change of balance and savings together, in minor units.
+     */
+    public long updateWithSavings(long most, long least, long savings, int period, LongUnaryOperator function) {
+        long[] nextSavings = {savings};
+        long[] walletChange = {0L};
+        boolean[] stored = {false};
+        playerBalances.update(most, least, balance -> {
+            long delta = function.applyAsLong(Money.add(balance, savings));
+            long next;
+            if (delta >= 0) {
+                nextSavings[0] = savings;
+                next = Money.add(balance, delta);
+            } else {
+                long fromWallet = Math.min(Math.max(balance, 0L), -delta);
+                nextSavings[0] = savings - (-delta - fromWallet);
+                next = balance - fromWallet;
+            }
+            walletChange[0] = next - balance;
+            return next;
+        }, (entryMost, entryLeast, oldAmount, newAmount) -> {
+            if (nextSavings[0] != savings) {
+                storage.putBalanceAndSavings(entryMost, entryLeast, newAmount, nextSavings[0], period);
+            } else {
+                storage.putBalanceMinor(entryMost, entryLeast, newAmount);
+            }
+            ranking.update(entryMost, entryLeast, newAmount);
+            stored[0] = true;
+        });
+        if (!stored[0] && nextSavings[0] != savings) {
+            // The wallet was empty and did not change, so there is no balance to store with the savings
+            storage.putSavings(most, least, nextSavings[0], period);
+        }
+        return walletChange[0] + nextSavings[0] - savings;
     }
 
     /**
@@ -77,29 +251,144 @@ public class BalanceManager {
      * @return True if the subtraction was successful, false if insufficient funds.
      */
     public boolean subtractBalance(UUID playerId, double amount) {
-        double currentBalance = getBalance(playerId);
-        if (currentBalance < amount) {
-            return false;
+        return subtractBalanceMinor(playerId, Money.toMinor(amount));
+    }
+
+    /**
+     * Subtracts an amount of minor units from a player's balance if sufficient funds are available.
+     * The check and the debit are a single atomic step.
+     *
+     * @param playerId The UUID of the player.
+     * @param amount   The amount to subtract in minor units.
+     * @return True if the subtraction was successful, false if insufficient funds.
+     */
+    public boolean subtractBalanceMinor(UUID playerId, long amount) {
+        return playerBalances.subtractIfSufficient(playerId, amount);
+    }
+
+    /**
+     * Transfers an amount from one player to another if the sender has sufficient funds.
+     *
+     * @param fromId The UUID of the sending player.
+     * @param toId   The UUID of the receiving player.
+     * @param amount The amount to transfer.
+     * @return True if the transfer was successful, false if insufficient funds or a negative amount.
+     */
+    public boolean transfer(UUID fromId, UUID toId, double amount) {
+        return transferMinor(fromId, toId, Money.toMinor(amount));
+    }
+
+    /**
+     * Transfers an amount of minor units from one player to another if the sender has
+     * sufficient funds. The debit and the credit are a single atomic step, so no other
+     * thread can observe or act on one without the other.
+     *
+     * @param fromId The UUID of the sending player.
+     * @param toId   The UUID of the receiving player.
+     * @param amount The amount to transfer in minor units.
+     * @return True if the transfer was successful, false if insufficient funds or a negative amount.
+     */
+    public boolean transferMinor(UUID fromId, UUID toId, long amount) {
+        return amount >= 0 && playerBalances.transfer(fromId, toId, amount);
+    }
+
+    /**
+     * Applies a batch of balance changes in minor units as one atomic operation.
+     * Changes to the same player are summed first. If any player's net change is a debit
+     * that their balance does not cover, no change is applied at all. Validation runs once
+     * for the whole batch, and each changed account is written through once.
+     *
+     * @param most   The most significant UUID bits of each entry.
+     * @param least  The least significant UUID bits of each entry.
+     * @param deltas The signed change of each entry in minor units.
+     * @param count  The number of entries to read from the arrays.
+     * @return True if the batch was applied, false if a debit was not covered.
+     */
+    public boolean applyBatch(long[] most, long[] least, long[] deltas, int count) {
+        if (count <= 0) {
+            return true;
         }
-        setBalance(playerId, currentBalance - amount);
-        return true;
+        return playerBalances.applyBatch(most, least, deltas, count);
+    }
+
+    /**
+     * Visits every account in storage without copying them, including accounts that are not
+     * cached. The consumer must not call back into the balance manager.
+     *
+     * @param consumer The consumer receiving the raw UUID bits and balance in minor units of each account.
+     */
+    public void forEachBalance(AccountTable.EntryConsumer consumer) {
+        storage.forEachBalance(consumer);
     }
 
     /**
-     * Gets a copy of all player balances.
+     * Gets a copy of all player balances, including accounts that are not cached.
      *
      * @return A copy of the balances map.
+     * @deprecated Allocates an entry per account; use {@link #forEachBalance} or {@link #getRanking()}.
      */
+    @Deprecated
     public Map<UUID, Double> getBalances() {
-        return new HashMap<>(playerBalances);
+        Map<UUID, Double> balances = new HashMap<>();
+        storage.forEachBalance((most, least, amount) -> balances.put(new UUID(most, least), Money.toMajor(amount)));
+        return balances;
+    }
+
+    /**
+     * Gets the live ranking of all accounts by balance.
+     *
+     * @return The ranking index.
+     */
+    public RankingIndex getRanking() {
+        return ranking;
+    }
+
+    /**
+     * Gets the approximate distribution of all balances, with buffered balance changes applied.
+     *
+     * @return The balance histogram.
+     */
+    public BalanceHistogram getDistribution() {
+        ranking.flush();
+        return distribution;
+    }
+
+    /**
+     * Estimates the share of accounts that have a lower balance than the given player.
+     * Reads only the ranking and the histogram, never storage.
+     *
+     * @param playerId The UUID of the player.
+     * @return The percentile from 0 to 100.
+     */
+    public double getPercentile(UUID playerId) {
+        return distribution.percentileOf(ranking.balanceOf(playerId));
+    }
+
+    /**
+     * Gets the number of balance lookups that found their account cached. Always 0 if
+     * storage holds every account in memory and no cache is kept.
+     *
+     * @return The hit count since the server started.
+     */
+    public long getCacheHits() {
+        return playerBalances.cacheHits();
+    }
+
+    /**
+     * Gets the number of balance lookups that had to read their account from storage.
+     *
+     * @return The miss count since the server started.
+     */
+    public long getCacheMisses() {
+        return playerBalances.cacheMisses();
     }
 
     /**
-     * Loads balances from a provided map into memory.
+     * Gets the number of accounts currently cached, which is 0 if no cache is kept.
      *
-     * @param balances The map of UUIDs to balances to load.
+     * @return The cached account count.
      */
-    public void loadBalances(Map<UUID, Double> balances) {
-        playerBalances.putAll(balances);
+    public int getCachedAccounts() {
+        return playerBalances.size();
     }
 }
\ No newline at end of file
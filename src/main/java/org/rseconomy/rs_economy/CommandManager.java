@@ -16,6 +16,7 @@ import net.minecraft.commands.arguments.EntityArgument;
 import net.minecraft.network.chat.Component;
 import net.minecraft.server.level.ServerPlayer;
 
+import java.math.BigDecimal;
 import java.util.Locale;
 
 /**
@@ -25,17 +26,24 @@ public class CommandManager {
     private final BalanceManager balanceManager;
     private final RewardManager rewardManager;
     private final LeaderboardManager leaderboardManager;
+    private final SweepEngine sweepEngine;
+    private final SavingsLedger savingsLedger;
 
     /**
      * Constructs a CommandManager with the specified balance and reward managers.
      *
      * @param balanceManager The balance manager instance.
      * @param rewardManager  The reward manager instance.
+     * @param sweepEngine    The engine running the configured sweeps.
+     * @param savingsLedger  The ledger of the players' savings accounts.
      */
-    public CommandManager(BalanceManager balanceManager, RewardManager rewardManager, LeaderboardManager leaderboardManager) {
+    public CommandManager(BalanceManager balanceManager, RewardManager rewardManager, LeaderboardManager leaderboardManager,
+                          SweepEngine sweepEngine, SavingsLedger savingsLedger) {
         this.balanceManager = balanceManager;
         this.rewardManager = rewardManager;
         this.leaderboardManager = leaderboardManager;
+        this.sweepEngine = sweepEngine;
+        this.savingsLedger = savingsLedger;
     }
 
     /**
@@ -60,9 +68,9 @@ public class CommandManager {
         dispatcher.register(Commands.literal(Localization.get("command.balance"))
                 .executes(context -> {
                     ServerPlayer player = context.getSource().getPlayerOrException();
-                    double balance = balanceManager.getBalance(player.getUUID());
+                    long balance = balanceManager.getBalanceMinor(player.getUUID());
                     player.sendSystemMessage(Component.literal(
-                            Localization.get("balance.info", balance, BalanceManager.CURRENCY)));
+                            Localization.get("balance.info", Localization.formatAmount(balance), BalanceManager.CURRENCY)));
                     return 1;
                 })
                 .then(Commands.argument(Localization.get("sugg.player"), EntityArgument.player())
@@ -70,13 +78,40 @@ public class CommandManager {
                         .executes(context -> {
                             ServerPlayer admin = context.getSource().getPlayerOrException();
                             ServerPlayer target = EntityArgument.getPlayer(context, Localization.get("sugg.player"));
-                            double targetBalance = balanceManager.getBalance(target.getUUID());
+                            long targetBalance = balanceManager.getBalanceMinor(target.getUUID());
                             admin.sendSystemMessage(Component.literal(
                                     Localization.get("balance.admin.info", target.getName().getString(),
-                                            targetBalance, BalanceManager.CURRENCY)));
+                                            Localization.formatAmount(targetBalance), BalanceManager.CURRENCY)));
                             return 1;
                         })));
 
+        // Savings command: Check savings or move money between wallet and savings
+        dispatcher.register(Commands.literal(Localization.get("command.savings"))
+                .executes(context -> {
+                    ServerPlayer player = context.getSource().getPlayerOrException();
+                    long savings = savingsLedger.getSavingsMinor(player.getUUID());
+                    long minutes = Math.max(0, (savingsLedger.getNextPeriodStart() - System.currentTimeMillis()) / 60_000);
+                    player.sendSystemMessage(Component.literal(Localization.get("savings.info",
+                            Localization.formatAmount(savings), BalanceManager.CURRENCY,
+                            BigDecimal.valueOf(savingsLedger.getRatePpm(), 4).stripTrailingZeros().toPlainString(),
+                            savingsLedger.getPeriodMillis() / 3_600_000, minutes)));
+                    return 1;
+                })
+                .then(Commands.literal(Localization.get("sugg.savings.deposit"))
+                        .then(Commands.argument(Localization.get("sugg.amount"), DoubleArgumentType.doubleArg(0))
+                                .executes(context -> {
+                                    ServerPlayer player = context.getSource().getPlayerOrException();
+                                    double amount = DoubleArgumentType.getDouble(context, Localization.get("sugg.amount"));
+                                    return handleSavings(player, amount, true);
+                                })))
+                .then(Commands.literal(Localization.get("sugg.savings.withdraw"))
+                        .then(Commands.argument(Localization.get("sugg.amount"), DoubleArgumentType.doubleArg(0))
+                                .executes(context -> {
+                                    ServerPlayer player = context.getSource().getPlayerOrException();
+                                    double amount = DoubleArgumentType.getDouble(context, Localization.get("sugg.amount"));
+                                    return handleSavings(player, amount, false);
+                                }))));
+
         // Daily reward command: Claim daily reward
         dispatcher.register(Commands.literal(Localization.get("command.dailyreward"))
                 .executes(context -> {
@@ -225,6 +260,37 @@ public class CommandManager {
                                             Component.literal(Localization.get("admin.language", result)), true);
                                     return 1;
                                 })))
+                .then(Commands.literal(Localization.get("sugg.cache"))
+                        .executes(context -> {
+                            long hits = balanceManager.getCacheHits();
+                            long misses = balanceManager.getCacheMisses();
+                            double hitRate = hits + misses == 0 ? 0 : 100.0 * hits / (hits + misses);
+                            context.getSource().sendSuccess(() ->
+                                    Component.literal(Localization.get("admin.cache",
+                                            balanceManager.getCachedAccounts(), hits, misses, hitRate)), false);
+                            return 1;
+                        }))
+                .then(Commands.literal(Localization.get("sugg.sweep"))
+                        .executes(context -> {
+                            context.getSource().sendSuccess(() -> Component.literal(describeSweeps()), false);
+                            return 1;
+                        })
+                        .then(Commands.argument(Localization.get("sugg.sweep.rule"), StringArgumentType.word())
+                                .suggests((context, builder) -> {
+                                    sweepEngine.getRuleNames().forEach(builder::suggest);
+                                    return builder.buildFuture();
+                                })
+                                .executes(context -> {
+                                    String rule = StringArgumentType.getString(context, Localization.get("sugg.sweep.rule"));
+                                    if (!sweepEngine.runNow(rule)) {
+                                        context.getSource().sendFailure(Component.literal(
+                                                Localization.get("admin.sweep.unknown", rule)));
+                                        return 0;
+                                    }
+                                    context.getSource().sendSuccess(() ->
+                                            Component.literal(Localization.get("admin.sweep.started", rule)), true);
+                                    return 1;
+                                })))
                 .then(Commands.literal(Localization.get("sugg.reload"))
                         .executes(context -> {
                             RSEconomy.getInstance().reload();
@@ -234,24 +300,81 @@ public class CommandManager {
                         })));
     }
 
+    /**
+     * Handles moving money between a player's wallet and savings.
+     *
+     * @param player          The player.
+     * @param requestedAmount The amount to move, rounded to the currency scale.
+     * @param deposit         True to move into savings, false to move out of them.
+     * @return 1 if successful, 0 if the amount is invalid or not covered.
+     */
+    private int handleSavings(ServerPlayer player, double requestedAmount, boolean deposit) {
+        long minorAmount = Money.toMinor(requestedAmount);
+        if (minorAmount <= 0) {
+            player.sendSystemMessage(Component.literal(Localization.get("pay.invalid")));
+            return 0;
+        }
+        boolean moved = deposit
+                ? savingsLedger.deposit(player.getUUID(), minorAmount)
+                : savingsLedger.withdraw(player.getUUID(), minorAmount);
+        if (!moved) {
+            player.sendSystemMessage(Component.literal(
+                    Localization.get(deposit ? "pay.insufficient" : "savings.insufficient")));
+            return 0;
+        }
+        player.sendSystemMessage(Component.literal(Localization.get(deposit ? "savings.deposit" : "savings.withdraw",
+                Localization.formatAmount(minorAmount), BalanceManager.CURRENCY)));
+        return 1;
+    }
+
+    /**
+     * Describes the running and the last finished sweep.
+     *
+     * @return The localized status text.
+     */
+    private String describeSweeps() {
+        SweepEngine.Sweep current = sweepEngine.getCurrent();
+        SweepEngine.Sweep last = sweepEngine.getLast();
+        if (current == null && last == null) {
+            return Localization.get("admin.sweep.none", String.join(", ", sweepEngine.getRuleNames()));
+        }
+        StringBuilder status = new StringBuilder();
+        if (current != null) {
+            status.append(current.isPlanning()
+                    ? Localization.get("admin.sweep.planning", current.rule().name(), current.elapsedMillis())
+                    : Localization.get("admin.sweep.progress", current.rule().name(), current.committed(),
+                            current.planned(), current.elapsedMillis()));
+        }
+        if (last != null) {
+            if (!status.isEmpty()) {
+                status.append('\n');
+            }
+            status.append(Localization.get("admin.sweep.finished", last.rule().name(), last.committed(),
+                    Localization.formatAmount(last.debited()), Localization.formatAmount(last.credited()),
+                    last.elapsedMillis()));
+        }
+        return status.toString();
+    }
+
     /**
      * Handles the payment command, transferring currency between players.
      *
      * @param sender   The player sending the currency.
      * @param receiver The player receiving the currency.
-     * @param amount   The amount to transfer.
+     * @param requestedAmount The amount to transfer, rounded to the currency scale.
      * @return 1 if successful, 0 if the payment fails.
      */
-    private int handlePay(ServerPlayer sender, ServerPlayer receiver, double amount) {
-        if (amount <= 0) {
+    private int handlePay(ServerPlayer sender, ServerPlayer receiver, double requestedAmount) {
+        long minorAmount = Money.toMinor(requestedAmount);
+        if (minorAmount <= 0) {
             sender.sendSystemMessage(Component.literal(Localization.get("pay.invalid")));
             return 0;
         }
-        if (!balanceManager.subtractBalance(sender.getUUID(), amount)) {
+        if (!balanceManager.transferMinor(sender.getUUID(), receiver.getUUID(), minorAmount)) {
             sender.sendSystemMessage(Component.literal(Localization.get("pay.insufficient")));
             return 0;
         }
-        balanceManager.addBalance(receiver.getUUID(), amount);
+        String amount = Localization.formatAmount(minorAmount);
         sender.sendSystemMessage(Component.literal(
                 Localization.get("pay.send", amount, BalanceManager.CURRENCY, receiver.getName().getString())));
         receiver.sendSystemMessage(Component.literal(
@@ -0,0 +1,693 @@
+/*
+ * Copyright (c) 2025 Rosti Studios. All rights reserved.
+ * Licensed under the Rosti Studios Minecraft Mod License (RSMML).
+ * For more information, see the LICENSE file in the project root
+ * or contact us via Discord: https://dsc.gg/rosti-studios
+ */
+package org.rseconomy.rs_economy;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Thread-safe account table built from lock-striped {@link AccountTable} segments.
+ * Each account belongs to one stripe chosen by its UUID hash, so writers only contend
+ * when they touch the same stripe. Reads are optimistic and take no lock unless they
+ * race a writer on the same stripe.
+ * <p>
+ * With a loader the table is a cache in front of a backing store: accounts are read
+ * through the loader on first access, and with a capacity each stripe keeps at most its
+ * share of accounts. When a stripe overflows, the least recently used of a few randomly
+ * sampled accounts is dropped (sampled LRU), so eviction costs O(1) and needs no list
+ * links. Dropped accounts are simply read again later, which is only correct if the
+ * listener writes every change through to the backing store.
+ * <p>
+ * With a capacity of {@link #NO_CACHE} the table keeps no values at all and only
+ * provides the stripe locks: every access reads the loader, and the listener is the
+ * only place a change is stored. This suits backing stores that already hold every
+ * account in memory, which would otherwise be held twice.
+ */
+public class ConcurrentAccountTable {
+    /** Capacity of a table that keeps no values and reads and writes its backing store directly. */
+    public static final int NO_CACHE = -1;
+
+    /** Accounts inspected per eviction, each drawn independently; 8 come close to exact LRU at a fraction of the cost. */
+    private static final int EVICTION_SAMPLES = 8;
+    /** Returned by optimistic reads to signal that the account may not be cached. */
+    private static final long NOT_CACHED = Long.MIN_VALUE;
+
+    private final AccountTable[] stripes;
+    private final StampedLock[] locks;
+    private final int stripeMask;
+    private final ChangeListener listener;
+    private final Loader loader;
+    private final int maxStripeSize;
+    private final boolean passThrough;
+    /** Coarse last access time of every cached account, per stripe; null when unbounded. */
+    private final AccountTable[] lastAccess;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Constructs a ConcurrentAccountTable.
+     *
+     * @param stripeCount The number of lock stripes, rounded up to a power of two.
+     * @param listener    Notified of every change while the account's stripe is still locked, or null.
+     */
+    public ConcurrentAccountTable(int stripeCount, ChangeListener listener) {
+        this(stripeCount, 0, null, listener);
+    }
+
+    /**
+     * Constructs a ConcurrentAccountTable that caches accounts of a backing store.
+     *
+     * @param stripeCount The number of lock stripes, rounded up to a power of two.
+     * @param capacity    The maximum number of accounts to keep, 0 to never evict, or {@link #NO_CACHE}
+     *                    to keep none.
+     * @param loader      Reads accounts that are not in the table, or null to start every account at 0.
+     * @param listener    Notified of every change while the account's stripe is still locked, or null.
+     * @throws IllegalArgumentException If a capacity is given without a loader, or NO_CACHE without a listener.
+     */
+    public ConcurrentAccountTable(int stripeCount, int capacity, Loader loader, ChangeListener listener) {
+        if (capacity != 0 && loader == null) {
+            throw new IllegalArgumentException("A bounded account table needs a loader");
+        }
+        if (capacity < 0 && listener == null) {
+            throw new IllegalArgumentException("An account table without cache needs a listener to store changes");
+        }
+        int count = stripeCount <= 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+        this.stripes = new AccountTable[count];
+        this.locks = new StampedLock[count];
+        this.lastAccess = capacity > 0 ? new AccountTable[count] : null;
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new AccountTable();
+            locks[i] = new StampedLock();
+            if (lastAccess != null) {
+                lastAccess[i] = new AccountTable();
+            }
+        }
+        this.stripeMask = count - 1;
+        this.listener = listener;
+        this.loader = loader;
+        this.maxStripeSize = capacity > 0 ? Math.max(1, (capacity + count - 1) / count) : 0;
+        this.passThrough = capacity < 0;
+    }
+
+    /**
+     * Retrieves the value stored for an account.
+     *
+     * @param playerId     The UUID of the player.
+     * @param defaultValue The value to return if the account is not present.
+     * @return The stored value, or defaultValue if not found.
+     */
+    public long get(UUID playerId, long defaultValue) {
+        return get(playerId.getMostSignificantBits(), playerId.getLeastSignificantBits(), defaultValue);
+    }
+
+    /**
+     * Retrieves the value stored for an account given the raw UUID bits.
+     *
+     * @param most         The most significant bits of the UUID.
+     * @param least        The least significant bits of the UUID.
+     * @param defaultValue The value to return if the account is not present.
+     * @return The stored value, or defaultValue if not found.
+     */
+    public long get(long most, long least, long defaultValue) {
+        if (passThrough) {
+            return getLoaded(most, least);
+        }
+        if (loader != null) {
+            return getCached(most, least);
+        }
+        int stripe = stripeOf(most, least);
+        StampedLock lock = locks[stripe];
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            long value = stripes[stripe].get(most, least, defaultValue);
+            if (lock.validate(stamp)) {
+                return value;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return stripes[stripe].get(most, least, defaultValue);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Checks whether an account is present given the raw UUID bits.
+     * With a loader this only reports whether the account is currently cached, and
+     * without a cache it is always false.
+     *
+     * @param most  The most significant bits of the UUID.
+     * @param least The least significant bits of the UUID.
+     * @return True if the account is present.
+     */
+    public boolean containsKey(long most, long least) {
+        int stripe = stripeOf(most, least);
+        long stamp = locks[stripe].readLock();
+        try {
+            return stripes[stripe].containsKey(most, least);
+        } finally {
+            locks[stripe].unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Stores a value for an account, replacing any previous value.
+     *
+     * @param playerId The UUID of the player.
+     * @param value    The value to store.
+     */
+    public void put(UUID playerId, long value) {
+        put(playerId.getMostSignificantBits(), playerId.getLeastSignificantBits(), value);
+    }
+
+    /**
+     * Stores a value for an account given the raw UUID bits, replacing any previous value.
+     *
+     * @param most  The most significant bits of the UUID.
+     * @param least The least significant bits of the UUID.
+     * @param value The value to store.
+     */
+    public void put(long most, long least, long value) {
+        int stripe = stripeOf(most, least);
+        long stamp = locks[stripe].writeLock();
+        try {
+            touch(stripe, most, least);
+            update(stripe, most, least, read(stripe, most, least), value);
+        } finally {
+            evictIfFull(stripe);
+            locks[stripe].unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Adds a delta to an account's value, saturating at the long range.
+     *
+     * @param playerId The UUID of the player.
+     * @param delta    The amount to add.
+     * @return The new value.
+     */
+    public long add(UUID playerId, long delta) {
+        long most = playerId.getMostSignificantBits();
+        long least = playerId.getLeastSignificantBits();
+        int stripe = stripeOf(most, least);
+        long stamp = locks[stripe].writeLock();
+        try {
+            touch(stripe, most, least);
+            long old = read(stripe, most, least);
+            long value = Money.add(old, delta);
+            update(stripe, most, least, old, value);
+            return value;
+        } finally {
+            evictIfFull(stripe);
+            locks[stripe].unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Atomically replaces an account's value with a function of it. The listener is only
+     * notified if the value changed.
+     *
+     * @param most     The most significant bits of the UUID.
+     * @param least    The least significant bits of the UUID.
+     * @param function Computes the new value from the current one. Runs while the stripe is
+     *                 locked, so it must be fast and must not call back into the table.
+     * @return The new value.
+     */
+    public long update(long most, long least, LongUnaryOperator function) {
+        return update(most, least, function, listener);
+    }
+
+    /**
+     * Atomically replaces an account's value with a function of it, notifying the given
+     * listener instead of the table's, for changes that must be stored together with
+     * other data. The listener is only notified if the value changed.
+     *
+     * @param most     The most significant bits of the UUID.
+     * @param least    The least significant bits of the UUID.
+     * @param function Computes the new value from the current one. Runs while the stripe is
+     *                 locked, so it must be fast and must not call back into the table.
+     * @param listener Notified of the change while the stripe is still locked. Without a
+     *                 cache it is the only place the change is stored.
+     * @return The new value.
+     */
+    public long update(long most, long least, LongUnaryOperator function, ChangeListener listener) {
+        int stripe = stripeOf(most, least);
+        long stamp = locks[stripe].writeLock();
+        try {
+            touch(stripe, most, least);
+            long old = read(stripe, most, least);
+            long value = function.applyAsLong(old);
+            if (value != old) {
+                if (!passThrough) {
+                    stripes[stripe].put(most, least, value);
+                }
+                if (listener != null) {
+                    listener.changed(most, least, old, value);
+                }
+            }
+            return value;
+        } finally {
+            evictIfFull(stripe);
+            locks[stripe].unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Atomically subtracts an amount from an account if its value covers it.
+     *
+     * @param playerId The UUID of the player.
+     * @param amount   The amount to subtract.
+     * @return True if the amount was subtracted, false if the value was insufficient.
+     */
+    public boolean subtractIfSufficient(UUID playerId, long amount) {
+        long most = playerId.getMostSignificantBits();
+        long least = playerId.getLeastSignificantBits();
+        int stripe = stripeOf(most, least);
+        long stamp = locks[stripe].writeLock();
+        try {
+            touch(stripe, most, least);
+            long current = read(stripe, most, least);
+            if (current < amount) {
+                return false;
+            }
+            update(stripe, most, least, current, current - amount);
+            return true;
+        } finally {
+            evictIfFull(stripe);
+            locks[stripe].unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Atomically moves an amount from one account to another if the source covers it.
+     * Both stripes are locked in ascending index order, so concurrent transfers in
+     * opposite directions cannot deadlock.
+     *
+     * @param from   The UUID of the account to debit.
+     * @param to     The UUID of the account to credit.
+     * @param amount The amount to move.
+     * @return True if the amount was moved, false if the source value was insufficient.
+     */
+    public boolean transfer(UUID from, UUID to, long amount) {
+        long fromMost = from.getMostSignificantBits();
+        long fromLeast = from.getLeastSignificantBits();
+        long toMost = to.getMostSignificantBits();
+        long toLeast = to.getLeastSignificantBits();
+        int fromStripe = stripeOf(fromMost, fromLeast);
+        int toStripe = stripeOf(toMost, toLeast);
+        int first = Math.min(fromStripe, toStripe);
+        int second = Math.max(fromStripe, toStripe);
+
+        long firstStamp = locks[first].writeLock();
+        long secondStamp = first != second ? locks[second].writeLock() : 0L;
+        try {
+            touch(fromStripe, fromMost, fromLeast);
+            touch(toStripe, toMost, toLeast);
+            long fromValue = read(fromStripe, fromMost, fromLeast);
+            if (fromValue < amount) {
+                return false;
+            }
+            if (fromMost == toMost && fromLeast == toLeast) {
+                return true;
+            }
+            update(fromStripe, fromMost, fromLeast, fromValue, fromValue - amount);
+            long toValue = read(toStripe, toMost, toLeast);
+            update(toStripe, toMost, toLeast, toValue, Money.add(toValue, amount));
+            return true;
+        } finally {
+            evictIfFull(first);
+            if (first != second) {
+                evictIfFull(second);
+                locks[second].unlockWrite(secondStamp);
+            }
+            locks[first].unlockWrite(firstStamp);
+        }
+    }
+
+    /**
+     * Atomically applies a set of deltas. Deltas for the same account are summed first;
+     * if any account would end up below zero because of a net debit, nothing is applied.
+     * All involved stripes are locked in ascending index order for the whole batch.
+     *
+     * @param most   The most significant UUID bits of each entry.
+     * @param least  The least significant UUID bits of each entry.
+     * @param deltas The delta of each entry.
+     * @param count  The number of entries to read from the arrays.
+     * @return True if the batch was applied, false if a debit was not covered.
+     */
+    public boolean applyBatch(long[] most, long[] least, long[] deltas, int count) {
+        // Sum deltas per account, remembering the first-seen order of accounts
+        AccountTable indexOf = new AccountTable(count);
+        long[] accountMost = new long[count];
+        long[] accountLeast = new long[count];
+        long[] netDelta = new long[count];
+        int accounts = 0;
+        for (int i = 0; i < count; i++) {
+            int index = (int) indexOf.get(most[i], least[i], -1L);
+            if (index < 0) {
+                index = accounts++;
+                indexOf.put(most[i], least[i], index);
+                accountMost[index] = most[i];
+                accountLeast[index] = least[i];
+            }
+            netDelta[index] = Money.add(netDelta[index], deltas[i]);
+        }
+
+        boolean[] involved = new boolean[stripes.length];
+        int[] stripeOfAccount = new int[accounts];
+        for (int i = 0; i < accounts; i++) {
+            stripeOfAccount[i] = stripeOf(accountMost[i], accountLeast[i]);
+            involved[stripeOfAccount[i]] = true;
+        }
+        long[] stamps = new long[stripes.length];
+        for (int stripe = 0; stripe < stripes.length; stripe++) {
+            if (involved[stripe]) {
+                stamps[stripe] = locks[stripe].writeLock();
+            }
+        }
+        try {
+            long[] current = new long[accounts];
+            for (int i = 0; i < accounts; i++) {
+                touch(stripeOfAccount[i], accountMost[i], accountLeast[i]);
+                current[i] = read(stripeOfAccount[i], accountMost[i], accountLeast[i]);
+            }
+            for (int i = 0; i < accounts; i++) {
+                // Not negated, as a net debit may have saturated at Long.MIN_VALUE
+                if (netDelta[i] < 0 && Money.add(current[i], netDelta[i]) < 0) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < accounts; i++) {
+                if (netDelta[i] == 0) {
+                    continue;
+                }
+                long value = Money.add(current[i], netDelta[i]);
+                update(stripeOfAccount[i], accountMost[i], accountLeast[i], current[i], value);
+            }
+            return true;
+        } finally {
+            for (int stripe = stripes.length - 1; stripe >= 0; stripe--) {
+                if (involved[stripe]) {
+                    evictIfFull(stripe);
+                    locks[stripe].unlockWrite(stamps[stripe]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stores a value without notifying the listener, for populating the table from storage.
+     * Does nothing without a cache, where the backing store already holds the value.
+     *
+     * @param most  The most significant bits of the UUID.
+     * @param least The least significant bits of the UUID.
+     * @param value The value to store.
+     */
+    public void load(long most, long least, long value) {
+        if (passThrough) {
+            return;
+        }
+        int stripe = stripeOf(most, least);
+        long stamp = locks[stripe].writeLock();
+        try {
+            stripes[stripe].put(most, least, value);
+            if (lastAccess != null) {
+                lastAccess[stripe].put(most, least, tick());
+            }
+        } finally {
+            evictIfFull(stripe);
+            locks[stripe].unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes all accounts without notifying the listener.
+     */
+    public void clear() {
+        for (int i = 0; i < stripes.length; i++) {
+            long stamp = locks[i].writeLock();
+            try {
+                stripes[i].clear();
+                if (lastAccess != null) {
+                    lastAccess[i].clear();
+                }
+            } finally {
+                locks[i].unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * Visits every account. Each stripe is read-locked while it is visited, so the
+     * result is consistent per stripe but not across stripes. With a loader only
+     * cached accounts are visited, so without a cache none are.
+     *
+     * @param consumer The consumer receiving the raw UUID bits and value of each account.
+     */
+    public void forEach(AccountTable.EntryConsumer consumer) {
+        for (int i = 0; i < stripes.length; i++) {
+            long stamp = locks[i].readLock();
+            try {
+                stripes[i].forEach(consumer);
+            } finally {
+                locks[i].unlockRead(stamp);
+            }
+        }
+    }
+
+    /**
+     * Copies every account into three parallel arrays. Each stripe is read-locked while
+     * it is copied, so the result is consistent per stripe but not across stripes.
+     *
+     * @return The most significant UUID bits, least significant UUID bits and values, in that order.
+     */
+    public long[][] toColumns() {
+        long[] most = new long[0];
+        long[] least = new long[0];
+        long[] values = new long[0];
+        int[] count = {0};
+        for (int i = 0; i < stripes.length; i++) {
+            long stamp = locks[i].readLock();
+            try {
+                int needed = count[0] + stripes[i].size();
+                if (needed > most.length) {
+                    int capacity = Math.max(needed, most.length * 2);
+                    most = Arrays.copyOf(most, capacity);
+                    least = Arrays.copyOf(least, capacity);
+                    values = Arrays.copyOf(values, capacity);
+                }
+                long[] m = most;
+                long[] l = least;
+                long[] v = values;
+                stripes[i].forEach((entryMost, entryLeast, value) -> {
+                    int index = count[0]++;
+                    m[index] = entryMost;
+                    l[index] = entryLeast;
+                    v[index] = value;
+                });
+            } finally {
+                locks[i].unlockRead(stamp);
+            }
+        }
+        int size = count[0];
+        return new long[][]{Arrays.copyOf(most, size), Arrays.copyOf(least, size), Arrays.copyOf(values, size)};
+    }
+
+    /**
+     * Gets the number of accounts in the table, which with a loader are the cached ones.
+     *
+     * @return The number of accounts.
+     */
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < stripes.length; i++) {
+            long stamp = locks[i].readLock();
+            try {
+                size += stripes[i].size();
+            } finally {
+                locks[i].unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Gets the number of lock stripes.
+     *
+     * @return The stripe count.
+     */
+    public int stripeCount() {
+        return stripes.length;
+    }
+
+    /**
+     * Gets the number of accesses that found their account cached. Always 0 without a loader
+     * or a cache.
+     *
+     * @return The hit count since construction.
+     */
+    public long cacheHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the number of accesses that had to read their account through the loader.
+     * Always 0 without a loader or a cache.
+     *
+     * @return The miss count since construction.
+     */
+    public long cacheMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Reads accounts that are not cached from the backing store.
+     * Called while the account's stripe is write-locked, so it must not call back into the table.
+     * Without a cache it is also called for plain reads, possibly without any lock, so it must
+     * be safe to call from any thread.
+     */
+    @FunctionalInterface
+    public interface Loader {
+        /**
+         * @return The stored value, or 0 if the account does not exist.
+         */
+        long load(long most, long least);
+    }
+
+    /**
+     * Receives account changes made through a ConcurrentAccountTable.
+     * Called while the account's stripe is write-locked, so calls for the same account
+     * arrive in the order the changes were applied.
+     */
+    @FunctionalInterface
+    public interface ChangeListener {
+        void changed(long most, long least, long oldValue, long newValue);
+    }
+
+    private long getCached(long most, long least) {
+        int stripe = stripeOf(most, least);
+        StampedLock lock = locks[stripe];
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            long value = stripes[stripe].get(most, least, NOT_CACHED);
+            // Refreshing a stale access time needs the write lock, so take the slow path for it
+            boolean fresh = lastAccess == null || lastAccess[stripe].get(most, least, -1L) == tick();
+            if (lock.validate(stamp) && value != NOT_CACHED && fresh) {
+                hits.increment();
+                return value;
+            }
+        }
+        stamp = lock.writeLock();
+        try {
+            touch(stripe, most, least);
+            return stripes[stripe].get(most, least, 0L);
+        } finally {
+            evictIfFull(stripe);
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Reads an account from the backing store without caching it. The read is repeated
+     * under the stripe's read lock if it raced a writer, so a transfer is never seen half
+     * applied through the accounts of one stripe.
+     */
+    private long getLoaded(long most, long least) {
+        int stripe = stripeOf(most, least);
+        StampedLock lock = locks[stripe];
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            long value = loader.load(most, least);
+            if (lock.validate(stamp)) {
+                return value;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return loader.load(most, least);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Makes sure an account is cached and records the access. Caller holds the stripe's write lock.
+     */
+    private void touch(int stripe, long most, long least) {
+        if (loader == null || passThrough) {
+            return;
+        }
+        AccountTable table = stripes[stripe];
+        if (table.containsKey(most, least)) {
+            hits.increment();
+        } else {
+            misses.increment();
+            table.put(most, least, loader.load(most, least));
+        }
+        if (lastAccess != null) {
+            lastAccess[stripe].put(most, least, tick());
+        }
+    }
+
+    /**
+     * Drops sampled least recently used accounts until the stripe is within its share of the
+     * capacity. Caller holds the stripe's write lock, after all changes were passed to the listener.
+     */
+    private void evictIfFull(int stripe) {
+        if (lastAccess == null) {
+            return;
+        }
+        AccountTable table = stripes[stripe];
+        AccountTable access = lastAccess[stripe];
+        while (table.size() > maxStripeSize) {
+            long[] victim = {0L, 0L, Long.MAX_VALUE};
+            access.sample(ThreadLocalRandom.current(), EVICTION_SAMPLES, (most, least, time) -> {
+                if (time < victim[2]) {
+                    victim[0] = most;
+                    victim[1] = least;
+                    victim[2] = time;
+                }
+            });
+            table.remove(victim[0], victim[1]);
+            access.remove(victim[0], victim[1]);
+        }
+    }
+
+    /**
+     * Gets the current access time in units of about one second. Accesses within the same unit
+     * are not told apart, so a hot account refreshes its time at most once per second.
+     */
+    private static long tick() {
+        return System.nanoTime() >>> 30;
+    }
+
+    /**
+     * Reads an account that was touched. Caller holds the stripe's write lock.
+     */
+    private long read(int stripe, long most, long least) {
+        return passThrough ? loader.load(most, least) : stripes[stripe].get(most, least, 0L);
+    }
+
+    private void update(int stripe, long most, long least, long old, long value) {
+        if (!passThrough) {
+            stripes[stripe].put(most, least, value);
+        }
+        if (listener != null) {
+            listener.changed(most, least, old, value);
+        }
+    }
+
+    private int stripeOf(long most, long least) {
+        // AccountTable probes with the low hash bits, so stripes use the high ones
+        return (int) (AccountTable.mix(most, least) >>> 40) & stripeMask;
+    }
+}
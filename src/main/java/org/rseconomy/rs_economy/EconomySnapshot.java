@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2025 Rosti Studios. All rights reserved.
+ * Licensed under the Rosti Studios Minecraft Mod License (RSMML).
+ * For more information, see the LICENSE file in the project root
+ * or contact us via Discord: https://dsc.gg/rosti-studios
+ */
+package org.rseconomy.rs_economy;
+
+import net.minecraft.nbt.CompoundTag;
+
+/**
+ * Immutable copy of one EconomyData shard, taken on the server thread.
+ * Holds only primitive arrays, so it is cheap to capture and can be encoded
+ * to NBT on any thread.
+ */
+public final class EconomySnapshot {
+    /** 1: one entry per account keyed by UUID string; 2: parallel arrays of UUID halves and values. */
+    public static final int FORMAT_VERSION = 2;
+
+    private final long journalSequence;
+    private final int scale;
+    private final long[] most;
+    private final long[] least;
+    private final long[] amounts;
+    private final long[] rewardMost;
+    private final long[] rewardLeast;
+    private final int[] rewardDays;
+    private final long[] savingsMost;
+    private final long[] savingsLeast;
+    private final long[] savingsAmounts;
+    private final int[] savingsPeriods;
+
+    /**
+     * Constructs an EconomySnapshot. The arrays are taken over, not copied.
+     *
+     * @param journalSequence The journal sequence the snapshot contains all records below.
+     * @param scale           The currency scale the amounts are stored with.
+     * @param most            The most significant UUID bits of each account.
+     * @param least           The least significant UUID bits of each account.
+     * @param amounts         The balance of each account in minor units.
+     * @param rewardMost      The most significant UUID bits of each daily reward claim.
+     * @param rewardLeast     The least significant UUID bits of each daily reward claim.
+     * @param rewardDays      The epoch day of each daily reward claim.
+     * @param savingsMost     The most significant UUID bits of each savings account.
+     * @param savingsLeast    The least significant UUID bits of each savings account.
+     * @param savingsAmounts  The savings of each account in minor units.
+     * @param savingsPeriods  The interest period each account's savings are up to date for.
+     */
+    public EconomySnapshot(long journalSequence, int scale, long[] most, long[] least, long[] amounts,
+                           long[] rewardMost, long[] rewardLeast, int[] rewardDays,
+                           long[] savingsMost, long[] savingsLeast, long[] savingsAmounts, int[] savingsPeriods) {
+        this.journalSequence = journalSequence;
+        this.scale = scale;
+        this.most = most;
+        this.least = least;
+        this.amounts = amounts;
+        this.rewardMost = rewardMost;
+        this.rewardLeast = rewardLeast;
+        this.rewardDays = rewardDays;
+        this.savingsMost = savingsMost;
+        this.savingsLeast = savingsLeast;
+        this.savingsAmounts = savingsAmounts;
+        this.savingsPeriods = savingsPeriods;
+    }
+
+    /**
+     * Writes the snapshot in the current storage format.
+     *
+     * @param tag The tag to write to.
+     * @return The same tag.
+     */
+    public CompoundTag write(CompoundTag tag) {
+        tag.putLong("journalSequence", journalSequence);
+        tag.putInt("version", FORMAT_VERSION);
+        tag.putInt("scale", scale);
+        CompoundTag balancesTag = new CompoundTag();
+        balancesTag.putLongArray("most", most);
+        balancesTag.putLongArray("least", least);
+        balancesTag.putLongArray("amounts", amounts);
+        tag.put("balances", balancesTag);
+
+        CompoundTag rewardsTag = new CompoundTag();
+        rewardsTag.putLongArray("most", rewardMost);
+        rewardsTag.putLongArray("least", rewardLeast);
+        rewardsTag.putIntArray("days", rewardDays);
+        tag.put("dailyRewards", rewardsTag);
+
+        CompoundTag savingsTag = new CompoundTag();
+        savingsTag.putLongArray("most", savingsMost);
+        savingsTag.putLongArray("least", savingsLeast);
+        savingsTag.putLongArray("amounts", savingsAmounts);
+        savingsTag.putIntArray("periods", savingsPeriods);
+        tag.put("savings", savingsTag);
+        return tag;
+    }
+
+    /**
+     * Gets the number of accounts in the snapshot.
+     *
+     * @return The number of accounts.
+     */
+    public int size() {
+        return most.length;
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2025 Rosti Studios. All rights reserved.
+ * Licensed under the Rosti Studios Minecraft Mod License (RSMML).
+ * For more information, see the LICENSE file in the project root
+ * or contact us via Discord: https://dsc.gg/rosti-studios
+ */
+package org.rseconomy.rs_economy;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Persistent store for balances, savings and daily reward claims. BalanceManager,
+ * SavingsLedger and RewardManager only talk to this interface; the backend is
+ * selected with the {@code storage.backend} setting.
+ * <p>
+ * Balance writes arrive while the account's balance lock is held, so
+ * {@link #putBalanceMinor} must not block on I/O. Reads of single accounts may
+ * come from any thread.
+ * <p>
+ * Daily reward claims are stored as the epoch day of the last claim. Savings are
+ * stored as the amount at the end of the interest period they were last brought up
+ * to date for, together with that period's number.
+ */
+public interface EconomyStorage {
+    /** Returned by {@link #getDailyRewardDay} for players who never claimed a daily reward. */
+    int NO_CLAIM = Integer.MIN_VALUE;
+    /** Returned by {@link #getSavingsPeriod} for players who never had savings. */
+    int NO_SAVINGS = Integer.MIN_VALUE;
+
+    /**
+     * Retrieves a stored balance.
+     *
+     * @param most  The most significant bits of the player's UUID.
+     * @param least The least significant bits of the player's UUID.
+     * @return The balance in minor units, or 0 if the account does not exist.
+     */
+    long getBalanceMinor(long most, long least);
+
+    /**
+     * Stores a balance. Must return without waiting for the write to reach disk.
+     *
+     * @param most   The most significant bits of the player's UUID.
+     * @param least  The least significant bits of the player's UUID.
+     * @param amount The new balance in minor units.
+     */
+    void putBalanceMinor(long most, long least, long amount);
+
+    /**
+     * Stores a balance given in major units.
+     *
+     * @param uuid   The UUID of the player.
+     * @param amount The new balance.
+     */
+    default void setBalance(UUID uuid, double amount) {
+        putBalanceMinor(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), Money.toMinor(amount));
+    }
+
+    /**
+     * Visits every stored account. The consumer must not call back into the storage.
+     *
+     * @param consumer The consumer receiving the raw UUID bits and balance of each account.
+     */
+    void forEachBalance(AccountTable.EntryConsumer consumer);
+
+    /**
+     * Tells whether the backend holds every account in memory, so single accounts are read
+     * without I/O. BalanceManager then works on the backend directly instead of keeping a
+     * cache, which would be a second copy of every account it touched.
+     *
+     * @return True if reads of single accounts never touch disk.
+     */
+    default boolean isResident() {
+        return false;
+    }
+
+    /**
+     * Retrieves a stored savings amount.
+     *
+     * @param most  The most significant bits of the player's UUID.
+     * @param least The least significant bits of the player's UUID.
+     * @return The savings in minor units as of {@link #getSavingsPeriod}, or 0 if the player has none.
+     */
+    long getSavingsMinor(long most, long least);
+
+    /**
+     * Retrieves the interest period a player's savings were last brought up to date for.
+     *
+     * @param most  The most significant bits of the player's UUID.
+     * @param least The least significant bits of the player's UUID.
+     * @return The period number, or {@link #NO_SAVINGS} if the player has no savings.
+     */
+    int getSavingsPeriod(long most, long least);
+
+    /**
+     * Stores a player's savings along with the interest period they are up to date for.
+     * Must return without waiting for the write to reach disk.
+     *
+     * @param most   The most significant bits of the player's UUID.
+     * @param least  The least significant bits of the player's UUID.
+     * @param amount The savings in minor units.
+     * @param period The period number.
+     */
+    void putSavings(long most, long least, long amount, int period);
+
+    /**
+     * Stores a balance and savings that change together, such as money moved between a
+     * player's wallet and savings. Backends that can persist both as one unit override
+     * this. The default stores the side that gains money first, so a crash in between
+     * can at worst leave the moved amount on both sides, never on neither.
+     *
+     * @param most    The most significant bits of the player's UUID.
+     * @param least   The least significant bits of the player's UUID.
+     * @param balance The new balance in minor units.
+     * @param amount  The new savings in minor units.
+     * @param period  The period number the savings are up to date for.
+     */
+    default void putBalanceAndSavings(long most, long least, long balance, long amount, int period) {
+        if (balance < getBalanceMinor(most, least)) {
+            putSavings(most, least, amount, period);
+            putBalanceMinor(most, least, balance);
+        } else {
+            putBalanceMinor(most, least, balance);
+            putSavings(most, least, amount, period);
+        }
+    }
+
+    /**
+     * Visits every stored savings amount. The consumer must not call back into the storage.
+     *
+     * @param consumer The consumer receiving the raw UUID bits and savings of each account.
+     */
+    void forEachSavings(AccountTable.EntryConsumer consumer);
+
+    /**
+     * Retrieves the day a player last claimed their daily reward.
+     *
+     * @param most  The most significant bits of the player's UUID.
+     * @param least The least significant bits of the player's UUID.
+     * @return The epoch day of the claim, or {@link #NO_CLAIM} if the player never claimed one.
+     */
+    int getDailyRewardDay(long most, long least);
+
+    /**
+     * Stores the day a player claimed their daily reward. Must return without waiting
+     * for the write to reach disk.
+     *
+     * @param most     The most significant bits of the player's UUID.
+     * @param least    The least significant bits of the player's UUID.
+     * @param epochDay The epoch day of the claim.
+     */
+    void setDailyRewardDay(long most, long least, int epochDay);
+
+    /**
+     * Visits every stored daily reward claim. The consumer must not call back into the storage.
+     *
+     * @param consumer The consumer receiving the raw UUID bits and epoch day of each claim.
+     */
+    void forEachDailyReward(AccountTable.EntryConsumer consumer);
+
+    /**
+     * Retrieves the date a player last claimed their daily reward.
+     *
+     * @param uuid The UUID of the player.
+     * @return The claim date, or null if the player never claimed one.
+     */
+    default LocalDate getDailyReward(UUID uuid) {
+        int day = getDailyRewardDay(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        return day == NO_CLAIM ? null : LocalDate.ofEpochDay(day);
+    }
+
+    /**
+     * Stores the date a player claimed their daily reward.
+     *
+     * @param uuid The UUID of the player.
+     * @param date The claim date.
+     */
+    default void setDailyReward(UUID uuid, LocalDate date) {
+        setDailyRewardDay(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), (int) date.toEpochDay());
+    }
+
+    /**
+     * Gets a copy of every stored daily reward claim.
+     *
+     * @return A copy of the claims map.
+     */
+    default Map<UUID, LocalDate> getDailyRewards() {
+        Map<UUID, LocalDate> rewards = new HashMap<>();
+        forEachDailyReward((most, least, day) -> rewards.put(new UUID(most, least), LocalDate.ofEpochDay(day)));
+        return rewards;
+    }
+
+    /**
+     * Called on the server thread whenever the world is saved.
+     */
+    default void save() {
+    }
+
+    /**
+     * Writes everything still pending and releases the backend's resources.
+     * Called once when the server has stopped.
+     */
+    default void close() {
+    }
+}
@@ -27,7 +27,6 @@ import net.minecraft.world.item.component.ResolvableProfile;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -38,11 +37,19 @@ public class LeaderboardMenu extends AbstractContainerMenu {
     private static final String PREV_BASE64 = "eyJ0ZXh0dXJlcyI6eyJTS0lOIjp7InVybCI6Imh0dHA6Ly90ZXh0dXJlcy5taW5lY3JhZnQubmV0L3RleHR1cmUvY2RjOWU0ZGNmYTQyMjFhMWZhZGMxYjViMmIxMWQ4YmVlYjU3ODc5YWYxYzQyMzYyMTQyYmFlMWVkZDUifX19";
     private static final String NEXT_BASE64 = "eyJ0ZXh0dXJlcyI6eyJTS0lOIjp7InVybCI6Imh0dHA6Ly90ZXh0dXJlcy5taW5lY3JhZnQubmV0L3RleHR1cmUvOTU2YTM2MTg0NTllNDNiMjg3YjIyYjdlMjM1ZWM2OTk1OTQ1NDZjNmZjZDZkYzg0YmZjYTRjZjMwYWI5MzExIn19fQ==";
 
+    /** Players ranked below this are additionally shown their approximate percentile. */
+    private static final int EXACT_RANKS = 100;
+    /** Rendered pages shared by all open leaderboard menus. */
+    private static final LeaderboardPageCache PAGES = new LeaderboardPageCache();
+
     private final Container container;
-    private final List<Map.Entry<UUID, Double>> ranking;
+    private final BalanceManager balanceManager;
+    private final RankingIndex ranking;
+    private RankingSnapshot snapshot;
+    private final ProfileResolver profiles;
     private final MinecraftServer server;
     private int page;
-    private final int maxPage;
+    private int maxPage;
     private final boolean largeInventory;
     private final int rows;
 
@@ -51,23 +58,29 @@ public class LeaderboardMenu extends AbstractContainerMenu {
      *
      * @param id      The window ID.
      * @param playerInv The player's inventory.
-     * @param ranking The sorted ranking list.
+     * @param balanceManager The balance manager; pages are read from snapshots of its ranking when shown.
      * @param server  The Minecraft server instance.
      * @param page   The page number (1-based).
      */
-    public LeaderboardMenu(int id, Inventory playerInv, List<Map.Entry<UUID, Double>> ranking, MinecraftServer server, int page) {
-        super(ranking.size() > 18 ? MenuType.GENERIC_9x6 : MenuType.GENERIC_9x3, id);
+    public LeaderboardMenu(int id, Inventory playerInv, BalanceManager balanceManager, MinecraftServer server, int page) {
+        this(id, playerInv, balanceManager, server, page, balanceManager.getRanking().latestSnapshot().size());
+    }
+
+    private LeaderboardMenu(int id, Inventory playerInv, BalanceManager balanceManager, MinecraftServer server, int page, int accounts) {
+        super(accounts > 18 ? MenuType.GENERIC_9x6 : MenuType.GENERIC_9x3, id);
 
-        this.ranking = ranking != null ? ranking : List.of();
+        this.balanceManager = balanceManager;
+        this.ranking = balanceManager.getRanking();
+        this.profiles = RSEconomy.getInstance().getProfileResolver();
         this.server = server;
 
-        this.largeInventory = this.ranking.size() > 18;
+        this.largeInventory = accounts > 18;
         this.rows = largeInventory ? 6 : 3;
 
         this.container = new SimpleContainer(rows * 9);
 
         int pageSize = largeInventory ? 45 : rows * 9;
-        this.maxPage = Math.max(1, (int) Math.ceil(this.ranking.size() / (double) pageSize));
+        this.maxPage = Math.max(1, (int) Math.ceil(accounts / (double) pageSize));
         this.page = Math.max(1, Math.min(page, maxPage));
 
         fillInventory();
@@ -81,19 +94,27 @@ public class LeaderboardMenu extends AbstractContainerMenu {
 
     /**
      * Fills the inventory with player heads representing the leaderboard entries and navigation items.
+     * Pages are read from the shared ranking snapshot, and the heads of a page are rendered
+     * once per snapshot and shared by all viewers.
+     * Heads of players whose profile is not resolved yet are shown as placeholders and
+     * replaced in place once the profile arrives.
      */
     private void fillInventory() {
         int pageSize = largeInventory ? 45 : rows * 9;
+        // Accounts may have been added since the menu was opened
+        RankingSnapshot current = ranking.latestSnapshot();
+        snapshot = current;
+        maxPage = Math.max(1, (int) Math.ceil(current.size() / (double) pageSize));
         int start = (page - 1) * pageSize;
 
+        LeaderboardPageCache.Page entries = PAGES.get(current, profiles.generation(), page, pageSize,
+                () -> renderPage(current.view(start, pageSize), pageSize));
         for (int slot = 0; slot < pageSize; slot++) {
-            int index = start + slot;
-            if (index >= ranking.size()) {
-                container.setItem(slot, ItemStack.EMPTY);
-                continue;
+            container.setItem(slot, entries.items()[slot]);
+            UUID owner = entries.unresolved()[slot];
+            if (owner != null) {
+                patchWhenResolved(slot, owner, entries.amounts()[slot], start + slot + 1);
             }
-            var entry = ranking.get(index);
-            container.setItem(slot, createPlayerSkull(entry.getKey(), entry.getValue(), index + 1));
         }
 
         // Navigation nur bei großen Inventaren UND mehreren Seiten
@@ -104,6 +125,47 @@ public class LeaderboardMenu extends AbstractContainerMenu {
         }
     }
 
+    /**
+     * Renders the heads of one page.
+     *
+     * @param view     The accounts of the page.
+     * @param pageSize The number of entries per page.
+     * @return The rendered page; slots past the last account are null.
+     */
+    private LeaderboardPageCache.Page renderPage(RankingSnapshot.View view, int pageSize) {
+        long[] amounts = new long[pageSize];
+        ItemStack[] entries = new ItemStack[pageSize];
+        UUID[] unresolved = new UUID[pageSize];
+        for (int slot = 0; slot < view.size(); slot++) {
+            UUID uuid = view.playerAt(slot);
+            GameProfile profile = profiles.getCached(uuid);
+            amounts[slot] = view.balanceAt(slot);
+            entries[slot] = createPlayerSkull(uuid, profile, amounts[slot], view.rankAt(slot));
+            if (profile == null) {
+                unresolved[slot] = uuid;
+            }
+        }
+        return new LeaderboardPageCache.Page(entries, unresolved, amounts);
+    }
+
+    /**
+     * Replaces a placeholder head once its player's profile has been resolved, as long
+     * as this menu still shows the same page.
+     *
+     * @param slot   The slot of the head.
+     * @param owner  The player the head belongs to.
+     * @param amount The player's balance in minor units.
+     * @param rank   The player's rank.
+     */
+    private void patchWhenResolved(int slot, UUID owner, long amount, int rank) {
+        int shownPage = page;
+        profiles.resolve(owner, profile -> {
+            if (page != shownPage) return;
+            container.setItem(slot, createPlayerSkull(owner, profile, amount, rank));
+            broadcastChanges();
+        });
+    }
+
     /**
      * Creates a decorative player head with a custom texture.
      *
@@ -144,18 +206,21 @@ public class LeaderboardMenu extends AbstractContainerMenu {
     private void addSelfHead(ServerPlayer player) {
         if (player == null) return;
 
-        double bal = ranking.stream()
-                .filter(e -> e.getKey().equals(player.getUUID()))
-                .map(Map.Entry::getValue)
-                .findFirst().orElse(0.0);
+        // Read from the snapshot the pages were built from, so the own head matches them
+        long bal = snapshot.balanceOf(player.getUUID());
+        int rank = snapshot.rankOf(player.getUUID());
 
-        ItemStack skull = createPlayerSkull(player.getUUID(), bal, getRankOf(player.getUUID()));
+        ItemStack skull = createPlayerSkull(player.getUUID(), player.getGameProfile(), bal, rank);
         skull.set(DataComponents.CUSTOM_NAME, Component.literal(Localization.get("leaderboard.self")));
 
         List<Component> lore = new ArrayList<>();
-        lore.add(Component.literal(Localization.get("leaderboard.balance", bal, BalanceManager.CURRENCY)));
-        int rank = getRankOf(player.getUUID());
+        lore.add(Component.literal(Localization.get("leaderboard.balance", Localization.formatAmount(bal), BalanceManager.CURRENCY)));
         lore.add(Component.literal(rank > 0 ? Localization.get("leaderboard.self.position", rank) : Localization.get("leaderboard.self.position.missing")));
+        if (rank < 0 || rank > EXACT_RANKS) {
+            // Share of accounts at or above the player's balance, from the histogram
+            double top = Math.max(0.01, 100.0 - balanceManager.getPercentile(player.getUUID()));
+            lore.add(Component.literal(Localization.get("leaderboard.self.percentile", top)));
+        }
         skull.set(DataComponents.LORE, new ItemLore(lore));
 
         int slot;
@@ -168,28 +233,17 @@ public class LeaderboardMenu extends AbstractContainerMenu {
         container.setItem(slot, skull);
     }
 
-    /**
-     * Gets the rank of a player by their UUID.
-     *
-     * @param uuid The player's UUID.
-     * @return The rank (1-based) or -1 if not found.
-     */
-    private int getRankOf(UUID uuid) {
-        for (int i = 0; i < ranking.size(); i++) if (ranking.get(i).getKey().equals(uuid)) return i + 1;
-        return -1;
-    }
-
     /**
      * Creates a player skull item representing a player's balance and rank.
      *
      * @param uuid    The player's UUID.
-     * @param balance The player's balance.
+     * @param profile The player's resolved profile, or null for a placeholder head.
+     * @param balance The player's balance in minor units.
      * @param rank    The player's rank.
      * @return ItemStack representing the player's skull.
      */
-    private ItemStack createPlayerSkull(UUID uuid, double balance, int rank) {
+    private ItemStack createPlayerSkull(UUID uuid, GameProfile profile, long balance, int rank) {
         ItemStack skull = new ItemStack(Items.PLAYER_HEAD);
-        GameProfile profile = server.getProfileCache().get(uuid).orElse(null);
         if (profile != null) {
             skull.set(DataComponents.PROFILE, new ResolvableProfile(profile));
         } else {
@@ -200,7 +254,7 @@ public class LeaderboardMenu extends AbstractContainerMenu {
         skull.set(DataComponents.CUSTOM_NAME, Component.literal(display));
 
         List<Component> lore = new ArrayList<>();
-        lore.add(Component.literal(Localization.get("leaderboard.balance", balance, BalanceManager.CURRENCY)));
+        lore.add(Component.literal(Localization.get("leaderboard.balance", Localization.formatAmount(balance), BalanceManager.CURRENCY)));
         skull.set(DataComponents.LORE, new ItemLore(lore));
         return skull;
     }
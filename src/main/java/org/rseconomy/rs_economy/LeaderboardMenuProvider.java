@@ -13,28 +13,24 @@ import net.minecraft.world.entity.player.Inventory;
 import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.inventory.AbstractContainerMenu;
 
-import java.util.List;
-import java.util.Map;
-import java.util.UUID;
-
 /**
  * Provides the leaderboard menu for displaying player rankings.
  */
 public class LeaderboardMenuProvider implements net.minecraft.world.MenuProvider {
 
-    private final List<Map.Entry<UUID, Double>> ranking;
+    private final BalanceManager balanceManager;
     private final MinecraftServer server;
     private final int page;
 
     /**
-     * Constructs a LeaderboardMenuProvider with the specified ranking, server, and page.
+     * Constructs a LeaderboardMenuProvider with the specified balance manager, server, and page.
      *
-     * @param ranking The list of player UUIDs and their balances.
-     * @param server  The Minecraft server instance.
-     * @param page    The current page number for pagination.
+     * @param balanceManager The balance manager whose ranking is shown.
+     * @param server         The Minecraft server instance.
+     * @param page           The current page number for pagination.
      */
-    public LeaderboardMenuProvider(List<Map.Entry<UUID, Double>> ranking, MinecraftServer server, int page) {
-        this.ranking = ranking;
+    public LeaderboardMenuProvider(BalanceManager balanceManager, MinecraftServer server, int page) {
+        this.balanceManager = balanceManager;
         this.server = server;
         this.page = page;
     }
@@ -59,7 +55,7 @@ public class LeaderboardMenuProvider implements net.minecraft.world.MenuProvider
      */
     @Override
     public AbstractContainerMenu createMenu(int id, Inventory inv, Player player) {
-        return new LeaderboardMenu(id, inv, ranking, server, page);
+        return new LeaderboardMenu(id, inv, balanceManager, server, page);
     }
 
     /**
@@ -67,10 +63,10 @@ public class LeaderboardMenuProvider implements net.minecraft.world.MenuProvider
      *
      * @param player  The player to open the menu for.
      * @param server  The Minecraft server instance.
-     * @param ranking The list of player UUIDs and their balances.
+     * @param balanceManager The balance manager whose ranking is shown.
      * @param page    The current page number for pagination.
      */
-    public static void open(ServerPlayer player, MinecraftServer server, List<Map.Entry<UUID, Double>> ranking, int page) {
-        player.openMenu(new LeaderboardMenuProvider(ranking, server, page));
+    public static void open(ServerPlayer player, MinecraftServer server, BalanceManager balanceManager, int page) {
+        player.openMenu(new LeaderboardMenuProvider(balanceManager, server, page));
     }
 }
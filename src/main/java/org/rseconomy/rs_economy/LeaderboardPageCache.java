@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2025 Rosti Studios. All rights reserved.
+ * Licensed under the Rosti Studios Minecraft Mod License (RSMML).
+ * For more information, see the LICENSE file in the project root
+ * or contact us via Discord: https://dsc.gg/rosti-studios
+ */
+package org.rseconomy.rs_economy;
+
+import net.minecraft.world.item.ItemStack;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Cache of rendered leaderboard pages, shared by everyone viewing the leaderboard.
+ * <p>
+ * A page is built once per ranking snapshot, locale and page size, and every viewer
+ * receives copies of the cached items, so menus can never modify the shared page.
+ * All pages are dropped as soon as a newer snapshot, currency name or set of resolved
+ * player profiles is used, so the cache only holds pages of one snapshot, and at most
+ * {@link #MAX_PAGES} of them.
+ */
+public class LeaderboardPageCache {
+    private static final int MAX_PAGES = 64;
+
+    private final Map<Key, Page> pages = new HashMap<>();
+    private RankingSnapshot snapshot;
+    private long profiles = -1;
+    private String currency;
+
+    private record Key(int page, int pageSize, Locale locale) {}
+
+    /**
+     * A rendered page.
+     *
+     * @param items      The heads of the page; slots past the last account are null in the cache
+     *                   and {@link ItemStack#EMPTY} in copies.
+     * @param unresolved The player of each head that was rendered without a resolved profile, or null.
+     * @param amounts    The balance of each head in minor units.
+     */
+    public record Page(ItemStack[] items, UUID[] unresolved, long[] amounts) {}
+
+    /**
+     * Gets a page with copies of its items, building the page if it is not cached.
+     *
+     * @param snapshot The ranking snapshot the page is built from.
+     * @param profiles The generation of the profile resolver the heads are rendered with.
+     * @param page     The page number (1-based).
+     * @param pageSize The number of entries per page.
+     * @param builder  Builds the page from the snapshot; empty slots may be left null.
+     * @return The page, whose items are owned by the caller. The other arrays are shared and must not be modified.
+     */
+    public synchronized Page get(RankingSnapshot snapshot, long profiles, int page, int pageSize, Supplier<Page> builder) {
+        String currentCurrency = BalanceManager.CURRENCY;
+        if (snapshot != this.snapshot || profiles != this.profiles || !Objects.equals(currentCurrency, currency)) {
+            pages.clear();
+            this.snapshot = snapshot;
+            this.profiles = profiles;
+            this.currency = currentCurrency;
+        }
+        Key key = new Key(page, pageSize, Localization.getLocale());
+        Page cached = pages.get(key);
+        if (cached == null) {
+            if (pages.size() >= MAX_PAGES) {
+                pages.clear();
+            }
+            cached = builder.get();
+            pages.put(key, cached);
+        }
+        ItemStack[] items = cached.items();
+        ItemStack[] copy = new ItemStack[items.length];
+        for (int i = 0; i < items.length; i++) {
+            copy[i] = items[i] != null ? items[i].copy() : ItemStack.EMPTY;
+        }
+        return new Page(copy, cached.unresolved(), cached.amounts());
+    }
+}
@@ -28,7 +28,7 @@ import java.util.Map;
 import java.util.UUID;
 
 /**
- * Handles migration from legacy JSON file storage to the new NBT-based EconomyData system.
+ * Handles migration from legacy JSON file storage to the configured EconomyStorage backend.
  * Migrates both user data (balances, daily rewards) and server configuration.
  */
 public class LegacyJsonMigrator {
@@ -44,10 +44,10 @@ public class LegacyJsonMigrator {
      * Attempts to migrate legacy JSON data to the new system.
      *
      * @param server The Minecraft server instance.
-     * @param economyData The EconomyData instance to migrate to.
+     * @param storage The storage backend to migrate to.
      * @return true if migration was attempted (regardless of success), false if no legacy files were found.
      */
-    public static boolean migrateIfNeeded(MinecraftServer server, EconomyData economyData) {
+    public static boolean migrateIfNeeded(MinecraftServer server, EconomyStorage storage) {
         File serverDirectoryFile;
         try {
             // Try newer API (returns Path)
@@ -95,7 +95,7 @@ public class LegacyJsonMigrator {
         // Migrate user data
         if (userDataExists) {
             try {
-                migrateUserData(userDataFile, economyData);
+                migrateUserData(userDataFile, storage);
                 LOGGER.info("Successfully migrated user data from {}", USERDATA_FILENAME);
             } catch (Exception e) {
                 LOGGER.error("Failed to migrate user data: {}", e.getMessage(), e);
@@ -193,12 +193,12 @@ public class LegacyJsonMigrator {
     }
 
     /**
-     * Migrates user data (balances and daily rewards) from JSON to EconomyData.
+     * Migrates user data (balances and daily rewards) from JSON to the storage backend.
      *
      * @param userDataFile The user data JSON file.
-     * @param economyData The EconomyData instance to migrate to.
+     * @param storage The storage backend to migrate to.
      */
-    private static void migrateUserData(File userDataFile, EconomyData economyData) throws IOException, JsonParseException {
+    private static void migrateUserData(File userDataFile, EconomyStorage storage) throws IOException, JsonParseException {
         try (FileReader reader = new FileReader(userDataFile)) {
             Type mapType = new TypeToken<Map<String, Object>>() {}.getType();
             Map<String, Object> data = GSON.fromJson(reader, mapType);
@@ -233,7 +233,7 @@ public class LegacyJsonMigrator {
                         }
                         
                         if (totalBalance > 0) {
-                            economyData.setBalance(uuid, totalBalance);
+                            storage.setBalance(uuid, totalBalance);
                             migratedCount++;
                         }
                     } catch (IllegalArgumentException e) {
@@ -262,7 +262,7 @@ public class LegacyJsonMigrator {
                         }
                         
                         if (date != null) {
-                            economyData.setDailyReward(uuid, date);
+                            storage.setDailyReward(uuid, date);
                             migratedCount++;
                         }
                     } catch (IllegalArgumentException | DateTimeParseException e) {
@@ -6,16 +6,64 @@
  */
 package org.rseconomy.rs_economy;
 
+import java.math.BigDecimal;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
 import java.text.MessageFormat;
 import java.util.Locale;
+import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Handles localization for the RSEconomy mod, providing translated messages.
+ * <p>
+ * Each message pattern is compiled once per loaded locale and cached. Messages without
+ * arguments are cached as their final text. Loading a locale replaces the whole cache.
+ * Numbers are formatted with the symbols of the JVM's default format locale, the same
+ * as {@link MessageFormat#format(String, Object...)} does.
  */
 public class Localization {
-    private static ResourceBundle messages;
+    /** Suffixes of compact amounts, for thousands up to quintillions. */
+    private static final char[] COMPACT_SUFFIXES = {'K', 'M', 'B', 'T', 'Q', 'E'};
+
+    private static volatile Messages messages;
+
+    /**
+     * A loaded locale with its compiled patterns. Compiled entries are either the final
+     * text of a message without arguments or a MessageFormat.
+     */
+    private static final class Messages {
+        final ResourceBundle bundle;
+        final Map<String, Object> compiled = new ConcurrentHashMap<>();
+        final Locale formatLocale = Locale.getDefault(Locale.Category.FORMAT);
+        final char groupingSeparator;
+        final char decimalSeparator;
+
+        Messages(ResourceBundle bundle) {
+            this.bundle = bundle;
+            DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(formatLocale);
+            this.groupingSeparator = symbols.getGroupingSeparator();
+            this.decimalSeparator = symbols.getDecimalSeparator();
+        }
+
+        Object compile(String key) {
+            String pattern;
+            try {
+                pattern = bundle.getString(key);
+            } catch (MissingResourceException e) {
+                return key; // Return the key instead of null for better debugging
+            }
+            try {
+                MessageFormat format = new MessageFormat(pattern, formatLocale);
+                // Without arguments only quoting applies, so the text is final
+                return pattern.indexOf('{') < 0 ? format.format(new Object[0]) : format;
+            } catch (IllegalArgumentException e) {
+                return key;
+            }
+        }
+    }
 
     static {
         init();
@@ -25,7 +73,7 @@ public class Localization {
      * Initializes the ResourceBundle with the configured locale.
      */
     public static void init() {
-        messages = getResourceBundle(Locale.of(ModConfigs.LOCALE.get()));
+        messages = new Messages(getResourceBundle(Locale.of(ModConfigs.LOCALE.get())));
     }
 
     /**
@@ -39,14 +87,24 @@ public class Localization {
             return null;
         }
         try {
-            messages = getResourceBundle(locale);
+            Messages loaded = new Messages(getResourceBundle(locale));
+            messages = loaded;
             ModConfigs.LOCALE.set(locale.toString());
-            return messages.getLocale().getDisplayLanguage();
+            return loaded.bundle.getLocale().getDisplayLanguage();
         } catch (Exception e) {
             return null;
         }
     }
 
+    /**
+     * Gets the locale messages are currently loaded in.
+     *
+     * @return The active locale.
+     */
+    public static Locale getLocale() {
+        return messages().bundle.getLocale();
+    }
+
     /**
      * Retrieves a localized message for the given key, formatted with parameters.
      *
@@ -55,15 +113,129 @@ public class Localization {
      * @return The localized and formatted string, or the key itself if not found.
      */
     public static String get(String key, Object... params) {
+        Messages current = messages();
+        Object compiled = current.compiled.get(key);
+        if (compiled == null) {
+            compiled = current.compiled.computeIfAbsent(key, current::compile);
+        }
+        if (compiled instanceof String text) {
+            return text;
+        }
+        MessageFormat format = (MessageFormat) compiled;
         try {
-            if (messages == null) {
-                init();
+            // MessageFormat keeps state while formatting
+            synchronized (format) {
+                return format.format(params);
             }
-            String message = messages.getString(key);
-            return MessageFormat.format(message, params);
-        } catch (Exception e) {
-            return key; // Return the key instead of null for better debugging
+        } catch (IllegalArgumentException e) {
+            return key;
+        }
+    }
+
+    /**
+     * Formats an amount with grouping and as many decimal places as the currency scale
+     * needs, without trailing zeros, e.g. 1,234,567.5.
+     *
+     * @param minor The amount in minor units.
+     * @return The formatted amount.
+     */
+    public static String formatAmount(long minor) {
+        Messages current = messages();
+        int scale = Money.getScale();
+        long factor = pow10(scale);
+        if (minor == Long.MIN_VALUE) {
+            // Cannot be negated; never a real balance
+            DecimalFormat format = new DecimalFormat("#,##0.######", DecimalFormatSymbols.getInstance(current.formatLocale));
+            return format.format(BigDecimal.valueOf(minor, scale));
+        }
+        StringBuilder out = new StringBuilder(32);
+        if (minor < 0) {
+            out.append('-');
+            minor = -minor;
+        }
+        appendGrouped(out, minor / factor, current.groupingSeparator);
+        long fraction = minor % factor;
+        if (fraction != 0) {
+            int digits = scale;
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                digits--;
+            }
+            out.append(current.decimalSeparator);
+            for (long place = pow10(digits - 1); place > 0; place /= 10) {
+                out.append((char) ('0' + fraction / place % 10));
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Formats an amount in a short form with at most one decimal place and a suffix for
+     * thousands (K), millions (M), billions (B) and so on, e.g. 1.2M. Digits are cut off,
+     * not rounded, so 999,999 becomes 999.9K. Amounts below 1,000 are formatted in full.
+     *
+     * @param minor The amount in minor units.
+     * @return The formatted amount.
+     */
+    public static String formatCompact(long minor) {
+        long major = minor / pow10(Money.getScale());
+        if (major > -1000 && major < 1000) {
+            return formatAmount(minor);
+        }
+        Messages current = messages();
+        StringBuilder out = new StringBuilder(16);
+        if (major < 0) {
+            out.append('-');
+        }
+        // Work with the negative value, which also covers Long.MIN_VALUE
+        long negative = major < 0 ? major : -major;
+        int exponent = 0;
+        long unit = 1;
+        while (exponent < COMPACT_SUFFIXES.length && negative / unit <= -1000) {
+            unit *= 1000;
+            exponent++;
+        }
+        long whole = -(negative / unit);
+        long tenth = -(negative % unit / (unit / 10));
+        out.append(whole);
+        if (tenth != 0) {
+            out.append(current.decimalSeparator).append((char) ('0' + tenth));
+        }
+        return out.append(COMPACT_SUFFIXES[exponent - 1]).toString();
+    }
+
+    private static Messages messages() {
+        Messages current = messages;
+        if (current == null) {
+            init();
+            current = messages;
+        }
+        return current;
+    }
+
+    private static void appendGrouped(StringBuilder out, long value, char separator) {
+        if (value < 1000) {
+            out.append(value);
+            return;
+        }
+        appendGrouped(out, value / 1000, separator);
+        long group = value % 1000;
+        out.append(separator);
+        if (group < 100) {
+            out.append('0');
+        }
+        if (group < 10) {
+            out.append('0');
+        }
+        out.append(group);
+    }
+
+    private static long pow10(int exponent) {
+        long result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result *= 10;
         }
+        return result;
     }
 
     /**
@@ -83,4 +255,4 @@ public class Localization {
             return ResourceBundle.getBundle("locale", Locale.of("en", "US"));
         }
     }
-}
\ No newline at end of file
+}
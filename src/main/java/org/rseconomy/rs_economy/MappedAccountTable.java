@@ -0,0 +1,556 @@
+/*
+ * Copyright (c) 2025 Rosti Studios. All rights reserved.
+ * Licensed under the Rosti Studios Minecraft Mod License (RSMML).
+ * For more information, see the LICENSE file in the project root
+ * or contact us via Discord: https://dsc.gg/rosti-studios
+ */
+package org.rseconomy.rs_economy;
+
+import com.mojang.logging.LogUtils;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongUnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Open-addressing hash table mapping player UUIDs to longs, stored in a memory-mapped
+ * file instead of the Java heap. Records have a fixed width of 32 bytes (UUID halves,
+ * value and a used flag) and are found by linear probing from the UUID hash, so an
+ * opened file is used as it is: nothing is deserialized, and the OS page cache decides
+ * which parts are in memory.
+ * <p>
+ * A paired table, opened with {@link #openPaired}, maps each UUID to two values that
+ * must change together, such as savings and their interest period. Its records are
+ * 64 bytes wide and hold two copies of the pair; the flag word also tells which copy
+ * is current. A change writes the other copy and then switches the flag.
+ * <p>
+ * The table lives in files named {@code <name>-<generation>.seg}. Growing or rewriting
+ * it writes a complete new generation next to the current one and only switches to it
+ * once it is on disk, so there is always one complete file to open. Older generations
+ * are deleted when possible, otherwise on the next open.
+ * <p>
+ * Crash consistency:
+ * <ul>
+ *     <li>Changing a value is a single aligned 8-byte write, so after a crash a record
+ *     holds either its old or its new value. Changing a pair writes the copy that is not
+ *     current, then switches the flag word with one release write, so after a crash a
+ *     record holds either the old or the new pair, never one value of each.</li>
+ *     <li>A new record is written in full before its used flag is set with release
+ *     semantics, and the record never crosses a sector boundary. A crash while adding
+ *     it loses the record, never leaves half of one.</li>
+ *     <li>The record count in the header is only trusted after a clean close; otherwise
+ *     it is counted again on open.</li>
+ *     <li>Writes reach the page cache immediately, so they survive the server process
+ *     crashing. They only survive the machine crashing or losing power once
+ *     {@link #force()} has written them to disk.</li>
+ * </ul>
+ * <p>
+ * This class is not thread-safe. Lookups never throw while racing a writer, at worst
+ * they return a stale value, so callers may read optimistically and validate afterwards.
+ */
+public class MappedAccountTable {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final int MAGIC = 0x52534D54;
+    private static final int VERSION = 1;
+    /** Paired tables have their own version, so neither kind is ever opened as the other. */
+    private static final int PAIRED_VERSION = 2;
+    private static final int HEADER_BYTES = 64;
+    private static final int RECORD_BYTES = 32;
+    private static final int PAIRED_RECORD_BYTES = 64;
+    /** Set in the flag word of every used record. */
+    private static final long USED = 1L;
+    /** Set in the flag word of a paired record whose second copy is current. */
+    private static final long SECOND_COPY = 2L;
+    private static final int INITIAL_CAPACITY = 1024;
+    /** The largest power of two whose records fit into one mapped buffer. */
+    private static final int MAX_CAPACITY = 1 << 25;
+
+    private static final int STATE_INCOMPLETE = 0;
+    private static final int STATE_OPEN = 1;
+    private static final int STATE_CLOSED = 2;
+
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_VERSION = 4;
+    private static final int OFFSET_CAPACITY = 8;
+    private static final int OFFSET_SCALE = 12;
+    private static final int OFFSET_SIZE = 16;
+    private static final int OFFSET_STATE = 24;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final Path directory;
+    private final String name;
+    private final boolean paired;
+    private final int recordBytes;
+    /** Offset of the flag word within a record. */
+    private final int flagOffset;
+    private Region region;
+    private int size;
+    /** Above every generation found on disk, including ones that could not be deleted yet. */
+    private long nextGeneration;
+
+    /**
+     * A mapped file generation. Replaced as a whole, so a lookup that read the field once
+     * always sees a buffer and capacity that belong together.
+     */
+    private record Region(long generation, FileChannel channel, MappedByteBuffer buffer, int capacity) {}
+
+    private MappedAccountTable(Path directory, String name, boolean paired) {
+        this.directory = directory;
+        this.name = name;
+        this.paired = paired;
+        this.recordBytes = paired ? PAIRED_RECORD_BYTES : RECORD_BYTES;
+        this.flagOffset = paired ? 16 : 24;
+    }
+
+    /**
+     * Opens the newest complete generation of a table, or creates an empty one.
+     *
+     * @param directory The directory the table's files are kept in.
+     * @param name      The name of the table, unique within the directory.
+     * @param scale     The scale values are stored in if the table is created, or -1 if they are not amounts.
+     * @return The opened table.
+     * @throws IOException If no generation can be opened or created.
+     */
+    public static MappedAccountTable open(Path directory, String name, int scale) throws IOException {
+        return open(new MappedAccountTable(directory, name, false), scale);
+    }
+
+    /**
+     * Opens the newest complete generation of a paired table, or creates an empty one.
+     * Its values are read with {@link #get} and {@link #getSecond}, and written with
+     * {@link #put(long, long, long, long)}.
+     *
+     * @param directory The directory the table's files are kept in.
+     * @param name      The name of the table, unique within the directory.
+     * @param scale     The scale the first values are stored in if the table is created, or -1 if they are not amounts.
+     * @return The opened table.
+     * @throws IOException If no generation can be opened or created.
+     */
+    public static MappedAccountTable openPaired(Path directory, String name, int scale) throws IOException {
+        return open(new MappedAccountTable(directory, name, true), scale);
+    }
+
+    private static MappedAccountTable open(MappedAccountTable table, int scale) throws IOException {
+        Path directory = table.directory;
+        String name = table.name;
+        Files.createDirectories(directory);
+        List<Long> generations = table.findGenerations();
+        table.nextGeneration = generations.isEmpty() ? 0 : generations.get(0) + 1;
+        for (long generation : generations) {
+            Region region = table.tryMap(generation);
+            if (region != null) {
+                table.region = region;
+                break;
+            }
+        }
+        if (table.region == null) {
+            table.region = table.write(INITIAL_CAPACITY, scale, null);
+        } else if (table.region.buffer().getInt(OFFSET_STATE) == STATE_CLOSED) {
+            table.size = (int) table.region.buffer().getLong(OFFSET_SIZE);
+        } else {
+            table.size = table.count();
+            LOGGER.info("Economy table {} was not closed cleanly, counted {} records", name, table.size);
+        }
+        table.region.buffer().putInt(OFFSET_STATE, STATE_OPEN);
+        table.deleteOtherGenerations();
+        return table;
+    }
+
+    /**
+     * Retrieves the value stored for an account.
+     *
+     * @param most         The most significant bits of the UUID.
+     * @param least        The least significant bits of the UUID.
+     * @param defaultValue The value to return if the account is not present.
+     * @return The stored value, or defaultValue if not found.
+     */
+    public long get(long most, long least, long defaultValue) {
+        Region r = region;
+        int offset = find(r, most, least);
+        return offset >= 0 ? r.buffer().getLong(valueOffset(r.buffer(), offset)) : defaultValue;
+    }
+
+    /**
+     * Retrieves the second value stored for an account in a paired table.
+     *
+     * @param most         The most significant bits of the UUID.
+     * @param least        The least significant bits of the UUID.
+     * @param defaultValue The value to return if the account is not present.
+     * @return The stored second value, or defaultValue if not found.
+     */
+    public long getSecond(long most, long least, long defaultValue) {
+        Region r = region;
+        int offset = find(r, most, least);
+        return offset >= 0 ? r.buffer().getLong(valueOffset(r.buffer(), offset) + 8) : defaultValue;
+    }
+
+    /**
+     * Checks whether an account is present.
+     *
+     * @param most  The most significant bits of the UUID.
+     * @param least The least significant bits of the UUID.
+     * @return True if the account is present.
+     */
+    public boolean containsKey(long most, long least) {
+        return find(region, most, least) >= 0;
+    }
+
+    /**
+     * Stores a value for an account, growing the table first if it is full.
+     *
+     * @param most  The most significant bits of the UUID.
+     * @param least The least significant bits of the UUID.
+     * @param value The value to store.
+     * @throws IllegalStateException If the table had to grow and the new generation could not be written.
+     */
+    public void put(long most, long least, long value) {
+        if (paired) {
+            throw new IllegalStateException("Economy table " + name + " stores pairs");
+        }
+        int offset = find(region, most, least);
+        if (offset >= 0) {
+            // A single-copy atomic write, so a crash cannot tear the value
+            LONGS.setOpaque(region.buffer(), offset + 16, value);
+            return;
+        }
+        if ((size + 1L) * 10 > region.capacity() * 7L) {
+            grow();
+        }
+        insert(region, most, least, value, 0L);
+        size++;
+        region.buffer().putLong(OFFSET_SIZE, size);
+    }
+
+    /**
+     * Stores both values for an account in a paired table, growing the table first if it
+     * is full. Readers and a crash see either both old or both new values.
+     *
+     * @param most   The most significant bits of the UUID.
+     * @param least  The least significant bits of the UUID.
+     * @param value  The first value to store.
+     * @param second The second value to store.
+     * @throws IllegalStateException If the table had to grow and the new generation could not be written.
+     */
+    public void put(long most, long least, long value, long second) {
+        if (!paired) {
+            throw new IllegalStateException("Economy table " + name + " stores single values");
+        }
+        int offset = find(region, most, least);
+        if (offset >= 0) {
+            MappedByteBuffer buffer = region.buffer();
+            long flag = buffer.getLong(offset + flagOffset);
+            int copy = offset + ((flag & SECOND_COPY) == 0 ? 40 : 24);
+            buffer.putLong(copy, value);
+            buffer.putLong(copy + 8, second);
+            // Publishes the written copy with a single release write
+            LONGS.setRelease(buffer, offset + flagOffset, flag ^ SECOND_COPY);
+            return;
+        }
+        if ((size + 1L) * 10 > region.capacity() * 7L) {
+            grow();
+        }
+        insert(region, most, least, value, second);
+        size++;
+        region.buffer().putLong(OFFSET_SIZE, size);
+    }
+
+    /**
+     * Visits every account in slot order.
+     *
+     * @param consumer The consumer receiving the raw UUID bits and value of each account.
+     */
+    public void forEach(AccountTable.EntryConsumer consumer) {
+        MappedByteBuffer buffer = region.buffer();
+        int end = HEADER_BYTES + region.capacity() * recordBytes;
+        for (int offset = HEADER_BYTES; offset < end; offset += recordBytes) {
+            if ((long) LONGS.getAcquire(buffer, offset + flagOffset) != 0) {
+                consumer.accept(buffer.getLong(offset), buffer.getLong(offset + 8),
+                        buffer.getLong(valueOffset(buffer, offset)));
+            }
+        }
+    }
+
+    /**
+     * Gets the number of accounts in the table.
+     *
+     * @return The number of accounts.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the scale the values were stored in.
+     *
+     * @return The scale, or -1 if the values are not amounts.
+     */
+    public int scale() {
+        return region.buffer().getInt(OFFSET_SCALE);
+    }
+
+    /**
+     * Converts every value into a new generation of the table, for example after the
+     * currency scale changed. Only the first value of a pair is converted. The current generation stays untouched until the new one
+     * is complete on disk.
+     *
+     * @param scale   The scale of the converted values.
+     * @param convert Maps each stored value to its converted value.
+     * @throws IOException If the new generation cannot be written.
+     */
+    public void rewrite(int scale, LongUnaryOperator convert) throws IOException {
+        replace(write(region.capacity(), scale, convert));
+    }
+
+    /**
+     * Writes all changes in the mapped file to disk, so they survive a crash of the machine.
+     */
+    public void force() {
+        region.buffer().force();
+    }
+
+    /**
+     * Writes all changes to disk, marks the file as closed cleanly and releases it.
+     * The table must not be used afterwards.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    public void close() throws IOException {
+        MappedByteBuffer buffer = region.buffer();
+        buffer.force();
+        buffer.putInt(OFFSET_STATE, STATE_CLOSED);
+        buffer.force(OFFSET_STATE, 4);
+        region.channel().close();
+    }
+
+    /**
+     * Finds the record of an account.
+     *
+     * @return The byte offset of the record, or -1 if the account is not present.
+     */
+    private int find(Region r, long most, long least) {
+        MappedByteBuffer buffer = r.buffer();
+        int mask = r.capacity() - 1;
+        int slot = (int) AccountTable.mix(most, least) & mask;
+        // Bounded, so a racing writer can at worst produce a miss, never an endless probe
+        for (int probes = 0; probes <= mask; probes++) {
+            int offset = HEADER_BYTES + slot * recordBytes;
+            if ((long) LONGS.getAcquire(buffer, offset + flagOffset) == 0) {
+                return -1;
+            }
+            if (buffer.getLong(offset) == most && buffer.getLong(offset + 8) == least) {
+                return offset;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the offset of a record's current value; in a paired table the second value
+     * follows it.
+     */
+    private int valueOffset(MappedByteBuffer buffer, int offset) {
+        if (!paired) {
+            return offset + 16;
+        }
+        return offset + (((long) LONGS.getAcquire(buffer, offset + flagOffset) & SECOND_COPY) == 0 ? 24 : 40);
+    }
+
+    /**
+     * Adds a record for an account that is not present. The used flag is set last, so
+     * the record only becomes visible, to readers and after a crash, once it is complete.
+     * The second value is only stored in a paired table.
+     */
+    private void insert(Region r, long most, long least, long value, long second) {
+        MappedByteBuffer buffer = r.buffer();
+        int mask = r.capacity() - 1;
+        int slot = (int) AccountTable.mix(most, least) & mask;
+        int offset = HEADER_BYTES + slot * recordBytes;
+        while ((long) LONGS.getAcquire(buffer, offset + flagOffset) != 0) {
+            slot = (slot + 1) & mask;
+            offset = HEADER_BYTES + slot * recordBytes;
+        }
+        buffer.putLong(offset, most);
+        buffer.putLong(offset + 8, least);
+        if (paired) {
+            buffer.putLong(offset + 24, value);
+            buffer.putLong(offset + 32, second);
+        } else {
+            buffer.putLong(offset + 16, value);
+        }
+        LONGS.setRelease(buffer, offset + flagOffset, USED);
+    }
+
+    private void grow() {
+        if (region.capacity() >= MAX_CAPACITY) {
+            throw new IllegalStateException("Economy table " + name + " is full");
+        }
+        try {
+            replace(write(region.capacity() * 2, scale(), LongUnaryOperator.identity()));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to grow economy table " + name, e);
+        }
+    }
+
+    /**
+     * Switches to a newly written generation and retires the current one.
+     */
+    private void replace(Region next) throws IOException {
+        Region previous = region;
+        next.buffer().putInt(OFFSET_STATE, STATE_OPEN);
+        region = next;
+        // Still mapped; lookups that read the old region keep working until it is collected
+        previous.channel().close();
+        deleteOtherGenerations();
+    }
+
+    /**
+     * Writes a complete generation and forces it to disk before marking it complete.
+     *
+     * @param source Converts the records of the current generation into the new one, or null to start empty.
+     */
+    private Region write(int capacity, int scale, LongUnaryOperator source) throws IOException {
+        long generation = nextGeneration++;
+        Path file = directory.resolve(name + "-" + generation + ".seg");
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_BYTES + (long) capacity * recordBytes);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(OFFSET_MAGIC, MAGIC);
+            buffer.putInt(OFFSET_VERSION, paired ? PAIRED_VERSION : VERSION);
+            buffer.putInt(OFFSET_CAPACITY, capacity);
+            buffer.putInt(OFFSET_SCALE, scale);
+            buffer.putInt(OFFSET_STATE, STATE_INCOMPLETE);
+            Region next = new Region(generation, channel, buffer, capacity);
+            int count = 0;
+            if (source != null) {
+                MappedByteBuffer old = region.buffer();
+                int end = HEADER_BYTES + region.capacity() * recordBytes;
+                for (int offset = HEADER_BYTES; offset < end; offset += recordBytes) {
+                    if (old.getLong(offset + flagOffset) != 0) {
+                        int value = valueOffset(old, offset);
+                        insert(next, old.getLong(offset), old.getLong(offset + 8),
+                                source.applyAsLong(old.getLong(value)), paired ? old.getLong(value + 8) : 0L);
+                        count++;
+                    }
+                }
+            }
+            buffer.putLong(OFFSET_SIZE, count);
+            buffer.force();
+            // Only a complete generation on disk may replace the previous one
+            buffer.putInt(OFFSET_STATE, STATE_CLOSED);
+            buffer.force(OFFSET_STATE, 4);
+            size = count;
+            return next;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    /**
+     * Maps a generation if it is a complete file of this format.
+     *
+     * @return The mapped generation, or null if it is incomplete or damaged.
+     */
+    private Region tryMap(long generation) {
+        Path file = directory.resolve(name + "-" + generation + ".seg");
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long length = channel.size();
+            if (length >= HEADER_BYTES) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                int capacity = buffer.getInt(OFFSET_CAPACITY);
+                if (buffer.getInt(OFFSET_MAGIC) == MAGIC
+                        && buffer.getInt(OFFSET_VERSION) == (paired ? PAIRED_VERSION : VERSION)
+                        && buffer.getInt(OFFSET_STATE) != STATE_INCOMPLETE
+                        && capacity > 0 && Integer.bitCount(capacity) == 1 && capacity <= MAX_CAPACITY
+                        && length == HEADER_BYTES + (long) capacity * recordBytes) {
+                    return new Region(generation, channel, buffer, capacity);
+                }
+            }
+            LOGGER.warn("Ignoring incomplete economy table file {}", file.getFileName());
+        } catch (IOException e) {
+            LOGGER.warn("Failed to open economy table file {}: {}", file.getFileName(), e.getMessage());
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Nothing to release
+            }
+        }
+        return null;
+    }
+
+    private int count() {
+        int count = 0;
+        MappedByteBuffer buffer = region.buffer();
+        int end = HEADER_BYTES + region.capacity() * recordBytes;
+        for (int offset = HEADER_BYTES; offset < end; offset += recordBytes) {
+            if (buffer.getLong(offset + flagOffset) != 0) {
+                count++;
+            }
+        }
+        region.buffer().putLong(OFFSET_SIZE, count);
+        return count;
+    }
+
+    /**
+     * Lists the generations of this table on disk, newest first.
+     */
+    private List<Long> findGenerations() throws IOException {
+        Pattern pattern = Pattern.compile(Pattern.quote(name) + "-(\\d+)\\.seg");
+        List<Long> generations = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = pattern.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    try {
+                        generations.add(Long.parseLong(matcher.group(1)));
+                    } catch (NumberFormatException e) {
+                        // Skip files that only look like generations
+                    }
+                }
+            });
+        }
+        generations.sort((a, b) -> Long.compare(b, a));
+        return generations;
+    }
+
+    private void deleteOtherGenerations() {
+        try {
+            for (long generation : findGenerations()) {
+                if (generation != region.generation()) {
+                    try {
+                        Files.deleteIfExists(directory.resolve(name + "-" + generation + ".seg"));
+                    } catch (IOException e) {
+                        // Some systems refuse to delete a file that is still mapped; retried on the next open
+                        LOGGER.debug("Could not delete old economy table file yet: {}", e.getMessage());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Failed to list economy table files: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright (c) 2025 Rosti Studios. All rights reserved.
+ * Licensed under the Rosti Studios Minecraft Mod License (RSMML).
+ * For more information, see the LICENSE file in the project root
+ * or contact us via Discord: https://dsc.gg/rosti-studios
+ */
+package org.rseconomy.rs_economy;
+
+import com.mojang.logging.LogUtils;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Storage backend that keeps balances, savings and daily reward claims off the Java heap, in
+ * memory-mapped {@link MappedAccountTable} files. Meant for servers with millions of
+ * accounts, whose on-heap tables would be large arrays for the garbage collector to
+ * scan and copy.
+ * <p>
+ * Accounts are spread over {@link #SEGMENTS} segments by the same UUID hash bits that
+ * select BalanceManager's lock stripes, each with its own files and lock, so a segment
+ * that grows only blocks its own accounts. Opening the storage maps the files without
+ * reading them, and the OS page cache keeps the parts that are used in memory.
+ * <p>
+ * The balances themselves stay off the heap, but the leaderboard does not: on every
+ * start, BalanceManager reads every mapped balance once to build its {@link RankingIndex}
+ * and histogram on the heap. That scan touches every page of the balance files, and the
+ * ranking takes about 100 bytes of heap per account.
+ * <p>
+ * Every change is in the page cache as soon as it is made, so it survives a crash of the
+ * server process. On every world save the files are written to disk in the background;
+ * if the machine itself crashes, changes since then may be lost, as with the nbt backend.
+ */
+public class MappedEconomyStorage implements EconomyStorage {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    /** Matches BalanceManager's concurrent lock stripes; fixed so the file layout never changes. */
+    private static final int SEGMENTS = 64;
+
+    private final MappedAccountTable[] balances = new MappedAccountTable[SEGMENTS];
+    private final MappedAccountTable[] dailyRewards = new MappedAccountTable[SEGMENTS];
+    /** Paired tables of savings and the interest period they are up to date for. */
+    private final MappedAccountTable[] savings = new MappedAccountTable[SEGMENTS];
+    private final StampedLock[] locks = new StampedLock[SEGMENTS];
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "RSEconomy-Storage");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private MappedEconomyStorage() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            locks[i] = new StampedLock();
+        }
+    }
+
+    /**
+     * Opens or creates the storage files in a directory.
+     * Stored balances are converted if the currency scale changed since the last start.
+     *
+     * @param directory The directory the files are kept in.
+     * @return The opened storage.
+     * @throws IOException If a file cannot be opened, created or converted.
+     */
+    public static MappedEconomyStorage open(Path directory) throws IOException {
+        MappedEconomyStorage storage = new MappedEconomyStorage();
+        int scale = Money.getScale();
+        int converted = 0;
+        try {
+            for (int i = 0; i < SEGMENTS; i++) {
+                String suffix = String.format("-%02d", i);
+                MappedAccountTable table = MappedAccountTable.open(directory, "balances" + suffix, scale);
+                storage.balances[i] = table;
+                int storedScale = table.scale();
+                if (storedScale != scale) {
+                    table.rewrite(scale, amount -> Money.rescale(amount, storedScale));
+                    converted += table.size();
+                }
+                storage.dailyRewards[i] = MappedAccountTable.open(directory, "rewards" + suffix, -1);
+                MappedAccountTable savingsTable = MappedAccountTable.openPaired(directory, "savings-accounts" + suffix, scale);
+                storage.savings[i] = savingsTable;
+                int storedSavingsScale = savingsTable.scale();
+                if (storedSavingsScale != scale) {
+                    savingsTable.rewrite(scale, amount -> Money.rescale(amount, storedSavingsScale));
+                    converted += savingsTable.size();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            storage.close();
+            throw e;
+        }
+        if (converted > 0) {
+            LOGGER.info("Converted {} balances and savings to scale {}", converted, scale);
+        }
+        return storage;
+    }
+
+    @Override
+    public long getBalanceMinor(long most, long least) {
+        return read(balances, most, least, 0L);
+    }
+
+    @Override
+    public void putBalanceMinor(long most, long least, long amount) {
+        write(balances, most, least, amount);
+    }
+
+    @Override
+    public boolean isResident() {
+        return true;
+    }
+
+    @Override
+    public void forEachBalance(AccountTable.EntryConsumer consumer) {
+        forEach(balances, consumer);
+    }
+
+    @Override
+    public long getSavingsMinor(long most, long least) {
+        return read(savings, most, least, 0L);
+    }
+
+    @Override
+    public int getSavingsPeriod(long most, long least) {
+        int segment = segmentOf(most, least);
+        StampedLock lock = locks[segment];
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            long period = savings[segment].getSecond(most, least, NO_SAVINGS);
+            if (lock.validate(stamp)) {
+                return (int) period;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return (int) savings[segment].getSecond(most, least, NO_SAVINGS);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void putSavings(long most, long least, long amount, int period) {
+        int segment = segmentOf(most, least);
+        long stamp = locks[segment].writeLock();
+        try {
+            // One record, so a crash keeps either the old or the new pair
+            savings[segment].put(most, least, amount, period);
+        } finally {
+            locks[segment].unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void forEachSavings(AccountTable.EntryConsumer consumer) {
+        forEach(savings, consumer);
+    }
+
+    @Override
+    public int getDailyRewardDay(long most, long least) {
+        return (int) read(dailyRewards, most, least, NO_CLAIM);
+    }
+
+    @Override
+    public void setDailyRewardDay(long most, long least, int epochDay) {
+        write(dailyRewards, most, least, epochDay);
+    }
+
+    @Override
+    public void forEachDailyReward(AccountTable.EntryConsumer consumer) {
+        forEach(dailyRewards, consumer);
+    }
+
+    /**
+     * Checks whether the storage holds no accounts, savings and daily reward claims.
+     *
+     * @return True if the storage is empty.
+     */
+    public boolean isEmpty() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            long stamp = locks[i].readLock();
+            try {
+                if (balances[i].size() > 0 || dailyRewards[i].size() > 0 || savings[i].size() > 0) {
+                    return false;
+                }
+            } finally {
+                locks[i].unlockRead(stamp);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies all balances, savings and daily reward claims of another storage into this one.
+     *
+     * @param source The storage to copy from.
+     */
+    public void importFrom(EconomyStorage source) {
+        int[] counts = {0, 0, 0};
+        source.forEachBalance((most, least, amount) -> {
+            putBalanceMinor(most, least, amount);
+            counts[0]++;
+        });
+        source.forEachDailyReward((most, least, day) -> {
+            setDailyRewardDay(most, least, (int) day);
+            counts[1]++;
+        });
+        // Periods are read afterwards, as the consumer must not call back into the source
+        AccountTable imported = new AccountTable();
+        source.forEachSavings(imported::put);
+        imported.forEach((most, least, amount) -> {
+            putSavings(most, least, amount, source.getSavingsPeriod(most, least));
+            counts[2]++;
+        });
+        LOGGER.info("Imported {} accounts, {} savings and {} daily reward claims into the mapped economy storage",
+                counts[0], counts[2], counts[1]);
+    }
+
+    /**
+     * Writes the mapped files to disk on the background thread.
+     */
+    @Override
+    public void save() {
+        writer.execute(this::force);
+    }
+
+    /**
+     * Waits for the background thread, then writes and closes every file.
+     */
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(30, TimeUnit.SECONDS)) {
+                LOGGER.warn("Timed out waiting for economy storage to be written");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (int i = 0; i < SEGMENTS; i++) {
+            long stamp = locks[i].writeLock();
+            try {
+                close(balances[i]);
+                close(dailyRewards[i]);
+                close(savings[i]);
+            } finally {
+                locks[i].unlockWrite(stamp);
+            }
+        }
+    }
+
+    private void force() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            // Keeps the segment from switching files while they are written
+            long stamp = locks[i].readLock();
+            try {
+                balances[i].force();
+                dailyRewards[i].force();
+                savings[i].force();
+            } catch (RuntimeException e) {
+                LOGGER.error("Failed to write economy storage segment {}: {}", i, e.getMessage(), e);
+            } finally {
+                locks[i].unlockRead(stamp);
+            }
+        }
+    }
+
+    private long read(MappedAccountTable[] tables, long most, long least, long defaultValue) {
+        int segment = segmentOf(most, least);
+        StampedLock lock = locks[segment];
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            long value = tables[segment].get(most, least, defaultValue);
+            if (lock.validate(stamp)) {
+                return value;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return tables[segment].get(most, least, defaultValue);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private void write(MappedAccountTable[] tables, long most, long least, long value) {
+        int segment = segmentOf(most, least);
+        long stamp = locks[segment].writeLock();
+        try {
+            tables[segment].put(most, least, value);
+        } finally {
+            locks[segment].unlockWrite(stamp);
+        }
+    }
+
+    private void forEach(MappedAccountTable[] tables, AccountTable.EntryConsumer consumer) {
+        for (int i = 0; i < SEGMENTS; i++) {
+            long stamp = locks[i].readLock();
+            try {
+                tables[i].forEach(consumer);
+            } finally {
+                locks[i].unlockRead(stamp);
+            }
+        }
+    }
+
+    private static void close(MappedAccountTable table) {
+        if (table == null) {
+            return;
+        }
+        try {
+            table.close();
+        } catch (IOException e) {
+            LOGGER.error("Failed to close economy storage file: {}", e.getMessage(), e);
+        }
+    }
+
+    private static int segmentOf(long most, long least) {
+        // The same bits as ConcurrentAccountTable's stripes, so one stripe maps to one segment
+        return (int) (AccountTable.mix(most, least) >>> 40) & (SEGMENTS - 1);
+    }
+}
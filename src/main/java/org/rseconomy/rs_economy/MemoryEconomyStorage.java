@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2025 Rosti Studios. All rights reserved.
+ * Licensed under the Rosti Studios Minecraft Mod License (RSMML).
+ * For more information, see the LICENSE file in the project root
+ * or contact us via Discord: https://dsc.gg/rosti-studios
+ */
+package org.rseconomy.rs_economy;
+
+/**
+ * Storage backend that keeps everything in memory and never writes to disk.
+ * Intended for tests and benchmarks; all data is lost when the server stops.
+ */
+public class MemoryEconomyStorage implements EconomyStorage {
+    private final ConcurrentAccountTable balances = new ConcurrentAccountTable(BalanceManager.lockStripes(), null);
+    private final ConcurrentAccountTable dailyRewards = new ConcurrentAccountTable(BalanceManager.lockStripes(), null);
+    private final SavingsTable savings = new SavingsTable(BalanceManager.lockStripes());
+
+    @Override
+    public long getBalanceMinor(long most, long least) {
+        return balances.get(most, least, 0L);
+    }
+
+    @Override
+    public void putBalanceMinor(long most, long least, long amount) {
+        balances.load(most, least, amount);
+    }
+
+    @Override
+    public boolean isResident() {
+        return true;
+    }
+
+    @Override
+    public void forEachBalance(AccountTable.EntryConsumer consumer) {
+        balances.forEach(consumer);
+    }
+
+    @Override
+    public long getSavingsMinor(long most, long least) {
+        return savings.getAmount(most, least);
+    }
+
+    @Override
+    public int getSavingsPeriod(long most, long least) {
+        return savings.getPeriod(most, least);
+    }
+
+    @Override
+    public void putSavings(long most, long least, long amount, int period) {
+        savings.put(most, least, amount, period);
+    }
+
+    @Override
+    public void forEachSavings(AccountTable.EntryConsumer consumer) {
+        savings.forEach(consumer);
+    }
+
+    @Override
+    public int getDailyRewardDay(long most, long least) {
+        return (int) dailyRewards.get(most, least, NO_CLAIM);
+    }
+
+    @Override
+    public void setDailyRewardDay(long most, long least, int epochDay) {
+        dailyRewards.load(most, least, epochDay);
+    }
+
+    @Override
+    public void forEachDailyReward(AccountTable.EntryConsumer consumer) {
+        dailyRewards.forEach(consumer);
+    }
+}
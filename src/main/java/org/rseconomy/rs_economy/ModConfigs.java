@@ -8,16 +8,33 @@ package org.rseconomy.rs_economy;
 
 import net.neoforged.neoforge.common.ModConfigSpec;
 
+import java.time.DateTimeException;
+import java.time.ZoneId;
+
 /**
  * Defines configuration settings for the RSEconomy mod.
  */
 public class ModConfigs {
     public static final ModConfigSpec COMMON_CONFIG;
     public static final ModConfigSpec.ConfigValue<String> CURRENCY;
+    public static final ModConfigSpec.ConfigValue<Integer> CURRENCY_SCALE;
     public static final ModConfigSpec.ConfigValue<Boolean> LEADERBOARD_STATUS;
+    public static final ModConfigSpec.ConfigValue<Boolean> CONCURRENT_ACCESS;
+    public static final ModConfigSpec.ConfigValue<Integer> BALANCE_CACHE_SIZE;
+    public static final ModConfigSpec.ConfigValue<String> STORAGE_BACKEND;
+    public static final ModConfigSpec.ConfigValue<Integer> STORAGE_SHARDS;
+    public static final ModConfigSpec.ConfigValue<Boolean> ASYNC_SAVE;
+    public static final ModConfigSpec.ConfigValue<Integer> SQLITE_FLUSH_INTERVAL;
+    public static final ModConfigSpec.ConfigValue<Boolean> JOURNAL_ENABLED;
+    public static final ModConfigSpec.ConfigValue<Integer> JOURNAL_COMMIT_INTERVAL;
     public static final ModConfigSpec.ConfigValue<String> LOCALE;
     public static final ModConfigSpec.ConfigValue<Integer> DAILY_REWARD_MIN;
     public static final ModConfigSpec.ConfigValue<Integer> DAILY_REWARD_MAX;
+    public static final ModConfigSpec.ConfigValue<String> DAILY_REWARD_TIMEZONE;
+    public static final ModConfigSpec.ConfigValue<String> SWEEP_RULES;
+    public static final ModConfigSpec.ConfigValue<Integer> SWEEP_TICK_BUDGET;
+    public static final ModConfigSpec.ConfigValue<String> SAVINGS_INTEREST_RATE;
+    public static final ModConfigSpec.ConfigValue<Integer> SAVINGS_INTEREST_PERIOD;
 
     static {
         ModConfigSpec.Builder builder = new ModConfigSpec.Builder();
@@ -27,10 +44,69 @@ public class ModConfigs {
                 .comment("The name of the currency used in the economy system")
                 .define("currency", "Coins", s -> s instanceof String && !((String) s).isEmpty());
 
+        CURRENCY_SCALE = builder
+                .comment("Number of decimal places balances are stored with (0-6). Takes effect on the next server start;",
+                        "existing balances are converted automatically")
+                .define("currency.scale", 2, i -> i instanceof Integer && (Integer) i >= 0 && (Integer) i <= Money.MAX_SCALE);
+
         LEADERBOARD_STATUS = builder
                 .comment("Enable or disable the in-game leaderboard display")
                 .define("leaderboard.status", true, b -> b instanceof Boolean);
 
+        CONCURRENT_ACCESS = builder
+                .comment("Spread balance locking over many stripes so other mods can update balances from",
+                        "async threads without contending on one lock. When disabled a single lock is used.",
+                        "Takes effect on the next server start")
+                .define("balances.concurrent", true, b -> b instanceof Boolean);
+
+        BALANCE_CACHE_SIZE = builder
+                .comment("Maximum number of accounts kept in the balance cache. Accounts are read from storage",
+                        "when first used and the least recently used ones are dropped when the cache is full.",
+                        "0 keeps every account that was used. Only used by the sqlite backend; the nbt and memory",
+                        "backends hold every account already and are used directly. This bounds only the cache: the",
+                        "leaderboard still reads every account on server start and keeps about 100 bytes of memory",
+                        "for each one. Takes effect on the next server start")
+                .define("balances.cache_size", 10000, i -> i instanceof Integer && (Integer) i >= 0);
+
+        STORAGE_BACKEND = builder
+                .comment("Where balances are stored: \"nbt\" keeps them in the world's data folder and rewrites",
+                        "changed files on every save, \"sqlite\" keeps them in a database file that is updated",
+                        "per account, \"mapped\" keeps them in memory-mapped files outside the Java heap for",
+                        "servers with millions of accounts, \"memory\" never stores them (for testing only).",
+                        "Every backend is read in full on server start to build the leaderboard, which is kept",
+                        "on the Java heap at about 100 bytes per account, also with mapped.",
+                        "When switching to sqlite or mapped, existing nbt data is imported. Takes effect on the next",
+                        "server start")
+                .define("storage.backend", "nbt",
+                        s -> "nbt".equals(s) || "sqlite".equals(s) || "mapped".equals(s) || "memory".equals(s));
+
+        STORAGE_SHARDS = builder
+                .comment("Number of files balances are split over (1-256). A save only rewrites the files whose",
+                        "accounts changed, so large servers benefit from more shards. 1 keeps the single",
+                        "rs_economy file. Existing data is converted automatically on the next server start")
+                .define("storage.shards", 1, i -> i instanceof Integer && (Integer) i >= 1 && (Integer) i <= 256);
+
+        ASYNC_SAVE = builder
+                .comment("Write balances on a background thread during world saves. The server thread only copies",
+                        "the data, which avoids a lag spike on autosave and /save-all with many accounts.",
+                        "Takes effect on the next server start")
+                .define("storage.async_save", false, b -> b instanceof Boolean);
+
+        SQLITE_FLUSH_INTERVAL = builder
+                .comment("Milliseconds between database writes of the sqlite backend (10-60000). Changes within",
+                        "one interval are written in one transaction; at most this much time is lost on a crash")
+                .define("storage.sqlite.flush_interval", 1000, i -> i instanceof Integer && (Integer) i >= 10 && (Integer) i <= 60000);
+
+        JOURNAL_ENABLED = builder
+                .comment("Append every balance change to a journal in the world's data folder, so changes made",
+                        "since the last world save survive a crash. Takes effect on the next server start")
+                .define("journal.enabled", true, b -> b instanceof Boolean);
+
+        JOURNAL_COMMIT_INTERVAL = builder
+                .comment("Milliseconds between journal flushes to disk (1-1000). Changes within one interval",
+                        "are written together; at most this much time is lost on a crash")
+                .define("journal.commit_interval", 50, i -> i instanceof Integer && (Integer) i >= 1 && (Integer) i <= 1000);
+
         LOCALE = builder
                 .comment("Locale for the mod (e.g., en_US, de_DE)")
                 .define("locale", "en_US", s -> s instanceof String && ((String) s).matches("[a-z]{2}_[A-Z]{2}"));
@@ -43,7 +119,74 @@ public class ModConfigs {
                 .comment("Maximum amount for daily rewards")
                 .define("daily.reward.max", 500, i -> i instanceof Integer && (Integer) i >= 0);
 
+        DAILY_REWARD_TIMEZONE = builder
+                .comment("Time zone whose midnight starts a new daily reward day, e.g. UTC or Europe/Berlin.",
+                        "\"default\" uses the time zone of the server")
+                .define("daily.reward.timezone", "default", s -> s instanceof String && isTimeZone((String) s));
+
+        SWEEP_RULES = builder
+                .comment("Periodic changes applied to every account, separated by semicolons. Each rule is",
+                        "<name>=<tax|upkeep|interest> <amount>[%] [above <threshold>] every <number><m|h|d>, e.g.",
+                        "\"wealth_tax=tax 1% above 100000 every 1d; upkeep=upkeep 50 every 7d\". Rules see wallet plus",
+                        "savings; debits come from the wallet first, credits go to the wallet. Percentages apply to",
+                        "the part of the balance above the threshold; debits never go below it. Empty disables sweeps")
+                .define("sweep.rules", "", s -> s instanceof String && isSweepRules((String) s));
+
+        SWEEP_TICK_BUDGET = builder
+                .comment("Milliseconds per server tick a running sweep may spend changing balances (1-50)")
+                .define("sweep.tick_budget_ms", 2, i -> i instanceof Integer && (Integer) i >= 1 && (Integer) i <= 50);
+
+        SAVINGS_INTEREST_RATE = builder
+                .comment("Interest in percent that savings earn per interest period, with up to four decimal places",
+                        "(0-100). Interest compounds every period. 0 disables interest. Takes effect on the next server",
+                        "start; savings are first brought up to date with the previous rate")
+                .define("savings.interest_rate", "0.1", s -> s instanceof String && isRate((String) s));
+
+        SAVINGS_INTEREST_PERIOD = builder
+                .comment("Hours per savings interest period (1-8760). Takes effect on the next server start")
+                .define("savings.interest_period_hours", 24, i -> i instanceof Integer && (Integer) i >= 1 && (Integer) i <= 8760);
+
         builder.pop();
         COMMON_CONFIG = builder.build();
     }
-}
\ No newline at end of file
+
+    /**
+     * Resolves the configured daily reward time zone.
+     *
+     * @return The time zone, or the server's default one.
+     */
+    public static ZoneId getDailyRewardZone() {
+        String zone = DAILY_REWARD_TIMEZONE.get();
+        return "default".equals(zone) ? ZoneId.systemDefault() : ZoneId.of(zone);
+    }
+
+    private static boolean isTimeZone(String zone) {
+        if ("default".equals(zone)) {
+            return true;
+        }
+        try {
+            ZoneId.of(zone);
+            return true;
+        } catch (DateTimeException e) {
+            return false;
+        }
+    }
+
+    private static boolean isSweepRules(String rules) {
+        try {
+            SweepRule.parseAll(rules);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static boolean isRate(String rate) {
+        try {
+            SavingsLedger.parseRate(rate);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2025 Rosti Studios. All rights reserved.
+ * Licensed under the Rosti Studios Minecraft Mod License (RSMML).
+ * For more information, see the LICENSE file in the project root
+ * or contact us via Discord: https://dsc.gg/rosti-studios
+ */
+package org.rseconomy.rs_economy;
+
+/**
+ * Fixed-point representation of currency amounts.
+ * Amounts are stored as a long count of minor units, where one major unit
+ * (as shown to players) equals 10^scale minor units.
+ */
+public final class Money {
+    /** The highest supported number of decimal places. */
+    public static final int MAX_SCALE = 6;
+
+    private static int scale = 2;
+    private static long factor = 100;
+
+    private Money() {
+    }
+
+    /**
+     * Sets the number of decimal places used for minor units.
+     * Must be called before any balances are loaded, as stored amounts are
+     * interpreted in the active scale.
+     *
+     * @param newScale The number of decimal places (0 to {@link #MAX_SCALE}).
+     */
+    public static void configure(int newScale) {
+        if (newScale < 0 || newScale > MAX_SCALE) {
+            throw new IllegalArgumentException("Currency scale must be between 0 and " + MAX_SCALE + ": " + newScale);
+        }
+        scale = newScale;
+        factor = pow10(newScale);
+    }
+
+    /**
+     * Gets the active number of decimal places.
+     *
+     * @return The active scale.
+     */
+    public static int getScale() {
+        return scale;
+    }
+
+    /**
+     * Converts a major-unit amount to minor units, rounding half up.
+     *
+     * @param amount The amount in major units.
+     * @return The amount in minor units.
+     */
+    public static long toMinor(double amount) {
+        return Math.round(amount * factor);
+    }
+
+    /**
+     * Converts a minor-unit amount to major units.
+     *
+     * @param minor The amount in minor units.
+     * @return The amount in major units.
+     */
+    public static double toMajor(long minor) {
+        return minor / (double) factor;
+    }
+
+    /**
+     * Converts a minor-unit amount stored with another scale to the active scale.
+     *
+     * @param minor     The amount in minor units of the source scale.
+     * @param fromScale The scale the amount was stored with.
+     * @return The amount in minor units of the active scale.
+     */
+    public static long rescale(long minor, int fromScale) {
+        if (fromScale == scale) {
+            return minor;
+        }
+        if (fromScale < scale) {
+            return saturatedMultiply(minor, pow10(scale - fromScale));
+        }
+        long divisor = pow10(fromScale - scale);
+        return Math.floorDiv(minor + divisor / 2, divisor);
+    }
+
+    /**
+     * Adds two minor-unit amounts, saturating instead of overflowing.
+     *
+     * @param a The first amount.
+     * @param b The second amount.
+     * @return The sum, clamped to the long range.
+     */
+    public static long add(long a, long b) {
+        long sum = a + b;
+        if (((a ^ sum) & (b ^ sum)) < 0) {
+            return a < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+        return sum;
+    }
+
+    private static long saturatedMultiply(long a, long b) {
+        long high = Math.multiplyHigh(a, b);
+        long low = a * b;
+        if ((high == 0 && low >= 0) || (high == -1 && low < 0)) {
+            return low;
+        }
+        return a < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+    }
+
+    private static long pow10(int exponent) {
+        long result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result *= 10;
+        }
+        return result;
+    }
+}
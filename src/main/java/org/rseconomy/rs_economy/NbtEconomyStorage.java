@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2025 Rosti Studios. All rights reserved.
+ * Licensed under the Rosti Studios Minecraft Mod License (RSMML).
+ * For more information, see the LICENSE file in the project root
+ * or contact us via Discord: https://dsc.gg/rosti-studios
+ */
+package org.rseconomy.rs_economy;
+
+import com.mojang.logging.LogUtils;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.level.storage.LevelResource;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Storage backend that keeps economy data as saved data in the world's data folder,
+ * split into shards by {@link ShardedEconomyData}. Changes between world saves are
+ * protected by the {@link TransactionJournal}, and shards can be written on a
+ * background thread by an {@link AsyncEconomySaver}.
+ * <p>
+ * All data is held in memory, and every save rewrites each changed shard in full.
+ */
+public class NbtEconomyStorage implements EconomyStorage {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    private final ShardedEconomyData economyData;
+    private TransactionJournal journal;
+    private AsyncEconomySaver saver;
+    private long lastJournalCheckpoint;
+
+    private NbtEconomyStorage(ShardedEconomyData economyData) {
+        this.economyData = economyData;
+    }
+
+    /**
+     * Loads the economy data of the server's overworld and brings it up to date with
+     * changes journaled since it was saved.
+     *
+     * @param server The Minecraft server instance.
+     * @return The opened storage.
+     */
+    public static NbtEconomyStorage open(MinecraftServer server) {
+        NbtEconomyStorage storage = new NbtEconomyStorage(
+                ShardedEconomyData.load(server.overworld(), ModConfigs.STORAGE_SHARDS.get()));
+        storage.openJournal(server);
+        if (ModConfigs.ASYNC_SAVE.get()) {
+            storage.saver = new AsyncEconomySaver();
+            storage.economyData.setSavedExternally(true);
+        }
+        return storage;
+    }
+
+    @Override
+    public long getBalanceMinor(long most, long least) {
+        return economyData.getBalanceMinor(most, least);
+    }
+
+    @Override
+    public void putBalanceMinor(long most, long least, long amount) {
+        economyData.putBalanceMinor(most, least, amount);
+    }
+
+    @Override
+    public boolean isResident() {
+        return true;
+    }
+
+    @Override
+    public void forEachBalance(AccountTable.EntryConsumer consumer) {
+        economyData.forEachBalance(consumer);
+    }
+
+    @Override
+    public long getSavingsMinor(long most, long least) {
+        return economyData.getSavingsMinor(most, least);
+    }
+
+    @Override
+    public int getSavingsPeriod(long most, long least) {
+        return economyData.getSavingsPeriod(most, least);
+    }
+
+    @Override
+    public void putSavings(long most, long least, long amount, int period) {
+        economyData.putSavings(most, least, amount, period);
+    }
+
+    @Override
+    public void putBalanceAndSavings(long most, long least, long balance, long amount, int period) {
+        economyData.putBalanceAndSavings(most, least, balance, amount, period);
+    }
+
+    @Override
+    public void forEachSavings(AccountTable.EntryConsumer consumer) {
+        economyData.forEachSavings(consumer);
+    }
+
+    @Override
+    public int getDailyRewardDay(long most, long least) {
+        return economyData.getDailyRewardDay(most, least);
+    }
+
+    @Override
+    public void setDailyRewardDay(long most, long least, int epochDay) {
+        economyData.setDailyRewardDay(most, least, epochDay);
+    }
+
+    @Override
+    public void forEachDailyReward(AccountTable.EntryConsumer consumer) {
+        economyData.forEachDailyReward(consumer);
+    }
+
+    /**
+     * Queues changed shards for writing when asynchronous saving is enabled, re-marks
+     * shards that changed while they were being saved, and drops journal segments that
+     * are covered by a completed save. Segments are kept until the save after the one
+     * that covers them, so a save that is still being written can never be the only copy
+     * of their changes.
+     */
+    @Override
+    public void save() {
+        // A failed write leaves the previous checkpoint uncovered until the shard is rewritten
+        boolean previousSaveWritten = saver == null || saver.await();
+        long nextSequence = journal != null ? journal.nextSequence() : 0L;
+        if (journal != null && previousSaveWritten) {
+            journal.truncateBefore(lastJournalCheckpoint);
+        }
+        if (saver != null) {
+            economyData.saveAsync(saver);
+        }
+        long checkpoint = economyData.checkpoint(nextSequence);
+        if (journal != null) {
+            lastJournalCheckpoint = checkpoint;
+        }
+    }
+
+    /**
+     * Waits for the final shard writes, then flushes and closes the journal.
+     */
+    @Override
+    public void close() {
+        if (saver != null) {
+            saver.close();
+            saver = null;
+        }
+        if (journal != null) {
+            economyData.setJournal(null);
+            journal.close();
+            journal = null;
+        }
+    }
+
+    /**
+     * Replays the transaction journal into the loaded economy data and, if journaling is
+     * enabled, keeps it open to record further changes.
+     *
+     * @param server The Minecraft server instance.
+     */
+    private void openJournal(MinecraftServer server) {
+        Path directory = server.getWorldPath(LevelResource.ROOT).resolve("data").resolve("rs_economy_journal");
+        boolean enabled = ModConfigs.JOURNAL_ENABLED.get();
+        if (!enabled && !Files.isDirectory(directory)) {
+            return;
+        }
+        try {
+            journal = TransactionJournal.open(directory, ModConfigs.JOURNAL_COMMIT_INTERVAL.get(),
+                    economyData.getJournalSequence(), economyData.journalReplayer());
+        } catch (IOException e) {
+            LOGGER.error("Failed to open economy journal, continuing without it: {}", e.getMessage(), e);
+            return;
+        }
+        lastJournalCheckpoint = economyData.getJournalSequence();
+        if (enabled) {
+            economyData.setJournal(journal);
+        } else {
+            // Replayed records are now part of the snapshot and must not be applied again
+            economyData.setJournalSequence(journal.nextSequence());
+            journal.close();
+            journal = null;
+        }
+    }
+}
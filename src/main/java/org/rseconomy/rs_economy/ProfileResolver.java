@@ -0,0 +1,329 @@
+/*
+ * Copyright (c) 2025 Rosti Studios. All rights reserved.
+ * Licensed under the Rosti Studios Minecraft Mod License (RSMML).
+ * For more information, see the LICENSE file in the project root
+ * or contact us via Discord: https://dsc.gg/rosti-studios
+ */
+package org.rseconomy.rs_economy;
+
+import com.mojang.authlib.GameProfile;
+import com.mojang.authlib.properties.Property;
+import com.mojang.authlib.yggdrasil.ProfileResult;
+import com.mojang.logging.LogUtils;
+import net.minecraft.server.MinecraftServer;
+import org.slf4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Resolves player UUIDs to profiles with name and skin for leaderboard heads, without
+ * blocking the server thread.
+ * <p>
+ * Resolved profiles are held in memory and persisted to a small compressed file in the
+ * world's data folder, so they survive restarts. Unknown UUIDs are looked up one at a
+ * time on a background thread, first in the server's profile cache and then, if that
+ * has no skin, from the session service. Remote lookups are paced to stay well within
+ * its rate limit. Profiles older than {@link #REFRESH_AFTER_MILLIS} are still served
+ * but looked up again, so changed names and skins are picked up. A UUID that cannot be
+ * resolved is not retried until the server restarts.
+ * <p>
+ * Callers receive what is known immediately and can register a callback, which runs
+ * on the server thread once the profile has been resolved.
+ */
+public class ProfileResolver {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final int FILE_VERSION = 1;
+    private static final long REFRESH_AFTER_MILLIS = TimeUnit.DAYS.toMillis(7);
+    private static final long FETCH_INTERVAL_MILLIS = 300;
+
+    private final MinecraftServer server;
+    private final Path file;
+    private final Map<UUID, Entry> profiles = new ConcurrentHashMap<>();
+    private final Map<UUID, List<Consumer<GameProfile>>> waiting = new ConcurrentHashMap<>();
+    private final Set<UUID> unresolvable = ConcurrentHashMap.newKeySet();
+    private final AtomicLong generation = new AtomicLong();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "RSEconomy-Profiles");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean dirty;
+    private volatile boolean closed;
+    private long lastFetch;
+
+    private record Entry(GameProfile profile, long resolvedAt) {}
+
+    private ProfileResolver(MinecraftServer server, Path file) {
+        this.server = server;
+        this.file = file;
+    }
+
+    /**
+     * Creates a resolver for the server and loads the profiles saved with its world.
+     *
+     * @param server The Minecraft server instance.
+     * @param file   The file profiles are persisted in.
+     * @return The resolver.
+     */
+    public static ProfileResolver open(MinecraftServer server, Path file) {
+        ProfileResolver resolver = new ProfileResolver(server, file);
+        try {
+            resolver.load();
+        } catch (NoSuchFileException e) {
+            // Nothing resolved yet
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Failed to load player profiles from {}, they will be resolved again: {}", file, e.getMessage(), e);
+            resolver.profiles.clear();
+        }
+        return resolver;
+    }
+
+    /**
+     * Gets the profile of a player if it has been resolved, and queues a lookup otherwise.
+     *
+     * @param uuid The UUID of the player.
+     * @return The profile, or null if it is not known yet.
+     */
+    public GameProfile getCached(UUID uuid) {
+        Entry entry = profiles.get(uuid);
+        if (entry == null || System.currentTimeMillis() - entry.resolvedAt() > REFRESH_AFTER_MILLIS) {
+            resolve(uuid, null);
+        }
+        return entry != null ? entry.profile() : null;
+    }
+
+    /**
+     * Looks up a profile in the background.
+     *
+     * @param uuid     The UUID of the player.
+     * @param callback Run on the server thread with the profile once it is resolved, or never
+     *                 if it cannot be resolved. May be null.
+     */
+    public void resolve(UUID uuid, Consumer<GameProfile> callback) {
+        if (closed || unresolvable.contains(uuid)) {
+            return;
+        }
+        boolean[] queued = new boolean[1];
+        waiting.compute(uuid, (key, callbacks) -> {
+            if (callbacks == null) {
+                callbacks = new ArrayList<>();
+                queued[0] = true;
+            }
+            if (callback != null) {
+                callbacks.add(callback);
+            }
+            return callbacks;
+        });
+        if (queued[0]) {
+            executor.execute(() -> lookup(uuid));
+        }
+    }
+
+    /**
+     * Queues lookups for players whose profiles are not known yet, e.g. the top of the ranking.
+     *
+     * @param uuids The UUIDs of the players.
+     */
+    public void warm(Iterable<UUID> uuids) {
+        for (UUID uuid : uuids) {
+            if (!profiles.containsKey(uuid)) {
+                resolve(uuid, null);
+            }
+        }
+    }
+
+    /**
+     * Stores a profile that is already complete, such as that of a player who just joined.
+     *
+     * @param profile The player's profile.
+     */
+    public void remember(GameProfile profile) {
+        if (profile != null && profile.getId() != null) {
+            store(profile);
+        }
+    }
+
+    /**
+     * Gets a counter that changes whenever a profile is added or its name or skin changes,
+     * so content rendered from profiles can be reused while it stays the same.
+     *
+     * @return The current generation.
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Writes the profiles to disk on the background thread if any changed since the last save.
+     */
+    public void save() {
+        if (dirty && !closed) {
+            executor.execute(this::write);
+        }
+    }
+
+    /**
+     * Drops pending lookups, writes the profiles and stops the background thread.
+     */
+    public void close() {
+        closed = true;
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                LOGGER.warn("Timed out waiting for profile lookups to stop");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        waiting.clear();
+        if (dirty) {
+            write();
+        }
+    }
+
+    /**
+     * Resolves one profile on the background thread and notifies its callbacks.
+     */
+    private void lookup(UUID uuid) {
+        GameProfile profile = null;
+        try {
+            profile = server.getProfileCache().get(uuid).orElse(null);
+            if (profile == null || profile.getProperties().get("textures").isEmpty()) {
+                long wait = lastFetch + FETCH_INTERVAL_MILLIS - System.currentTimeMillis();
+                if (wait > 0) {
+                    Thread.sleep(wait);
+                }
+                lastFetch = System.currentTimeMillis();
+                ProfileResult result = server.getSessionService().fetchProfile(uuid, false);
+                if (result != null) {
+                    profile = result.profile();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (RuntimeException e) {
+            LOGGER.debug("Failed to resolve profile of {}: {}", uuid, e.getMessage());
+        }
+        List<Consumer<GameProfile>> callbacks = waiting.remove(uuid);
+        if (profile == null) {
+            Entry previous = profiles.get(uuid);
+            if (previous == null) {
+                unresolvable.add(uuid);
+                return;
+            }
+            // Keep serving the old profile and try again after the next refresh interval
+            profile = previous.profile();
+            profiles.put(uuid, new Entry(profile, System.currentTimeMillis()));
+        } else {
+            store(profile);
+        }
+        if (callbacks != null && !callbacks.isEmpty()) {
+            GameProfile resolved = profile;
+            server.execute(() -> callbacks.forEach(callback -> callback.accept(resolved)));
+        }
+    }
+
+    private void store(GameProfile profile) {
+        Entry previous = profiles.put(profile.getId(), new Entry(profile, System.currentTimeMillis()));
+        unresolvable.remove(profile.getId());
+        // Refreshes and logins mostly return what is already known; only changes invalidate rendered content
+        if (previous == null || !Objects.equals(previous.profile().getName(), profile.getName())
+                || !Objects.equals(texturesOf(previous.profile()), texturesOf(profile))) {
+            generation.incrementAndGet();
+        }
+        dirty = true;
+    }
+
+    private static String texturesOf(GameProfile profile) {
+        return profile.getProperties().get("textures").stream().findFirst().map(Property::value).orElse(null);
+    }
+
+    private void load() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+            int version = in.readInt();
+            if (version != FILE_VERSION) {
+                throw new IOException("Unsupported profile file version " + version);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                UUID uuid = new UUID(in.readLong(), in.readLong());
+                long resolvedAt = in.readLong();
+                GameProfile profile = new GameProfile(uuid, in.readUTF());
+                if (in.readBoolean()) {
+                    String value = in.readUTF();
+                    String signature = in.readBoolean() ? in.readUTF() : null;
+                    profile.getProperties().put("textures", new Property("textures", value, signature));
+                }
+                profiles.put(uuid, new Entry(profile, resolvedAt));
+            }
+        }
+    }
+
+    /**
+     * Writes all profiles to a temporary file that is then renamed over the target.
+     */
+    private void write() {
+        dirty = false;
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try {
+                List<Entry> entries = new ArrayList<>(profiles.values());
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temp))))) {
+                    out.writeInt(FILE_VERSION);
+                    out.writeInt(entries.size());
+                    for (Entry entry : entries) {
+                        GameProfile profile = entry.profile();
+                        out.writeLong(profile.getId().getMostSignificantBits());
+                        out.writeLong(profile.getId().getLeastSignificantBits());
+                        out.writeLong(entry.resolvedAt());
+                        out.writeUTF(profile.getName() != null ? profile.getName() : "");
+                        Property textures = profile.getProperties().get("textures").stream().findFirst().orElse(null);
+                        out.writeBoolean(textures != null);
+                        if (textures != null) {
+                            out.writeUTF(textures.value());
+                            out.writeBoolean(textures.signature() != null);
+                            if (textures.signature() != null) {
+                                out.writeUTF(textures.signature());
+                            }
+                        }
+                    }
+                }
+                try {
+                    Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Failed to save player profiles to {}: {}", file, e.getMessage(), e);
+            dirty = true;
+        }
+    }
+}
@@ -7,8 +7,11 @@
 package org.rseconomy.rs_economy;
 
 import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.logging.LogUtils;
 import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.storage.LevelResource;
 import net.neoforged.bus.api.IEventBus;
 import net.neoforged.bus.api.SubscribeEvent;
 import net.neoforged.fml.ModContainer;
@@ -16,19 +19,39 @@ import net.neoforged.fml.common.Mod;
 import net.neoforged.fml.config.ModConfig;
 import net.neoforged.fml.event.lifecycle.FMLCommonSetupEvent;
 import net.neoforged.neoforge.common.NeoForge;
+import net.neoforged.neoforge.event.entity.player.PlayerEvent;
+import net.neoforged.neoforge.event.level.LevelEvent;
 import net.neoforged.neoforge.event.server.ServerStartingEvent;
+import net.neoforged.neoforge.event.server.ServerStoppedEvent;
 import net.neoforged.neoforge.event.server.ServerStoppingEvent;
+import net.neoforged.neoforge.event.tick.ServerTickEvent;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
 /**
  * Main class for the RSEconomy mod, initializing core components and event handlers.
  */
 @Mod(RSEconomy.MOD_ID)
 public class RSEconomy {
     public static final String MOD_ID = "rs_economy";
+    private static final Logger LOGGER = LogUtils.getLogger();
     private static RSEconomy instance;
+    private static final ServerTaskQueue taskQueue = new ServerTaskQueue();
+    /** Number of top-ranked players whose profiles are resolved when the server starts. */
+    private static final int WARM_PROFILES = 450;
+    private EconomyStorage storage;
     private BalanceManager balanceManager;
     private RewardManager rewardManager;
     private CommandManager commandManager;
     private LeaderboardManager leaderboardManager;
+    private ProfileResolver profileResolver;
+    private SweepEngine sweepEngine;
+    private SavingsLedger savingsLedger;
 
     /**
      * Constructs the RSEconomy mod instance and registers event listeners.
@@ -61,10 +84,47 @@ public class RSEconomy {
         return balanceManager;
     }
 
+    /**
+     * Gets the queue used to run balance operations submitted from other threads.
+     * Available before the server has started.
+     *
+     * @return The ServerTaskQueue instance.
+     */
+    public static ServerTaskQueue getTaskQueue() {
+        return taskQueue;
+    }
+
     public LeaderboardManager getLeaderboardManager() {
         return leaderboardManager;
     }
 
+    /**
+     * Gets the ledger of the players' savings accounts.
+     *
+     * @return The SavingsLedger instance.
+     */
+    public SavingsLedger getSavingsLedger() {
+        return savingsLedger;
+    }
+
+    /**
+     * Gets the engine that runs the configured interest, upkeep and tax sweeps.
+     *
+     * @return The SweepEngine instance.
+     */
+    public SweepEngine getSweepEngine() {
+        return sweepEngine;
+    }
+
+    /**
+     * Gets the resolver for the player profiles shown on leaderboard heads.
+     *
+     * @return The ProfileResolver instance, or null if the server has not started.
+     */
+    public ProfileResolver getProfileResolver() {
+        return profileResolver;
+    }
+
     /**
      * Performs common setup tasks during mod initialization.
      *
@@ -81,39 +141,188 @@ public class RSEconomy {
      */
     @SubscribeEvent
     public void onServerStarting(ServerStartingEvent event) {
+        // The currency scale must be known before stored balances are read
+        Money.configure(ModConfigs.CURRENCY_SCALE.get());
         CommandDispatcher<CommandSourceStack> dispatcher = event.getServer().getCommands().getDispatcher();
-        ServerLevel level = event.getServer().overworld();
-        EconomyData econ = EconomyData.get(level);
-        
+        storage = openStorage(event.getServer());
+
         // Attempt to migrate legacy JSON data before loading
-        LegacyJsonMigrator.migrateIfNeeded(event.getServer(), econ);
+        LegacyJsonMigrator.migrateIfNeeded(event.getServer(), storage);
         
-        balanceManager = new BalanceManager(econ);
-        rewardManager = new RewardManager(balanceManager, econ);
+        balanceManager = new BalanceManager(storage, ModConfigs.BALANCE_CACHE_SIZE.get());
+        rewardManager = new RewardManager(balanceManager, storage);
         leaderboardManager = new LeaderboardManager(balanceManager);
-        commandManager = new CommandManager(balanceManager, rewardManager, leaderboardManager);
-        balanceManager.loadBalances(econ.getBalances());
-        rewardManager.loadDailyRewards(econ.getDailyRewards());
+        savingsLedger = SavingsLedger.open(balanceManager, storage,
+                event.getServer().getWorldPath(LevelResource.ROOT).resolve("data").resolve("rs_economy_savings.properties"));
+        sweepEngine = SweepEngine.open(balanceManager, savingsLedger,
+                event.getServer().getWorldPath(LevelResource.ROOT).resolve("data").resolve("rs_economy_sweeps.properties"));
+        commandManager = new CommandManager(balanceManager, rewardManager, leaderboardManager, sweepEngine,
+                savingsLedger);
         BalanceManager.loadBalance();
         commandManager.registerCommands(dispatcher);
+        taskQueue.start(event.getServer(), balanceManager, ModConfigs.CONCURRENT_ACCESS.get());
+        profileResolver = ProfileResolver.open(event.getServer(),
+                event.getServer().getWorldPath(LevelResource.ROOT).resolve("data").resolve("rs_economy_profiles.bin"));
+        warmProfiles();
         TestUtils.generateFakePlayers(balanceManager, 78, 100, 10000); // 35 Spieler mit 100–10.000 Coins
     }
 
+    /**
+     * Loads a joining player's account into the balance cache, so the first command
+     * or API call for an online player does not have to read it from storage, and
+     * remembers the player's profile for leaderboard heads.
+     *
+     * @param event The player login event.
+     */
+    @SubscribeEvent
+    public void onPlayerLoggedIn(PlayerEvent.PlayerLoggedInEvent event) {
+        if (balanceManager != null) {
+            balanceManager.getBalanceMinor(event.getEntity().getUUID());
+        }
+        if (profileResolver != null) {
+            profileResolver.remember(event.getEntity().getGameProfile());
+        }
+    }
+
+    /**
+     * Runs balance operations queued from other threads and the running sweep at the
+     * end of each server tick, and has the ranking snapshot refreshed when it is due.
+     *
+     * @param event The server tick event.
+     */
+    @SubscribeEvent
+    public void onServerTick(ServerTickEvent.Post event) {
+        taskQueue.drain();
+        if (sweepEngine != null) {
+            sweepEngine.tick();
+        }
+        if (balanceManager != null) {
+            balanceManager.getRanking().refreshSnapshot();
+        }
+    }
+
+    /**
+     * Saves economy data along with the overworld.
+     *
+     * @param event The level save event.
+     */
+    @SubscribeEvent
+    public void onLevelSave(LevelEvent.Save event) {
+        if (storage == null || !(event.getLevel() instanceof ServerLevel level)
+                || level != level.getServer().overworld()) {
+            return;
+        }
+        storage.save();
+        if (profileResolver != null) {
+            profileResolver.save();
+        }
+    }
+
     /**
      * Saves configuration when the server stops.
+     * The final world save follows this event; storage is closed in {@link #onServerStopped}.
      *
      * @param event The server stopping event.
      */
     @SubscribeEvent
     public void onServerStopping(ServerStoppingEvent event) {
+        taskQueue.stop();
         ModConfigs.COMMON_CONFIG.save();
     }
 
+    /**
+     * Writes everything the storage backend still holds and closes it.
+     *
+     * @param event The server stopped event.
+     */
+    @SubscribeEvent
+    public void onServerStopped(ServerStoppedEvent event) {
+        if (profileResolver != null) {
+            profileResolver.close();
+            profileResolver = null;
+        }
+        sweepEngine = null;
+        savingsLedger = null;
+        if (storage != null) {
+            storage.close();
+            storage = null;
+        }
+    }
+
+    /**
+     * Queues profile lookups for the first leaderboard pages in the background, so they
+     * show names and skins by the time anyone opens them.
+     */
+    private void warmProfiles() {
+        RankingIndex ranking = balanceManager.getRanking();
+        int count = Math.min(ranking.size(), WARM_PROFILES);
+        long[] most = new long[count];
+        long[] least = new long[count];
+        count = ranking.range(0, count, most, least, new long[count]);
+        List<UUID> uuids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            uuids.add(new UUID(most[i], least[i]));
+        }
+        profileResolver.warm(uuids);
+    }
+
+    /**
+     * Opens the storage backend selected in the configuration. When the sqlite backend
+     * starts with an empty database, data stored by the nbt backend is imported into it;
+     * the nbt files are left in place.
+     *
+     * @param server The Minecraft server instance.
+     * @return The opened storage.
+     * @throws IllegalStateException If the database cannot be opened. Starting with
+     *                               another backend instead would split the data.
+     */
+    private static EconomyStorage openStorage(MinecraftServer server) {
+        String backend = ModConfigs.STORAGE_BACKEND.get();
+        if ("memory".equals(backend)) {
+            LOGGER.warn("Economy data is kept in memory only and will be lost when the server stops");
+            return new MemoryEconomyStorage();
+        }
+        if ("mapped".equals(backend)) {
+            Path directory = server.getWorldPath(LevelResource.ROOT).resolve("data").resolve("rs_economy_mapped");
+            MappedEconomyStorage mapped;
+            try {
+                mapped = MappedEconomyStorage.open(directory);
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to open mapped economy storage " + directory, e);
+            }
+            if (mapped.isEmpty()) {
+                NbtEconomyStorage previous = NbtEconomyStorage.open(server);
+                mapped.importFrom(previous);
+                previous.close();
+            }
+            return mapped;
+        }
+        if (!"sqlite".equals(backend)) {
+            return NbtEconomyStorage.open(server);
+        }
+        Path file = server.getWorldPath(LevelResource.ROOT).resolve("data").resolve("rs_economy.db");
+        SqliteEconomyStorage database;
+        try {
+            database = SqliteEconomyStorage.open(file, ModConfigs.SQLITE_FLUSH_INTERVAL.get());
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to open economy database " + file, e);
+        }
+        if (database.isEmpty()) {
+            NbtEconomyStorage previous = NbtEconomyStorage.open(server);
+            database.importFrom(previous);
+            previous.close();
+        }
+        return database;
+    }
+
     /**
      * Reloads mod configuration and localization data.
      */
     public void reload() {
         Localization.init();
         BalanceManager.loadBalance();
+        if (sweepEngine != null) {
+            sweepEngine.reload();
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,574 @@
+/*
+ * Copyright (c) 2025 Rosti Studios. All rights reserved.
+ * Licensed under the Rosti Studios Minecraft Mod License (RSMML).
+ * For more information, see the LICENSE file in the project root
+ * or contact us via Discord: https://dsc.gg/rosti-studios
+ */
+package org.rseconomy.rs_economy;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Live ranking of all accounts by balance, highest first, with ties ordered by UUID.
+ * <p>
+ * Implemented as an order-statistic treap stored in parallel primitive arrays: every
+ * node knows the size of its subtree, so the rank of an account and any range of ranks
+ * are found in O(log n), and a balance change re-positions one account in O(log n).
+ * Node priorities are derived from the UUID hash, so the tree shape does not depend on
+ * the order of updates. An {@link AccountTable} maps each UUID to its node.
+ * <p>
+ * Balance changes are not applied where they happen. {@link #update} only appends the
+ * new balance to a lock-free buffer, so writers that hold a balance lock stripe never
+ * wait for the tree or for each other. The tree applies the buffered changes in order
+ * whenever it is queried and whenever a snapshot is taken, under its own monitor, and
+ * keeps the {@link BalanceHistogram} it was given in step.
+ * <p>
+ * Snapshots are published from one place: {@link #refreshSnapshot()}, called once per
+ * server tick, starts a background task at most about once a second when the ranking
+ * changed. The task copies the tree under the monitor and builds the snapshot outside
+ * it. {@link #latestSnapshot()} only reads the published snapshot.
+ * <p>
+ * The index keeps its own copy of every account's UUID and balance, and a table from
+ * UUID to node, in addition to the copy held by storage: 40 bytes per node plus 24 per
+ * table slot, about 100 bytes per account once spare array capacity is counted. Every
+ * balance change is therefore written to storage and, when applied, to the index. It
+ * cannot point into storage instead, as backends do not keep accounts at stable slots.
+ */
+public class RankingIndex {
+    private static final int NIL = 0;
+    /** How long {@link #latestSnapshot()} may keep serving a snapshot after the ranking changed. */
+    private static final long SNAPSHOT_MAX_AGE_NANOS = 1_000_000_000L;
+
+    // Node 0 is the empty sentinel with size 0
+    private int[] left = new int[16];
+    private int[] right = new int[16];
+    private int[] size = new int[16];
+    private int[] priority = new int[16];
+    private long[] keyMost = new long[16];
+    private long[] keyLeast = new long[16];
+    private long[] balance = new long[16];
+    private int nodeCount = 1;
+    private int root = NIL;
+    // Written under the monitor; read without it to decide whether a snapshot is due
+    private volatile long version;
+    // The last snapshot taken; readers share it without locking
+    private volatile RankingSnapshot snapshot;
+    private final AccountTable nodeOf = new AccountTable();
+    private final ChangeBuffer changes = new ChangeBuffer();
+    private final AtomicBoolean publishing = new AtomicBoolean();
+    private final BalanceHistogram distribution;
+
+    // Results of split(), to avoid allocating a pair per call
+    private int splitLeft;
+    private int splitRight;
+
+    /**
+     * Creates an empty index.
+     *
+     * @param distribution The histogram to keep in step with applied changes, or null for none.
+     */
+    public RankingIndex(BalanceHistogram distribution) {
+        this.distribution = distribution;
+    }
+
+    /**
+     * Replaces the contents with the given accounts. Sorts once and builds the tree in
+     * linear time, which is several times faster than inserting accounts one by one.
+     *
+     * @param source Called once with a consumer that must receive every account.
+     */
+    public synchronized void rebuild(Consumer<AccountTable.EntryConsumer> source) {
+        nodeOf.clear();
+        nodeCount = 1;
+        root = NIL;
+        source.accept((most, least, amount) -> {
+            int node = (int) nodeOf.get(most, least, NIL);
+            if (node == NIL) {
+                node = allocate(most, least);
+                nodeOf.put(most, least, node);
+            }
+            balance[node] = amount;
+        });
+        int count = nodeCount - 1;
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i + 1;
+        }
+        sort(order, new int[count], 0, count);
+
+        // Cartesian tree construction: the stack holds the right spine of the tree built so far
+        int[] spine = new int[Math.max(1, count)];
+        int top = 0;
+        for (int node : order) {
+            int last = NIL;
+            while (top > 0 && priority[spine[top - 1]] < priority[node]) {
+                last = spine[--top];
+            }
+            left[node] = last;
+            right[node] = NIL;
+            if (top > 0) {
+                right[spine[top - 1]] = node;
+            }
+            spine[top++] = node;
+        }
+        root = top > 0 ? spine[0] : NIL;
+        computeSizes(root);
+        version++;
+    }
+
+    /**
+     * Records an account's new balance without locking. The account is inserted or moved
+     * the next time the ranking is read. Changes to one account must be recorded in the
+     * order they were made, which holds when they are recorded under its balance lock.
+     *
+     * @param most   The most significant bits of the player's UUID.
+     * @param least  The least significant bits of the player's UUID.
+     * @param amount The account's balance in minor units.
+     */
+    public void update(long most, long least, long amount) {
+        changes.add(most, least, amount);
+    }
+
+    /**
+     * Starts building a new snapshot in the background if the published one is about a
+     * second old and the ranking may have changed since. Called once per server tick.
+     */
+    public void refreshSnapshot() {
+        RankingSnapshot current = snapshot;
+        if (current != null && (System.nanoTime() - current.createdAt() < SNAPSHOT_MAX_AGE_NANOS
+                || (current.version() == version && !changes.hasPending()))) {
+            return;
+        }
+        if (publishing.compareAndSet(false, true)) {
+            ForkJoinPool.commonPool().execute(() -> {
+                try {
+                    snapshot();
+                } finally {
+                    publishing.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Applies all buffered balance changes to the tree and the histogram.
+     */
+    public synchronized void flush() {
+        applyChanges();
+    }
+
+    /**
+     * Applies all buffered balance changes to the tree. Caller holds the monitor.
+     */
+    private void applyChanges() {
+        changes.drain(this::apply);
+    }
+
+    /**
+     * Inserts an account or moves it to the position of its new balance. Caller holds the monitor.
+     */
+    private void apply(long most, long least, long amount) {
+        int node = (int) nodeOf.get(most, least, NIL);
+        if (node != NIL) {
+            if (balance[node] == amount) {
+                return;
+            }
+            if (distribution != null) {
+                distribution.move(balance[node], amount);
+            }
+            root = remove(root, node);
+        } else {
+            node = allocate(most, least);
+            nodeOf.put(most, least, node);
+            if (distribution != null) {
+                distribution.add(amount);
+            }
+        }
+        balance[node] = amount;
+        left[node] = NIL;
+        right[node] = NIL;
+        size[node] = 1;
+        split(root, amount, most, least);
+        root = merge(merge(splitLeft, node), splitRight);
+        version++;
+    }
+
+    /**
+     * Gets the rank of an account. Answered in constant time from the last snapshot if
+     * the ranking has not changed since it was taken, otherwise in O(log n).
+     *
+     * @param playerId The UUID of the player.
+     * @return The 1-based rank, or -1 if the account is not ranked.
+     */
+    public synchronized int rankOf(UUID playerId) {
+        applyChanges();
+        RankingSnapshot current = snapshot;
+        if (current != null && current.version() == version) {
+            return current.rankOf(playerId);
+        }
+        int node = (int) nodeOf.get(playerId.getMostSignificantBits(), playerId.getLeastSignificantBits(), NIL);
+        if (node == NIL) {
+            return -1;
+        }
+        int rank = 0;
+        int t = root;
+        while (t != NIL) {
+            int c = compare(t, balance[node], keyMost[node], keyLeast[node]);
+            if (c < 0) {
+                rank += size[left[t]] + 1;
+                t = right[t];
+            } else if (c > 0) {
+                t = left[t];
+            } else {
+                return rank + size[left[t]] + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the balance an account is ranked with.
+     *
+     * @param playerId The UUID of the player.
+     * @return The balance in minor units, or 0 if the account is not ranked.
+     */
+    public synchronized long balanceOf(UUID playerId) {
+        applyChanges();
+        int node = (int) nodeOf.get(playerId.getMostSignificantBits(), playerId.getLeastSignificantBits(), NIL);
+        return node == NIL ? 0L : balance[node];
+    }
+
+    /**
+     * Copies a range of ranks into the given arrays.
+     *
+     * @param offset  The 0-based rank to start at.
+     * @param limit   The maximum number of accounts to copy; the arrays must hold at least this many.
+     * @param most    Receives the most significant UUID bits of each account.
+     * @param least   Receives the least significant UUID bits of each account.
+     * @param amounts Receives the balance of each account in minor units.
+     * @return The number of accounts copied.
+     */
+    public synchronized int range(int offset, int limit, long[] most, long[] least, long[] amounts) {
+        applyChanges();
+        int from = Math.max(0, offset);
+        int to = (int) Math.min((long) from + Math.max(0, limit), size[root]);
+        if (from >= to) {
+            return 0;
+        }
+        collect(root, from, to, 0, most, least, amounts);
+        return to - from;
+    }
+
+    /**
+     * Gets a copy of the whole ranking with constant-time rank lookups, and publishes it.
+     * The copy is reused until the ranking changes. Only the copy of the tree is made under
+     * the monitor; the snapshot's rank table is built after releasing it, on the calling
+     * thread, which therefore should not be the server thread for large rankings.
+     *
+     * @return The snapshot of the current version.
+     */
+    public RankingSnapshot snapshot() {
+        long copiedVersion;
+        int count;
+        long[] most;
+        long[] least;
+        long[] amounts;
+        synchronized (this) {
+            applyChanges();
+            RankingSnapshot current = snapshot;
+            if (current != null && current.version() == version) {
+                return current;
+            }
+            copiedVersion = version;
+            count = size[root];
+            most = new long[count];
+            least = new long[count];
+            amounts = new long[count];
+            collect(root, 0, count, 0, most, least, amounts);
+        }
+        RankingSnapshot built = new RankingSnapshot(copiedVersion, count, most, least, amounts);
+        synchronized (this) {
+            // Another thread may have published a newer copy meanwhile
+            RankingSnapshot current = snapshot;
+            if (current == null || current.version() < copiedVersion) {
+                snapshot = built;
+            }
+        }
+        return built;
+    }
+
+    /**
+     * Gets the most recently published snapshot without locking or copying. It is at most
+     * about a second older than the ranking while {@link #refreshSnapshot()} is called
+     * every tick. Readers that can show slightly outdated ranks, such as menus, share one
+     * snapshot this way. Only the very first call takes a snapshot itself.
+     *
+     * @return A snapshot of a recent version.
+     */
+    public RankingSnapshot latestSnapshot() {
+        RankingSnapshot current = snapshot;
+        return current != null ? current : snapshot();
+    }
+
+    /**
+     * Gets a counter that changes whenever any rank or ranked balance changes, so results
+     * derived from the ranking can be reused while it stays the same.
+     *
+     * @return The current version.
+     */
+    public synchronized long version() {
+        applyChanges();
+        return version;
+    }
+
+    /**
+     * Gets the number of ranked accounts.
+     *
+     * @return The account count.
+     */
+    public synchronized int size() {
+        applyChanges();
+        return size[root];
+    }
+
+    /**
+     * Copies the nodes with ranks in [from, to) in order. base is the rank of the
+     * first node in the subtree.
+     */
+    private void collect(int t, int from, int to, int base, long[] most, long[] least, long[] amounts) {
+        if (t == NIL || base >= to || base + size[t] <= from) {
+            return;
+        }
+        collect(left[t], from, to, base, most, least, amounts);
+        int rank = base + size[left[t]];
+        if (rank >= from && rank < to) {
+            most[rank - from] = keyMost[t];
+            least[rank - from] = keyLeast[t];
+            amounts[rank - from] = balance[t];
+        }
+        collect(right[t], from, to, rank + 1, most, least, amounts);
+    }
+
+    /**
+     * Splits a subtree into the nodes ranked before the given key (splitLeft) and the rest (splitRight).
+     */
+    private void split(int t, long amount, long most, long least) {
+        if (t == NIL) {
+            splitLeft = NIL;
+            splitRight = NIL;
+            return;
+        }
+        if (compare(t, amount, most, least) < 0) {
+            split(right[t], amount, most, least);
+            right[t] = splitLeft;
+            pull(t);
+            splitLeft = t;
+        } else {
+            split(left[t], amount, most, least);
+            left[t] = splitRight;
+            pull(t);
+            splitRight = t;
+        }
+    }
+
+    /**
+     * Joins two subtrees where every node of a is ranked before every node of b.
+     */
+    private int merge(int a, int b) {
+        if (a == NIL) {
+            return b;
+        }
+        if (b == NIL) {
+            return a;
+        }
+        if (priority[a] > priority[b]) {
+            right[a] = merge(right[a], b);
+            pull(a);
+            return a;
+        }
+        left[b] = merge(a, left[b]);
+        pull(b);
+        return b;
+    }
+
+    /**
+     * Removes a node from a subtree by its key.
+     */
+    private int remove(int t, int node) {
+        if (t == node) {
+            return merge(left[t], right[t]);
+        }
+        if (compare(t, balance[node], keyMost[node], keyLeast[node]) < 0) {
+            right[t] = remove(right[t], node);
+        } else {
+            left[t] = remove(left[t], node);
+        }
+        pull(t);
+        return t;
+    }
+
+    private int computeSizes(int t) {
+        if (t == NIL) {
+            return 0;
+        }
+        size[t] = computeSizes(left[t]) + computeSizes(right[t]) + 1;
+        return size[t];
+    }
+
+    /**
+     * Merge sorts nodes[from, to) into ranking order, using buffer as scratch space.
+     */
+    private void sort(int[] nodes, int[] buffer, int from, int to) {
+        if (to - from <= 16) {
+            for (int i = from + 1; i < to; i++) {
+                int node = nodes[i];
+                int j = i - 1;
+                while (j >= from && compare(nodes[j], balance[node], keyMost[node], keyLeast[node]) > 0) {
+                    nodes[j + 1] = nodes[j];
+                    j--;
+                }
+                nodes[j + 1] = node;
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        sort(nodes, buffer, from, middle);
+        sort(nodes, buffer, middle, to);
+        System.arraycopy(nodes, from, buffer, from, to - from);
+        int i = from;
+        int j = middle;
+        for (int k = from; k < to; k++) {
+            if (j >= to || (i < middle
+                    && compare(buffer[i], balance[buffer[j]], keyMost[buffer[j]], keyLeast[buffer[j]]) <= 0)) {
+                nodes[k] = buffer[i++];
+            } else {
+                nodes[k] = buffer[j++];
+            }
+        }
+    }
+
+    private void pull(int t) {
+        size[t] = size[left[t]] + size[right[t]] + 1;
+    }
+
+    /**
+     * Compares node t with a key in ranking order.
+     *
+     * @return A negative number if t is ranked before the key, positive if after, 0 if equal.
+     */
+    private int compare(int t, long amount, long most, long least) {
+        if (balance[t] != amount) {
+            return balance[t] > amount ? -1 : 1;
+        }
+        if (keyMost[t] != most) {
+            return Long.compare(keyMost[t], most);
+        }
+        return Long.compare(keyLeast[t], least);
+    }
+
+    private int allocate(long most, long least) {
+        if (nodeCount == left.length) {
+            int capacity = left.length * 2;
+            left = Arrays.copyOf(left, capacity);
+            right = Arrays.copyOf(right, capacity);
+            size = Arrays.copyOf(size, capacity);
+            priority = Arrays.copyOf(priority, capacity);
+            keyMost = Arrays.copyOf(keyMost, capacity);
+            keyLeast = Arrays.copyOf(keyLeast, capacity);
+            balance = Arrays.copyOf(balance, capacity);
+        }
+        int node = nodeCount++;
+        keyMost[node] = most;
+        keyLeast[node] = least;
+        priority[node] = (int) (AccountTable.mix(most, least) >>> 32);
+        return node;
+    }
+
+    /**
+     * Unbounded multi-producer, single-consumer queue of balance changes, stored in chunks
+     * of primitive arrays. Producers claim a slot with one atomic increment and publish it
+     * by setting its ready flag; a full chunk is followed by a new one. The consumer reads
+     * slots in claim order and stops at the first one that is not published yet, so changes
+     * to one account are applied in the order they were recorded.
+     */
+    private static final class ChangeBuffer {
+        private static final int CHUNK = 4096;
+
+        private final AtomicReference<Chunk> tail;
+        // Consumer state, guarded by the index monitor
+        private Chunk head;
+        private int read;
+        // Set by producers and cleared by the consumer before draining; a hint only
+        private volatile boolean pending;
+
+        ChangeBuffer() {
+            Chunk first = new Chunk();
+            tail = new AtomicReference<>(first);
+            head = first;
+        }
+
+        void add(long most, long least, long amount) {
+            while (true) {
+                Chunk chunk = tail.get();
+                int slot = chunk.claimed.getAndIncrement();
+                if (slot < CHUNK) {
+                    chunk.most[slot] = most;
+                    chunk.least[slot] = least;
+                    chunk.amounts[slot] = amount;
+                    // Volatile, so the consumer either sees the slot or sees pending set afterwards
+                    chunk.ready.set(slot, 1);
+                    if (!pending) {
+                        pending = true;
+                    }
+                    return;
+                }
+                Chunk next = chunk.next.get();
+                if (next == null) {
+                    Chunk fresh = new Chunk();
+                    next = chunk.next.compareAndSet(null, fresh) ? fresh : chunk.next.get();
+                }
+                tail.compareAndSet(chunk, next);
+            }
+        }
+
+        boolean hasPending() {
+            return pending;
+        }
+
+        void drain(AccountTable.EntryConsumer consumer) {
+            pending = false;
+            while (true) {
+                Chunk chunk = head;
+                while (read < CHUNK && chunk.ready.get(read) != 0) {
+                    consumer.accept(chunk.most[read], chunk.least[read], chunk.amounts[read]);
+                    read++;
+                }
+                if (read < CHUNK) {
+                    return;
+                }
+                Chunk next = chunk.next.get();
+                if (next == null) {
+                    return;
+                }
+                head = next;
+                read = 0;
+            }
+        }
+
+        private static final class Chunk {
+            final long[] most = new long[CHUNK];
+            final long[] least = new long[CHUNK];
+            final long[] amounts = new long[CHUNK];
+            final AtomicIntegerArray ready = new AtomicIntegerArray(CHUNK);
+            final AtomicInteger claimed = new AtomicInteger();
+            final AtomicReference<Chunk> next = new AtomicReference<>();
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2025 Rosti Studios. All rights reserved.
+ * Licensed under the Rosti Studios Minecraft Mod License (RSMML).
+ * For more information, see the LICENSE file in the project root
+ * or contact us via Discord: https://dsc.gg/rosti-studios
+ */
+package org.rseconomy.rs_economy;
+
+import java.util.UUID;
+
+/**
+ * Point-in-time copy of a {@link RankingIndex}, in rank order, with an index from
+ * UUID to rank, so the rank and balance of any player are found in constant time.
+ * <p>
+ * Accounts are stored as parallel primitive arrays of UUID halves and balances.
+ * A snapshot belongs to one ranking version and is never changed after it was
+ * built, so it is shared by all menus and API callers, and {@link #view} pages
+ * through it without copying.
+ */
+public class RankingSnapshot {
+    private final long version;
+    private final long createdAt = System.nanoTime();
+    private final int size;
+    private final long[] most;
+    private final long[] least;
+    private final long[] amounts;
+    private final AccountTable ranks;
+
+    /**
+     * Creates a snapshot from accounts in rank order. Takes ownership of the arrays.
+     *
+     * @param version The ranking version the accounts were copied at.
+     * @param size    The number of accounts.
+     * @param most    The most significant UUID bits of each account.
+     * @param least   The least significant UUID bits of each account.
+     * @param amounts The balance of each account in minor units.
+     */
+    RankingSnapshot(long version, int size, long[] most, long[] least, long[] amounts) {
+        this.version = version;
+        this.size = size;
+        this.most = most;
+        this.least = least;
+        this.amounts = amounts;
+        this.ranks = new AccountTable(size);
+        for (int i = 0; i < size; i++) {
+            ranks.put(most[i], least[i], i + 1);
+        }
+    }
+
+    /**
+     * Gets the ranking version this snapshot was taken at.
+     *
+     * @return The version.
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Gets the time this snapshot was built at.
+     *
+     * @return The {@link System#nanoTime()} at construction.
+     */
+    long createdAt() {
+        return createdAt;
+    }
+
+    /**
+     * Gets the number of ranked accounts.
+     *
+     * @return The account count.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the rank of an account.
+     *
+     * @param playerId The UUID of the player.
+     * @return The 1-based rank, or -1 if the account is not ranked.
+     */
+    public int rankOf(UUID playerId) {
+        return rankOf(playerId.getMostSignificantBits(), playerId.getLeastSignificantBits());
+    }
+
+    /**
+     * Gets the rank of an account.
+     *
+     * @param most  The most significant bits of the player's UUID.
+     * @param least The least significant bits of the player's UUID.
+     * @return The 1-based rank, or -1 if the account is not ranked.
+     */
+    public int rankOf(long most, long least) {
+        return (int) ranks.get(most, least, -1L);
+    }
+
+    /**
+     * Gets the balance an account is ranked with.
+     *
+     * @param playerId The UUID of the player.
+     * @return The balance in minor units, or 0 if the account is not ranked.
+     */
+    public long balanceOf(UUID playerId) {
+        int rank = rankOf(playerId);
+        return rank > 0 ? amounts[rank - 1] : 0L;
+    }
+
+    /**
+     * Gets the player at a rank.
+     *
+     * @param rank The 1-based rank.
+     * @return The UUID of the player.
+     * @throws IndexOutOfBoundsException If no account has this rank.
+     */
+    public UUID playerAt(int rank) {
+        checkRank(rank);
+        return new UUID(most[rank - 1], least[rank - 1]);
+    }
+
+    /**
+     * Gets the balance at a rank.
+     *
+     * @param rank The 1-based rank.
+     * @return The balance in minor units.
+     * @throws IndexOutOfBoundsException If no account has this rank.
+     */
+    public long balanceAt(int rank) {
+        checkRank(rank);
+        return amounts[rank - 1];
+    }
+
+    /**
+     * Visits a range of ranks in rank order without allocating.
+     *
+     * @param from     The 0-based index of the first rank to visit.
+     * @param to       The 0-based index after the last rank to visit.
+     * @param consumer Receives the raw UUID bits and balance of each account.
+     * @throws IndexOutOfBoundsException If the range is not within the snapshot.
+     */
+    public void forEach(int from, int to, AccountTable.EntryConsumer consumer) {
+        if (from < 0 || from > to || to > size) {
+            throw new IndexOutOfBoundsException("Range " + from + ".." + to + " out of 0.." + size);
+        }
+        for (int i = from; i < to; i++) {
+            consumer.accept(most[i], least[i], amounts[i]);
+        }
+    }
+
+    /**
+     * Gets a range of ranks without copying them.
+     *
+     * @param offset The 0-based rank to start at.
+     * @param limit  The maximum number of accounts in the view.
+     * @return A view of up to limit accounts; empty if offset is past the last rank.
+     */
+    public View view(int offset, int limit) {
+        int from = Math.max(0, Math.min(offset, size));
+        int to = (int) Math.min((long) from + Math.max(0, limit), size);
+        return new View(from, to - from);
+    }
+
+    /**
+     * A range of consecutive ranks of a snapshot, read directly from its arrays.
+     */
+    public class View {
+        private final int offset;
+        private final int length;
+
+        private View(int offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+
+        /**
+         * Gets the number of accounts in the view.
+         *
+         * @return The account count.
+         */
+        public int size() {
+            return length;
+        }
+
+        /**
+         * Gets the rank of an entry.
+         *
+         * @param index The 0-based index within the view.
+         * @return The 1-based rank.
+         */
+        public int rankAt(int index) {
+            checkIndex(index);
+            return offset + index + 1;
+        }
+
+        /**
+         * Gets the player of an entry.
+         *
+         * @param index The 0-based index within the view.
+         * @return The UUID of the player.
+         */
+        public UUID playerAt(int index) {
+            checkIndex(index);
+            return new UUID(most[offset + index], least[offset + index]);
+        }
+
+        /**
+         * Gets the balance of an entry.
+         *
+         * @param index The 0-based index within the view.
+         * @return The balance in minor units.
+         */
+        public long balanceAt(int index) {
+            checkIndex(index);
+            return amounts[offset + index];
+        }
+
+        /**
+         * Gets the snapshot this view belongs to.
+         *
+         * @return The snapshot.
+         */
+        public RankingSnapshot snapshot() {
+            return RankingSnapshot.this;
+        }
+
+        private void checkIndex(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of 0.." + (length - 1));
+            }
+        }
+    }
+
+    private void checkRank(int rank) {
+        if (rank < 1 || rank > size) {
+            throw new IndexOutOfBoundsException("Rank " + rank + " out of 1.." + size);
+        }
+    }
+}
@@ -9,30 +9,35 @@ package org.rseconomy.rs_economy;
 import net.minecraft.network.chat.Component;
 import net.minecraft.server.level.ServerPlayer;
 
+import java.time.Instant;
 import java.time.LocalDate;
-import java.util.HashMap;
+import java.time.ZoneId;
 import java.util.Map;
 import java.util.Random;
 import java.util.UUID;
 
 /**
  * Manages daily rewards for players, ensuring one claim per day.
+ * Claim dates are read from and written to the storage backend directly, so no
+ * second copy of every player's claim is kept in memory. Days are counted as epoch
+ * days in the configured reset time zone, so a claim is a single int comparison.
  */
 public class RewardManager {
     private final BalanceManager balanceManager;
-    private final Map<UUID, LocalDate> lastClaimedRewards = new HashMap<>();
     private final Random random = new Random();
-    private final EconomyData economyData;
+    private final EconomyStorage storage;
+    private ZoneId zone;
+    private String zoneSetting;
 
     /**
-     * Constructs a RewardManager with the specified balance manager and economy data.
+     * Constructs a RewardManager with the specified balance manager and storage.
      *
      * @param balanceManager The balance manager instance.
-     * @param economyData    The economy data instance for persistent storage.
+     * @param storage        The storage backend claims are persisted in.
      */
-    public RewardManager(BalanceManager balanceManager, EconomyData economyData) {
+    public RewardManager(BalanceManager balanceManager, EconomyStorage storage) {
         this.balanceManager = balanceManager;
-        this.economyData = economyData;
+        this.storage = storage;
     }
 
     /**
@@ -45,14 +50,16 @@ public class RewardManager {
      */
     public int claimDailyReward(ServerPlayer player) {
         UUID playerId = player.getUUID();
-        LocalDate today = LocalDate.now();
-        if (lastClaimedRewards.getOrDefault(playerId, LocalDate.MIN).equals(today)) {
+        long most = playerId.getMostSignificantBits();
+        long least = playerId.getLeastSignificantBits();
+        int today = today();
+        // A claim dated after today is possible right after moving the reset time zone west
+        if (storage.getDailyRewardDay(most, least) >= today) {
             player.sendSystemMessage(Component.literal(
                     Localization.get("reward.daily.alreadyclaimed")));
             return 0;
         }
-        lastClaimedRewards.put(playerId, today);
-        economyData.setDailyReward(playerId, today);
+        storage.setDailyRewardDay(most, least, today);
         int min = ModConfigs.DAILY_REWARD_MIN.get();
         int max = ModConfigs.DAILY_REWARD_MAX.get();
         double rewardAmount = random.nextInt(max - min + 1) + min;
@@ -63,20 +70,27 @@ public class RewardManager {
     }
 
     /**
-     * Gets a copy of the last claimed rewards map.
+     * Gets the current epoch day in the reset time zone.
      *
-     * @return A copy of the last claimed rewards map.
+     * @return The number of days since 1970-01-01 in that zone.
      */
-    public Map<UUID, LocalDate> getLastClaimedRewards() {
-        return new HashMap<>(lastClaimedRewards);
+    public int today() {
+        String setting = ModConfigs.DAILY_REWARD_TIMEZONE.get();
+        if (!setting.equals(zoneSetting)) {
+            zone = ModConfigs.getDailyRewardZone();
+            zoneSetting = setting;
+        }
+        Instant now = Instant.now();
+        long local = now.getEpochSecond() + zone.getRules().getOffset(now).getTotalSeconds();
+        return (int) Math.floorDiv(local, 86400L);
     }
 
     /**
-     * Loads daily reward data from a provided map into memory.
+     * Gets a copy of the last claimed rewards map.
      *
-     * @param rewards The map of UUIDs to reward claim dates to load.
+     * @return A copy of the last claimed rewards map.
      */
-    public void loadDailyRewards(Map<UUID, LocalDate> rewards) {
-        lastClaimedRewards.putAll(rewards);
+    public Map<UUID, LocalDate> getLastClaimedRewards() {
+        return storage.getDailyRewards();
     }
 }
\ No newline at end of file
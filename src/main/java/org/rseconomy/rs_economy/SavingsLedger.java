@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2025 Rosti Studios. All rights reserved.
+ * Licensed under the Rosti Studios Minecraft Mod License (RSMML).
+ * For more information, see the LICENSE file in the project root
+ * or contact us via Discord: https://dsc.gg/rosti-studios
+ */
+package org.rseconomy.rs_economy;
+
+import com.mojang.logging.LogUtils;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Savings accounts that earn compound interest, kept next to each player's wallet.
+ * <p>
+ * Interest is not paid out by visiting every account. Each account stores its savings
+ * together with the number of the interest period they were last brought up to date
+ * for, and whenever the account is used, the interest of every period since then is
+ * added first. Work is therefore proportional to the accounts in use, and idle accounts
+ * cost nothing until their owner comes back.
+ * <p>
+ * Each period adds the configured rate of the savings, rounded down to a whole minor
+ * unit, and the next period compounds on the result. This is the exact integer result
+ * of paying interest to every account at the end of every period, so a player's savings
+ * do not depend on how often they look at them. Periods are counted from the epoch, so
+ * all accounts earn at the same moments, and money deposited during a period earns a
+ * full period's interest at its end.
+ * <p>
+ * Deposits and withdrawals store the new wallet balance and savings as one change,
+ * see {@link EconomyStorage#putBalanceAndSavings}, so a crash never loses the money moved.
+ * {@link SweepRule}s apply to wallet and savings together, so savings do not escape a
+ * wealth tax. The leaderboard ranks wallets only.
+ * <p>
+ * Rate and period are read on server start. If they changed since the last start,
+ * every account is first brought up to date with the old settings.
+ */
+public class SavingsLedger {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    /** Parts per million that make up 100%. */
+    private static final long PPM = 1_000_000;
+
+    private final BalanceManager balanceManager;
+    private final EconomyStorage storage;
+    private final Object[] locks;
+    private final long ratePpm;
+    private final long periodMillis;
+
+    private SavingsLedger(BalanceManager balanceManager, EconomyStorage storage, long ratePpm, long periodMillis) {
+        this.balanceManager = balanceManager;
+        this.storage = storage;
+        this.ratePpm = ratePpm;
+        this.periodMillis = periodMillis;
+        this.locks = new Object[BalanceManager.lockStripes()];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Creates the ledger with the configured interest settings, first bringing every
+     * account up to date if the settings differ from those stored in the settings file.
+     *
+     * @param balanceManager The balance manager holding the wallets money is moved from and to.
+     * @param storage        The storage holding the savings.
+     * @param settingsFile   The file the interest settings of the last start are kept in.
+     * @return The ledger.
+     */
+    public static SavingsLedger open(BalanceManager balanceManager, EconomyStorage storage, Path settingsFile) {
+        SavingsLedger ledger = new SavingsLedger(balanceManager, storage, parseRate(ModConfigs.SAVINGS_INTEREST_RATE.get()),
+                TimeUnit.HOURS.toMillis(ModConfigs.SAVINGS_INTEREST_PERIOD.get()));
+        Properties settings = new Properties();
+        try (InputStream in = Files.newInputStream(settingsFile)) {
+            settings.load(in);
+        } catch (NoSuchFileException e) {
+            // First start with savings
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.error("Failed to load savings settings from {}: {}", settingsFile, e.getMessage(), e);
+        }
+        try {
+            long oldRate = Long.parseLong(settings.getProperty("rate_ppm", Long.toString(ledger.ratePpm)));
+            long oldPeriod = Long.parseLong(settings.getProperty("period_millis", Long.toString(ledger.periodMillis)));
+            if (oldRate != ledger.ratePpm || oldPeriod != ledger.periodMillis) {
+                ledger.convert(oldRate, oldPeriod);
+            }
+        } catch (NumberFormatException e) {
+            LOGGER.error("Invalid savings settings in {}, keeping savings as stored: {}", settingsFile, e.getMessage());
+        }
+        settings.setProperty("rate_ppm", Long.toString(ledger.ratePpm));
+        settings.setProperty("period_millis", Long.toString(ledger.periodMillis));
+        saveSettings(settingsFile, settings);
+        return ledger;
+    }
+
+    /**
+     * Gets a player's savings including all interest earned so far.
+     *
+     * @param uuid The UUID of the player.
+     * @return The savings in minor units.
+     */
+    public long getSavingsMinor(UUID uuid) {
+        long most = uuid.getMostSignificantBits();
+        long least = uuid.getLeastSignificantBits();
+        synchronized (lockOf(most, least)) {
+            return accrue(most, least, periodOf(most, least));
+        }
+    }
+
+    /**
+     * Moves an amount from a player's wallet into their savings.
+     *
+     * @param uuid   The UUID of the player.
+     * @param amount The amount in minor units.
+     * @return False if the amount is not positive, the wallet does not cover it or the
+     *         savings cannot hold it.
+     */
+    public boolean deposit(UUID uuid, long amount) {
+        if (amount <= 0) {
+            return false;
+        }
+        long most = uuid.getMostSignificantBits();
+        long least = uuid.getLeastSignificantBits();
+        synchronized (lockOf(most, least)) {
+            int period = periodOf(most, least);
+            long savings = accrue(most, least, period);
+            return savings <= Long.MAX_VALUE - amount
+                    && balanceManager.transferWithSavings(uuid, -amount, savings + amount, period);
+        }
+    }
+
+    /**
+     * Moves an amount from a player's savings into their wallet.
+     *
+     * @param uuid   The UUID of the player.
+     * @param amount The amount in minor units.
+     * @return False if the amount is not positive, the savings do not cover it or the
+     *         wallet cannot hold it.
+     */
+    public boolean withdraw(UUID uuid, long amount) {
+        if (amount <= 0) {
+            return false;
+        }
+        long most = uuid.getMostSignificantBits();
+        long least = uuid.getLeastSignificantBits();
+        synchronized (lockOf(most, least)) {
+            int period = periodOf(most, least);
+            long savings = accrue(most, least, period);
+            return savings >= amount && balanceManager.transferWithSavings(uuid, amount, savings - amount, period);
+        }
+    }
+
+    /**
+     * Applies a sweep rule to a player's wallet and savings together, so money deposited
+     * into savings is still taxed and counted. Debits are taken from the wallet first and
+     * from the savings for the rest; credits go to the wallet.
+     *
+     * @param most  The most significant bits of the player's UUID.
+     * @param least The least significant bits of the player's UUID.
+     * @param rule  The rule, evaluated on the sum of balance and savings with interest.
+     * @return The signed change in minor units.
+     */
+    public long applySweep(long most, long least, SweepRule rule) {
+        synchronized (lockOf(most, least)) {
+            int period = periodOf(most, least);
+            long savings = accrue(most, least, period);
+            return balanceManager.updateWithSavings(most, least, savings, period, rule::delta);
+        }
+    }
+
+    /**
+     * Visits the stored savings of every account, without interest earned since the
+     * account was last used. Safe to call from any thread.
+     *
+     * @param consumer The consumer receiving the raw UUID bits and stored savings of each account.
+     */
+    public void forEachStoredSavings(AccountTable.EntryConsumer consumer) {
+        storage.forEachSavings(consumer);
+    }
+
+    /**
+     * Gets the interest rate per period.
+     *
+     * @return The rate in parts per million, where 10000 is 1%.
+     */
+    public long getRatePpm() {
+        return ratePpm;
+    }
+
+    /**
+     * Gets the length of an interest period.
+     *
+     * @return The period in milliseconds.
+     */
+    public long getPeriodMillis() {
+        return periodMillis;
+    }
+
+    /**
+     * Gets the time the current interest period ends and its interest is added.
+     *
+     * @return The end of the period in epoch milliseconds.
+     */
+    public long getNextPeriodStart() {
+        return (currentPeriod() + 1L) * periodMillis;
+    }
+
+    /**
+     * Adds the interest of a number of periods to an amount, period by period, rounding
+     * each period's interest down to a whole minor unit. Stops early once the interest
+     * rounds to zero or the amount reaches the largest balance, as nothing changes after.
+     *
+     * @param amount   The amount in minor units; not negative.
+     * @param periods  The number of periods.
+     * @param ratePpm  The rate per period in parts per million, at most 100%.
+     * @return The amount with interest.
+     */
+    public static long compound(long amount, long periods, long ratePpm) {
+        for (long i = 0; i < periods && amount < Long.MAX_VALUE; i++) {
+            // Split so that neither product can overflow; the rate is at most PPM
+            long interest = amount / PPM * ratePpm + amount % PPM * ratePpm / PPM;
+            if (interest == 0) {
+                break;
+            }
+            amount = Money.add(amount, interest);
+        }
+        return amount;
+    }
+
+    /**
+     * Brings an account up to date and stores the result if interest was added.
+     * Caller holds the account's lock.
+     *
+     * @return The savings in minor units as of the given period.
+     */
+    private long accrue(long most, long least, int period) {
+        int storedPeriod = storage.getSavingsPeriod(most, least);
+        if (storedPeriod == EconomyStorage.NO_SAVINGS) {
+            return 0L;
+        }
+        long stored = storage.getSavingsMinor(most, least);
+        long savings = compound(stored, (long) period - storedPeriod, ratePpm);
+        if (savings != stored) {
+            storage.putSavings(most, least, savings, period);
+        }
+        return savings;
+    }
+
+    /**
+     * Brings every account up to date with the interest settings of the last start and
+     * renumbers it to the current settings' periods. The periods are collected first, as
+     * storage must not be written while it is iterated.
+     */
+    private void convert(long oldRatePpm, long oldPeriodMillis) {
+        long now = System.currentTimeMillis();
+        int oldCurrent = (int) Math.floorDiv(now, oldPeriodMillis);
+        int current = currentPeriod();
+        AccountTable accounts = new AccountTable();
+        storage.forEachSavings(accounts::put);
+        accounts.forEach((most, least, amount) -> {
+            int storedPeriod = storage.getSavingsPeriod(most, least);
+            storage.putSavings(most, least, compound(amount, (long) oldCurrent - storedPeriod, oldRatePpm), current);
+        });
+        if (accounts.size() > 0) {
+            LOGGER.info("Brought {} savings accounts up to date before changing the interest settings", accounts.size());
+        }
+    }
+
+    /**
+     * Gets the period an account is brought up to date for: the current one, unless the
+     * clock went back since the account was last used, as periods must never be counted twice.
+     */
+    private int periodOf(long most, long least) {
+        return Math.max(currentPeriod(), storage.getSavingsPeriod(most, least));
+    }
+
+    private int currentPeriod() {
+        return (int) Math.floorDiv(System.currentTimeMillis(), periodMillis);
+    }
+
+    private Object lockOf(long most, long least) {
+        // The same bits as ConcurrentAccountTable's stripes
+        return locks[(int) (AccountTable.mix(most, least) >>> 40) & (locks.length - 1)];
+    }
+
+    /**
+     * Parses a percentage with up to four decimal places.
+     *
+     * @param rate The percentage, e.g. "0.05".
+     * @return The rate in parts per million.
+     * @throws IllegalArgumentException If the rate is malformed or not within 0-100%.
+     */
+    static long parseRate(String rate) {
+        try {
+            long ppm = new BigDecimal(rate.trim()).movePointRight(4).longValueExact();
+            if (ppm < 0 || ppm > PPM) {
+                throw new IllegalArgumentException("Savings interest rate must be 0-100%: " + rate);
+            }
+            return ppm;
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Savings interest rate has more than four decimal places: " + rate, e);
+        }
+    }
+
+    private static void saveSettings(Path settingsFile, Properties settings) {
+        try {
+            Files.createDirectories(settingsFile.getParent());
+            Path temp = Files.createTempFile(settingsFile.getParent(), settingsFile.getFileName().toString(), ".tmp");
+            try {
+                try (OutputStream out = Files.newOutputStream(temp)) {
+                    settings.store(out, "RSEconomy savings: interest settings the stored savings are up to date for");
+                }
+                try {
+                    Files.move(temp, settingsFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, settingsFile, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to save savings settings to {}: {}", settingsFile, e.getMessage(), e);
+        }
+    }
+}
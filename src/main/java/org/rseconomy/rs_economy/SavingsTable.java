@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2025 Rosti Studios. All rights reserved.
+ * Licensed under the Rosti Studios Minecraft Mod License (RSMML).
+ * For more information, see the LICENSE file in the project root
+ * or contact us via Discord: https://dsc.gg/rosti-studios
+ */
+package org.rseconomy.rs_economy;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Thread-safe table of savings accounts, each holding its amount together with the
+ * interest period the amount is up to date for.
+ * <p>
+ * The two values only make sense as a pair: an amount read with another account state's
+ * period would have interest counted twice or not at all. Both are therefore written
+ * under the same stripe write lock, and {@link #toColumns()} copies them under the same
+ * read lock, so a snapshot never sees one value of a change without the other. Stripes
+ * are selected like ConcurrentAccountTable's.
+ */
+public class SavingsTable {
+    private final AccountTable[] amounts;
+    private final AccountTable[] periods;
+    private final StampedLock[] locks;
+    private final int stripeMask;
+
+    /**
+     * Constructs a SavingsTable.
+     *
+     * @param stripeCount The number of lock stripes, rounded up to a power of two.
+     */
+    public SavingsTable(int stripeCount) {
+        int count = stripeCount <= 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+        this.amounts = new AccountTable[count];
+        this.periods = new AccountTable[count];
+        this.locks = new StampedLock[count];
+        for (int i = 0; i < count; i++) {
+            amounts[i] = new AccountTable();
+            periods[i] = new AccountTable();
+            locks[i] = new StampedLock();
+        }
+        this.stripeMask = count - 1;
+    }
+
+    /**
+     * Gets an account's savings.
+     *
+     * @param most  The most significant bits of the player's UUID.
+     * @param least The least significant bits of the player's UUID.
+     * @return The savings in minor units, or 0 if the account has none.
+     */
+    public long getAmount(long most, long least) {
+        int stripe = stripeOf(most, least);
+        long stamp = locks[stripe].readLock();
+        try {
+            return amounts[stripe].get(most, least, 0L);
+        } finally {
+            locks[stripe].unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Gets the interest period an account's savings are up to date for.
+     *
+     * @param most  The most significant bits of the player's UUID.
+     * @param least The least significant bits of the player's UUID.
+     * @return The period, or {@link EconomyStorage#NO_SAVINGS} if the account never had savings.
+     */
+    public int getPeriod(long most, long least) {
+        int stripe = stripeOf(most, least);
+        long stamp = locks[stripe].readLock();
+        try {
+            return (int) periods[stripe].get(most, least, EconomyStorage.NO_SAVINGS);
+        } finally {
+            locks[stripe].unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Checks whether an account has savings.
+     *
+     * @param most  The most significant bits of the player's UUID.
+     * @param least The least significant bits of the player's UUID.
+     * @return True if the account is present.
+     */
+    public boolean containsKey(long most, long least) {
+        int stripe = stripeOf(most, least);
+        long stamp = locks[stripe].readLock();
+        try {
+            return amounts[stripe].containsKey(most, least);
+        } finally {
+            locks[stripe].unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Sets an account's savings and period together.
+     *
+     * @param most   The most significant bits of the player's UUID.
+     * @param least  The least significant bits of the player's UUID.
+     * @param amount The savings in minor units.
+     * @param period The interest period the savings are up to date for.
+     */
+    public void put(long most, long least, long amount, int period) {
+        int stripe = stripeOf(most, least);
+        long stamp = locks[stripe].writeLock();
+        try {
+            amounts[stripe].put(most, least, amount);
+            periods[stripe].put(most, least, period);
+        } finally {
+            locks[stripe].unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Visits every account's savings. Each stripe is read under its lock, so the consumer
+     * must not call back into the table.
+     *
+     * @param consumer The consumer receiving the raw UUID bits and savings of each account.
+     */
+    public void forEach(AccountTable.EntryConsumer consumer) {
+        for (int i = 0; i < amounts.length; i++) {
+            long stamp = locks[i].readLock();
+            try {
+                amounts[i].forEach(consumer);
+            } finally {
+                locks[i].unlockRead(stamp);
+            }
+        }
+    }
+
+    /**
+     * Copies all accounts into parallel arrays, each account's amount and period read
+     * together under its stripe's lock.
+     *
+     * @return The UUID most bits, UUID least bits, amounts and periods, in that order.
+     */
+    public long[][] toColumns() {
+        long[] most = new long[0];
+        long[] least = new long[0];
+        long[] values = new long[0];
+        long[] periodValues = new long[0];
+        int count = 0;
+        for (int i = 0; i < amounts.length; i++) {
+            long stamp = locks[i].readLock();
+            try {
+                int needed = count + amounts[i].size();
+                if (needed > most.length) {
+                    int capacity = Math.max(needed, most.length * 2);
+                    most = Arrays.copyOf(most, capacity);
+                    least = Arrays.copyOf(least, capacity);
+                    values = Arrays.copyOf(values, capacity);
+                    periodValues = Arrays.copyOf(periodValues, capacity);
+                }
+                long[][] columns = {most, least, values, periodValues};
+                int[] index = {count};
+                AccountTable stripePeriods = periods[i];
+                amounts[i].forEach((entryMost, entryLeast, amount) -> {
+                    int at = index[0]++;
+                    columns[0][at] = entryMost;
+                    columns[1][at] = entryLeast;
+                    columns[2][at] = amount;
+                    columns[3][at] = stripePeriods.get(entryMost, entryLeast, EconomyStorage.NO_SAVINGS);
+                });
+                count = index[0];
+            } finally {
+                locks[i].unlockRead(stamp);
+            }
+        }
+        return new long[][]{Arrays.copyOf(most, count), Arrays.copyOf(least, count),
+                Arrays.copyOf(values, count), Arrays.copyOf(periodValues, count)};
+    }
+
+    /**
+     * Gets the number of accounts with savings.
+     *
+     * @return The number of accounts.
+     */
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < amounts.length; i++) {
+            long stamp = locks[i].readLock();
+            try {
+                size += amounts[i].size();
+            } finally {
+                locks[i].unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Removes all accounts.
+     */
+    public void clear() {
+        for (int i = 0; i < amounts.length; i++) {
+            long stamp = locks[i].writeLock();
+            try {
+                amounts[i].clear();
+                periods[i].clear();
+            } finally {
+                locks[i].unlockWrite(stamp);
+            }
+        }
+    }
+
+    private int stripeOf(long most, long least) {
+        // AccountTable probes with the low hash bits, so stripes use the high ones
+        return (int) (AccountTable.mix(most, least) >>> 40) & stripeMask;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2025 Rosti Studios. All rights reserved.
+ * Licensed under the Rosti Studios Minecraft Mod License (RSMML).
+ * For more information, see the LICENSE file in the project root
+ * or contact us via Discord: https://dsc.gg/rosti-studios
+ */
+package org.rseconomy.rs_economy;
+
+import net.minecraft.server.MinecraftServer;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+
+/**
+ * Runs balance operations submitted from any thread.
+ * Operations are executed immediately when the balance manager is ready and either
+ * concurrent access is enabled or the caller is already on the server thread.
+ * Otherwise they are queued and drained in bulk on the server thread every tick,
+ * including operations submitted before the server has started.
+ */
+public class ServerTaskQueue {
+    private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+    private volatile MinecraftServer server;
+    private volatile BalanceManager balanceManager;
+    private volatile boolean direct;
+
+    /**
+     * Submits an operation against the balance manager.
+     *
+     * @param operation The operation to run.
+     * @param <T>       The result type of the operation.
+     * @return A future completed with the operation's result, or exceptionally if it threw.
+     */
+    public <T> CompletableFuture<T> submit(Function<BalanceManager, T> operation) {
+        BalanceManager manager = balanceManager;
+        MinecraftServer current = server;
+        if (manager != null && (direct || current != null && current.isSameThread())) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            complete(future, manager, operation);
+            return future;
+        }
+        CompletableFuture<T> future = new CompletableFuture<>();
+        pending.add(() -> complete(future, balanceManager, operation));
+        return future;
+    }
+
+    /**
+     * Marks the balance manager as ready and runs all operations queued so far.
+     * Must be called on the server thread.
+     *
+     * @param server         The Minecraft server instance.
+     * @param balanceManager The initialized balance manager.
+     * @param direct         Whether operations may run on the calling thread.
+     */
+    public void start(MinecraftServer server, BalanceManager balanceManager, boolean direct) {
+        this.server = server;
+        this.direct = direct;
+        this.balanceManager = balanceManager;
+        drain();
+    }
+
+    /**
+     * Runs all queued operations. Must be called on the server thread.
+     */
+    public void drain() {
+        if (balanceManager == null) {
+            return;
+        }
+        Runnable task;
+        while ((task = pending.poll()) != null) {
+            task.run();
+        }
+    }
+
+    /**
+     * Runs the remaining queued operations and stops serving new ones. Operations
+     * submitted afterwards wait until the next server start.
+     * Must be called on the server thread.
+     */
+    public void stop() {
+        drain();
+        this.balanceManager = null;
+        this.server = null;
+    }
+
+    private static <T> void complete(CompletableFuture<T> future, BalanceManager manager, Function<BalanceManager, T> operation) {
+        try {
+            future.complete(operation.apply(manager));
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+        }
+    }
+}
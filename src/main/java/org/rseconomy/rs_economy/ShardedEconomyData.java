@@ -0,0 +1,403 @@
+/*
+ * Copyright (c) 2025 Rosti Studios. All rights reserved.
+ * Licensed under the Rosti Studios Minecraft Mod License (RSMML).
+ * For more information, see the LICENSE file in the project root
+ * or contact us via Discord: https://dsc.gg/rosti-studios
+ */
+package org.rseconomy.rs_economy;
+
+import com.mojang.logging.LogUtils;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.storage.LevelResource;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Splits economy data over several {@link EconomyData} files by UUID hash.
+ * Each shard has its own dirty flag, so a save only rewrites the shards whose
+ * accounts changed instead of serializing every account into one file.
+ * <p>
+ * With a single shard the legacy {@code rs_economy} file is used. Otherwise shards are
+ * named {@code rs_economy-<index>-of-<count>}. When the configured shard count differs
+ * from the files found in the world, their contents are moved into the configured
+ * layout on startup and the old files are emptied, then deleted on a later start.
+ */
+public class ShardedEconomyData {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final String LEGACY_NAME = "rs_economy";
+    private static final Pattern SHARD_FILE = Pattern.compile("rs_economy-(\\d+)-of-(\\d+)\\.dat");
+
+    private final EconomyData[] shards;
+    private final Path dataDirectory;
+
+    private ShardedEconomyData(EconomyData[] shards, Path dataDirectory) {
+        this.shards = shards;
+        this.dataDirectory = dataDirectory;
+    }
+
+    /**
+     * Loads the economy data of a world in the given shard layout, converting data
+     * stored in any other layout.
+     *
+     * @param level      The overworld, whose data storage holds the shards.
+     * @param shardCount The number of shards to use.
+     * @return The loaded data.
+     */
+    public static ShardedEconomyData load(ServerLevel level, int shardCount) {
+        Path dataDirectory = level.getServer().getWorldPath(LevelResource.ROOT).resolve("data");
+        ShardedEconomyData data = new ShardedEconomyData(loadLayout(level, shardCount), dataDirectory);
+        for (int layout : findLayouts(dataDirectory)) {
+            if (layout != shardCount) {
+                data.absorb(loadLayout(level, layout), dataDirectory, layout);
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Creates unsaved data with a single shard, for use outside a world.
+     *
+     * @return The created data.
+     */
+    public static ShardedEconomyData create() {
+        return new ShardedEconomyData(new EconomyData[]{EconomyData.create()}, null);
+    }
+
+    public void setBalance(UUID uuid, double amount) {
+        setBalanceMinor(uuid, Money.toMinor(amount));
+    }
+
+    public void setBalanceMinor(UUID uuid, long amount) {
+        shardOf(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()).setBalanceMinor(uuid, amount);
+    }
+
+    // Marks only the account's shard dirty, which is a flag write and safe under a balance lock
+    public void putBalanceMinor(long most, long least, long amount) {
+        EconomyData shard = shardOf(most, least);
+        shard.putBalanceMinor(most, least, amount);
+        shard.setDirty();
+    }
+
+    public double getBalance(UUID uuid) {
+        return Money.toMajor(getBalanceMinor(uuid));
+    }
+
+    public long getBalanceMinor(UUID uuid) {
+        return shardOf(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()).getBalanceMinor(uuid);
+    }
+
+    public long getBalanceMinor(long most, long least) {
+        return shardOf(most, least).getBalanceMinor(most, least);
+    }
+
+    public void setDailyRewardDay(long most, long least, int epochDay) {
+        shardOf(most, least).setDailyRewardDay(most, least, epochDay);
+    }
+
+    public int getDailyRewardDay(long most, long least) {
+        return shardOf(most, least).getDailyRewardDay(most, least);
+    }
+
+    public void putSavings(long most, long least, long amount, int period) {
+        shardOf(most, least).putSavings(most, least, amount, period);
+    }
+
+    public void putBalanceAndSavings(long most, long least, long balance, long amount, int period) {
+        shardOf(most, least).putBalanceAndSavings(most, least, balance, amount, period);
+    }
+
+    public long getSavingsMinor(long most, long least) {
+        return shardOf(most, least).getSavingsMinor(most, least);
+    }
+
+    public int getSavingsPeriod(long most, long least) {
+        return shardOf(most, least).getSavingsPeriod(most, least);
+    }
+
+    public void forEachSavings(AccountTable.EntryConsumer consumer) {
+        for (EconomyData shard : shards) {
+            shard.forEachSavings(consumer);
+        }
+    }
+
+    public void forEachBalance(AccountTable.EntryConsumer consumer) {
+        for (EconomyData shard : shards) {
+            shard.forEachBalance(consumer);
+        }
+    }
+
+    public void forEachDailyReward(AccountTable.EntryConsumer consumer) {
+        for (EconomyData shard : shards) {
+            shard.forEachDailyReward(consumer);
+        }
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    // Changes made after this call are appended to the journal
+    public void setJournal(TransactionJournal journal) {
+        for (EconomyData shard : shards) {
+            shard.setJournal(journal);
+        }
+    }
+
+    /**
+     * Gets the first journal sequence any shard needs replayed.
+     *
+     * @return The lowest journal sequence stored with a shard.
+     */
+    public long getJournalSequence() {
+        long sequence = Long.MAX_VALUE;
+        for (EconomyData shard : shards) {
+            sequence = Math.min(sequence, shard.getJournalSequence());
+        }
+        return sequence;
+    }
+
+    /**
+     * Marks every shard as containing all journal records below the given sequence.
+     *
+     * @param sequence The journal sequence to store.
+     */
+    public void setJournalSequence(long sequence) {
+        for (EconomyData shard : shards) {
+            shard.setJournalSequence(sequence);
+        }
+    }
+
+    /**
+     * Creates a consumer that applies replayed journal records to the shard of each
+     * account, skipping records that the shard's snapshot already contains. A savings
+     * amount is only applied together with the period record right before it.
+     *
+     * @return A consumer to pass to {@link TransactionJournal#open}.
+     */
+    public TransactionJournal.RecordConsumer journalReplayer() {
+        long[] fromSequence = new long[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            fromSequence[i] = shards[i].getJournalSequence();
+        }
+        // Sequence, UUID halves and value of the last savings period and savings transfer records
+        long[] period = {-1L, 0L, 0L, 0L};
+        long[] transfer = {-1L, 0L, 0L, 0L};
+        return (sequence, type, most, least, value) -> {
+            int index = shardIndex(most, least);
+            if (sequence < fromSequence[index]) {
+                return;
+            }
+            EconomyData shard = shards[index];
+            if (type == TransactionJournal.TYPE_BALANCE) {
+                shard.putBalanceMinor(most, least, value);
+                shard.setDirty();
+            } else if (type == TransactionJournal.TYPE_DAILY_REWARD) {
+                shard.setDailyRewardDay(most, least, (int) value);
+            } else if (type == TransactionJournal.TYPE_SAVINGS_TRANSFER) {
+                transfer[0] = sequence;
+                transfer[1] = most;
+                transfer[2] = least;
+                transfer[3] = value;
+            } else if (type == TransactionJournal.TYPE_SAVINGS_PERIOD) {
+                period[0] = sequence;
+                period[1] = most;
+                period[2] = least;
+                period[3] = value;
+            } else if (type == TransactionJournal.TYPE_SAVINGS
+                    && period[0] == sequence - 1 && period[1] == most && period[2] == least) {
+                if (transfer[0] == sequence - 2 && transfer[1] == most && transfer[2] == least) {
+                    shard.putBalanceMinor(most, least, transfer[3]);
+                    shard.setDirty();
+                }
+                shard.putSavings(most, least, value, (int) period[3]);
+            }
+        };
+    }
+
+    /**
+     * Hands saving over to {@link #saveAsync} instead of the world's data storage.
+     *
+     * @param savedExternally True to save through an AsyncEconomySaver.
+     */
+    public void setSavedExternally(boolean savedExternally) {
+        for (EconomyData shard : shards) {
+            shard.setSavedExternally(savedExternally);
+        }
+    }
+
+    /**
+     * Snapshots every shard with unsaved changes and queues it to be written.
+     * Only the copy runs on the calling thread; encoding and writing run on the saver's thread.
+     *
+     * @param saver The saver to write the snapshots with.
+     * @return The number of shards queued.
+     */
+    public int saveAsync(AsyncEconomySaver saver) {
+        if (dataDirectory == null) {
+            return 0;
+        }
+        int queued = 0;
+        for (int i = 0; i < shards.length; i++) {
+            EconomyData shard = shards[i];
+            if (!shard.needsSave()) {
+                continue;
+            }
+            EconomySnapshot snapshot = shard.snapshot();
+            // A change after the snapshot still shows up through hasUnsavedChanges()
+            shard.setDirty(false);
+            saver.write(dataDirectory.resolve(shardName(i, shards.length) + ".dat"), snapshot, shard::setDirty);
+            queued++;
+        }
+        return queued;
+    }
+
+    /**
+     * Called after the world was saved. Marks shards dirty again if they changed while
+     * they were being saved, and computes the journal sequence a restart would replay from.
+     *
+     * @param nextSequence The journal's next sequence, read before this call.
+     * @return The lowest journal sequence still needed to restore unsaved changes.
+     */
+    public long checkpoint(long nextSequence) {
+        long checkpoint = nextSequence;
+        for (EconomyData shard : shards) {
+            if (shard.hasUnsavedChanges()) {
+                shard.setDirty();
+                checkpoint = Math.min(checkpoint, shard.getJournalSequence());
+            }
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Moves the contents of shards stored in another layout into this one.
+     * For accounts present in both, the value from the more recent snapshot wins; the
+     * receiving shard then replays the journal from the older snapshot's sequence, which
+     * leaves every account at its last journaled value.
+     */
+    private void absorb(EconomyData[] source, Path dataDirectory, int layout) {
+        // Empty shards have no snapshot of their own, so only received snapshots bound their replay
+        long[] targetSequences = new long[shards.length];
+        long[] replayFrom = new long[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            targetSequences[i] = shards[i].isEmpty() ? Long.MIN_VALUE : shards[i].getJournalSequence();
+            replayFrom[i] = shards[i].isEmpty() ? Long.MAX_VALUE : shards[i].getJournalSequence();
+        }
+        boolean[] received = new boolean[shards.length];
+        int converted = 0;
+        for (EconomyData old : source) {
+            if (old.isEmpty()) {
+                continue;
+            }
+            long oldSequence = old.getJournalSequence();
+            old.forEachBalance((most, least, amount) -> {
+                int index = shardIndex(most, least);
+                if (!shards[index].hasBalance(most, least) || oldSequence > targetSequences[index]) {
+                    shards[index].putBalanceMinor(most, least, amount);
+                }
+                replayFrom[index] = Math.min(replayFrom[index], oldSequence);
+                received[index] = true;
+            });
+            old.forEachSavings((most, least, amount) -> {
+                int index = shardIndex(most, least);
+                if (!shards[index].hasSavings(most, least) || oldSequence > targetSequences[index]) {
+                    shards[index].putSavings(most, least, amount, old.getSavingsPeriod(most, least));
+                }
+                replayFrom[index] = Math.min(replayFrom[index], oldSequence);
+                received[index] = true;
+            });
+            old.forEachDailyReward((most, least, day) -> {
+                int index = shardIndex(most, least);
+                // NO_CLAIM is below every real day
+                if (day > shards[index].getDailyRewardDay(most, least)) {
+                    shards[index].setDailyRewardDay(most, least, (int) day);
+                }
+                replayFrom[index] = Math.min(replayFrom[index], oldSequence);
+                received[index] = true;
+            });
+            // Saved empty instead of deleted, so a crash before the new shards are written loses nothing
+            old.clear();
+            converted++;
+        }
+        for (int i = 0; i < shards.length; i++) {
+            if (received[i]) {
+                shards[i].setJournalSequence(replayFrom[i]);
+            }
+        }
+        if (converted > 0) {
+            LOGGER.info("Converted economy data from {} to {} shard(s)", layout, shards.length);
+            return;
+        }
+        // Emptied by an earlier conversion, whose new shards have been saved since
+        for (int i = 0; i < layout; i++) {
+            try {
+                Files.deleteIfExists(dataDirectory.resolve(shardName(i, layout) + ".dat"));
+            } catch (IOException e) {
+                LOGGER.warn("Failed to delete converted economy shard: {}", e.getMessage());
+            }
+        }
+    }
+
+    private EconomyData shardOf(long most, long least) {
+        return shards[shardIndex(most, least)];
+    }
+
+    private int shardIndex(long most, long least) {
+        if (shards.length == 1) {
+            return 0;
+        }
+        // Lock stripes and table slots use other bits of the same hash
+        return (int) ((AccountTable.mix(most, least) >>> 33) % shards.length);
+    }
+
+    private static EconomyData[] loadLayout(ServerLevel level, int shardCount) {
+        EconomyData[] shards = new EconomyData[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = EconomyData.get(level, shardName(i, shardCount));
+        }
+        return shards;
+    }
+
+    private static String shardName(int index, int shardCount) {
+        return shardCount == 1 ? LEGACY_NAME : LEGACY_NAME + "-" + index + "-of-" + shardCount;
+    }
+
+    /**
+     * Finds the shard counts of all economy data files in a world's data directory.
+     */
+    private static TreeSet<Integer> findLayouts(Path dataDirectory) {
+        TreeSet<Integer> layouts = new TreeSet<>();
+        if (!Files.isDirectory(dataDirectory)) {
+            return layouts;
+        }
+        try (Stream<Path> files = Files.list(dataDirectory)) {
+            files.forEach(file -> {
+                String name = file.getFileName().toString();
+                Matcher matcher = SHARD_FILE.matcher(name);
+                if (name.equals(LEGACY_NAME + ".dat")) {
+                    layouts.add(1);
+                } else if (matcher.matches()) {
+                    try {
+                        int count = Integer.parseInt(matcher.group(2));
+                        if (count > 1 && Integer.parseInt(matcher.group(1)) < count) {
+                            layouts.add(count);
+                        }
+                    } catch (NumberFormatException e) {
+                        // Skip files that only look like shards
+                    }
+                }
+            });
+        } catch (IOException e) {
+            LOGGER.warn("Failed to list economy data files: {}", e.getMessage());
+        }
+        return layouts;
+    }
+}
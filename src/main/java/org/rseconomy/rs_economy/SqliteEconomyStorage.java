@@ -0,0 +1,532 @@
+/*
+ * Copyright (c) 2025 Rosti Studios. All rights reserved.
+ * Licensed under the Rosti Studios Minecraft Mod License (RSMML).
+ * For more information, see the LICENSE file in the project root
+ * or contact us via Discord: https://dsc.gg/rosti-studios
+ */
+package org.rseconomy.rs_economy;
+
+import com.mojang.logging.LogUtils;
+import org.slf4j.Logger;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Storage backend that keeps economy data in an SQLite database file.
+ * <p>
+ * Accounts are read one at a time when they are first needed, so offline accounts
+ * stay on disk. Changes are collected in memory, keeping only the latest value of
+ * each account, and written by a background thread as one batched transaction per
+ * flush interval, and on every world save. A crash loses at most one interval.
+ */
+public class SqliteEconomyStorage implements EconomyStorage {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final String DRIVER = "org.sqlite.JDBC";
+    private static final AccountTable NONE = new AccountTable(0);
+
+    // Guarded by dbLock; JDBC connections are not meant to be shared between threads
+    private final ReentrantLock dbLock = new ReentrantLock();
+    private final Connection connection;
+    private final PreparedStatement selectBalance;
+    private final PreparedStatement upsertBalance;
+    private final PreparedStatement selectReward;
+    private final PreparedStatement upsertReward;
+    private final PreparedStatement selectSavings;
+    private final PreparedStatement upsertSavings;
+
+    // Guarded by pendingLock
+    private final Object pendingLock = new Object();
+    private AccountTable pendingBalances = new AccountTable();
+    private AccountTable pendingRewards = new AccountTable();
+    // Savings amounts and their periods always hold the same accounts
+    private AccountTable pendingSavings = new AccountTable();
+    private AccountTable pendingSavingsPeriods = new AccountTable();
+    /** Changes taken by the running flush. Still read from until they are committed. */
+    private AccountTable flushingBalances = NONE;
+    private AccountTable flushingRewards = NONE;
+    private AccountTable flushingSavings = NONE;
+    private AccountTable flushingSavingsPeriods = NONE;
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "RSEconomy-Storage");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private SqliteEconomyStorage(Connection connection) throws SQLException {
+        this.connection = connection;
+        this.selectBalance = connection.prepareStatement("SELECT amount FROM balances WHERE most = ? AND least = ?");
+        this.upsertBalance = connection.prepareStatement("INSERT INTO balances (most, least, amount) VALUES (?, ?, ?) "
+                + "ON CONFLICT (most, least) DO UPDATE SET amount = excluded.amount");
+        this.selectReward = connection.prepareStatement("SELECT day FROM daily_rewards WHERE most = ? AND least = ?");
+        this.upsertReward = connection.prepareStatement("INSERT INTO daily_rewards (most, least, day) VALUES (?, ?, ?) "
+                + "ON CONFLICT (most, least) DO UPDATE SET day = excluded.day");
+        this.selectSavings = connection.prepareStatement("SELECT amount, period FROM savings WHERE most = ? AND least = ?");
+        this.upsertSavings = connection.prepareStatement("INSERT INTO savings (most, least, amount, period) VALUES (?, ?, ?, ?) "
+                + "ON CONFLICT (most, least) DO UPDATE SET amount = excluded.amount, period = excluded.period");
+    }
+
+    /**
+     * Opens or creates the database and starts the background writer.
+     * Stored balances are converted if the currency scale changed since the last start.
+     *
+     * @param file                The database file.
+     * @param flushIntervalMillis The time between background writes.
+     * @return The opened storage.
+     * @throws SQLException If the driver is missing or the database cannot be opened.
+     */
+    public static SqliteEconomyStorage open(Path file, long flushIntervalMillis) throws SQLException {
+        try {
+            // Mod jars are not scanned for JDBC drivers, so register it explicitly
+            Class.forName(DRIVER);
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("SQLite driver not found", e);
+        }
+        Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.toAbsolutePath());
+        try {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA journal_mode=WAL");
+                statement.execute("PRAGMA synchronous=NORMAL");
+                statement.execute("CREATE TABLE IF NOT EXISTS balances (most INTEGER NOT NULL, least INTEGER NOT NULL, "
+                        + "amount INTEGER NOT NULL, PRIMARY KEY (most, least)) WITHOUT ROWID");
+                statement.execute("CREATE TABLE IF NOT EXISTS daily_rewards (most INTEGER NOT NULL, least INTEGER NOT NULL, "
+                        + "day INTEGER NOT NULL, PRIMARY KEY (most, least)) WITHOUT ROWID");
+                statement.execute("CREATE TABLE IF NOT EXISTS savings (most INTEGER NOT NULL, least INTEGER NOT NULL, "
+                        + "amount INTEGER NOT NULL, period INTEGER NOT NULL, PRIMARY KEY (most, least)) WITHOUT ROWID");
+                statement.execute("CREATE TABLE IF NOT EXISTS meta (name TEXT PRIMARY KEY, value INTEGER NOT NULL)");
+            }
+            SqliteEconomyStorage storage = new SqliteEconomyStorage(connection);
+            storage.convertScale();
+            storage.flusher.scheduleWithFixedDelay(storage::flush, flushIntervalMillis, flushIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+            return storage;
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public long getBalanceMinor(long most, long least) {
+        synchronized (pendingLock) {
+            if (pendingBalances.containsKey(most, least)) {
+                return pendingBalances.get(most, least, 0L);
+            }
+            if (flushingBalances.containsKey(most, least)) {
+                return flushingBalances.get(most, least, 0L);
+            }
+        }
+        // A flush commits before it drops its changes, so the database holds them by now
+        return selectLong(selectBalance, most, least, 0L);
+    }
+
+    @Override
+    public void putBalanceMinor(long most, long least, long amount) {
+        synchronized (pendingLock) {
+            pendingBalances.put(most, least, amount);
+        }
+    }
+
+    @Override
+    public void forEachBalance(AccountTable.EntryConsumer consumer) {
+        flush();
+        dbLock.lock();
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT most, least, amount FROM balances")) {
+            while (rows.next()) {
+                consumer.accept(rows.getLong(1), rows.getLong(2), rows.getLong(3));
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to read balances from economy database", e);
+        } finally {
+            dbLock.unlock();
+        }
+    }
+
+    @Override
+    public int getDailyRewardDay(long most, long least) {
+        synchronized (pendingLock) {
+            if (pendingRewards.containsKey(most, least)) {
+                return (int) pendingRewards.get(most, least, NO_CLAIM);
+            }
+            if (flushingRewards.containsKey(most, least)) {
+                return (int) flushingRewards.get(most, least, NO_CLAIM);
+            }
+        }
+        return (int) selectLong(selectReward, most, least, NO_CLAIM);
+    }
+
+    @Override
+    public void setDailyRewardDay(long most, long least, int epochDay) {
+        synchronized (pendingLock) {
+            pendingRewards.put(most, least, epochDay);
+        }
+    }
+
+    @Override
+    public void forEachDailyReward(AccountTable.EntryConsumer consumer) {
+        flush();
+        dbLock.lock();
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT most, least, day FROM daily_rewards")) {
+            while (rows.next()) {
+                consumer.accept(rows.getLong(1), rows.getLong(2), rows.getLong(3));
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to read daily rewards from economy database", e);
+        } finally {
+            dbLock.unlock();
+        }
+    }
+
+    @Override
+    public long getSavingsMinor(long most, long least) {
+        return readSavings(most, least)[0];
+    }
+
+    @Override
+    public int getSavingsPeriod(long most, long least) {
+        return (int) readSavings(most, least)[1];
+    }
+
+    @Override
+    public void putSavings(long most, long least, long amount, int period) {
+        synchronized (pendingLock) {
+            pendingSavings.put(most, least, amount);
+            pendingSavingsPeriods.put(most, least, period);
+        }
+    }
+
+    @Override
+    public void putBalanceAndSavings(long most, long least, long balance, long amount, int period) {
+        // Pending changes are flushed in one transaction, so both are written or neither
+        synchronized (pendingLock) {
+            pendingBalances.put(most, least, balance);
+            pendingSavings.put(most, least, amount);
+            pendingSavingsPeriods.put(most, least, period);
+        }
+    }
+
+    @Override
+    public void forEachSavings(AccountTable.EntryConsumer consumer) {
+        flush();
+        dbLock.lock();
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT most, least, amount FROM savings")) {
+            while (rows.next()) {
+                consumer.accept(rows.getLong(1), rows.getLong(2), rows.getLong(3));
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to read savings from economy database", e);
+        } finally {
+            dbLock.unlock();
+        }
+    }
+
+    /**
+     * Checks whether the database holds no accounts, savings and daily reward claims.
+     *
+     * @return True if the database is empty.
+     */
+    public boolean isEmpty() {
+        dbLock.lock();
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery(
+                     "SELECT EXISTS (SELECT 1 FROM balances) OR EXISTS (SELECT 1 FROM daily_rewards) "
+                             + "OR EXISTS (SELECT 1 FROM savings)")) {
+            return !rows.next() || rows.getInt(1) == 0;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to read economy database", e);
+        } finally {
+            dbLock.unlock();
+        }
+    }
+
+    /**
+     * Copies all balances, savings and daily reward claims of another storage into the database.
+     *
+     * @param source The storage to copy from.
+     */
+    public void importFrom(EconomyStorage source) {
+        int[] accounts = {0};
+        source.forEachBalance((most, least, amount) -> {
+            putBalanceMinor(most, least, amount);
+            accounts[0]++;
+        });
+        AccountTable savings = new AccountTable();
+        source.forEachSavings(savings::put);
+        savings.forEach((most, least, amount) -> putSavings(most, least, amount, source.getSavingsPeriod(most, least)));
+        int[] claims = {0};
+        source.forEachDailyReward((most, least, day) -> {
+            setDailyRewardDay(most, least, (int) day);
+            claims[0]++;
+        });
+        flush();
+        LOGGER.info("Imported {} accounts, {} savings and {} daily reward claims into the economy database",
+                accounts[0], savings.size(), claims[0]);
+    }
+
+    /**
+     * Writes pending changes now instead of waiting for the background writer.
+     */
+    @Override
+    public void save() {
+        flush();
+    }
+
+    /**
+     * Stops the background writer, writes all pending changes and closes the database.
+     */
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOGGER.error("Timed out waiting for the economy database writer");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        dbLock.lock();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            LOGGER.error("Failed to close economy database: {}", e.getMessage(), e);
+        } finally {
+            dbLock.unlock();
+        }
+    }
+
+    /**
+     * Writes all pending changes in one transaction. If the write fails, the changes are
+     * kept and retried with the next flush.
+     */
+    private void flush() {
+        dbLock.lock();
+        try {
+            AccountTable balances;
+            AccountTable rewards;
+            AccountTable savings;
+            AccountTable periods;
+            synchronized (pendingLock) {
+                if (pendingBalances.size() == 0 && pendingRewards.size() == 0 && pendingSavings.size() == 0) {
+                    return;
+                }
+                balances = pendingBalances;
+                rewards = pendingRewards;
+                savings = pendingSavings;
+                periods = pendingSavingsPeriods;
+                flushingBalances = balances;
+                flushingRewards = rewards;
+                flushingSavings = savings;
+                flushingSavingsPeriods = periods;
+                pendingBalances = new AccountTable();
+                pendingRewards = new AccountTable();
+                pendingSavings = new AccountTable();
+                pendingSavingsPeriods = new AccountTable();
+            }
+            try {
+                write(balances, rewards, savings, periods);
+            } catch (SQLException e) {
+                LOGGER.error("Failed to write economy database: {}", e.getMessage(), e);
+                synchronized (pendingLock) {
+                    // Changes made since the flush started are newer and win
+                    AccountTable newerBalances = pendingBalances;
+                    AccountTable newerRewards = pendingRewards;
+                    AccountTable newerSavings = pendingSavings;
+                    AccountTable newerPeriods = pendingSavingsPeriods;
+                    balances.forEach((most, least, value) -> {
+                        if (!newerBalances.containsKey(most, least)) {
+                            newerBalances.put(most, least, value);
+                        }
+                    });
+                    rewards.forEach((most, least, value) -> {
+                        if (!newerRewards.containsKey(most, least)) {
+                            newerRewards.put(most, least, value);
+                        }
+                    });
+                    savings.forEach((most, least, value) -> {
+                        if (!newerSavings.containsKey(most, least)) {
+                            newerSavings.put(most, least, value);
+                            newerPeriods.put(most, least, periods.get(most, least, NO_SAVINGS));
+                        }
+                    });
+                }
+            } finally {
+                synchronized (pendingLock) {
+                    flushingBalances = NONE;
+                    flushingRewards = NONE;
+                    flushingSavings = NONE;
+                    flushingSavingsPeriods = NONE;
+                }
+            }
+        } finally {
+            dbLock.unlock();
+        }
+    }
+
+    /**
+     * Writes balances, daily reward claims and savings in one transaction. Caller holds dbLock.
+     */
+    private void write(AccountTable balances, AccountTable rewards, AccountTable savings, AccountTable periods)
+            throws SQLException {
+        connection.setAutoCommit(false);
+        try {
+            addBatch(upsertBalance, balances);
+            addBatch(upsertReward, rewards);
+            addSavingsBatch(savings, periods);
+            upsertBalance.executeBatch();
+            upsertReward.executeBatch();
+            upsertSavings.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            upsertBalance.clearBatch();
+            upsertReward.clearBatch();
+            upsertSavings.clearBatch();
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Converts stored balances to the active currency scale and records it. Called before the
+     * background writer starts, so no other thread uses the connection yet.
+     */
+    private void convertScale() throws SQLException {
+        int storedScale = -1;
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT value FROM meta WHERE name = 'scale'")) {
+            if (rows.next()) {
+                storedScale = rows.getInt(1);
+            }
+        }
+        int scale = Money.getScale();
+        if (storedScale == scale) {
+            return;
+        }
+        if (storedScale >= 0) {
+            AccountTable converted = new AccountTable();
+            try (Statement statement = connection.createStatement();
+                 ResultSet rows = statement.executeQuery("SELECT most, least, amount FROM balances")) {
+                while (rows.next()) {
+                    converted.put(rows.getLong(1), rows.getLong(2), Money.rescale(rows.getLong(3), storedScale));
+                }
+            }
+            AccountTable savings = new AccountTable();
+            AccountTable periods = new AccountTable();
+            try (Statement statement = connection.createStatement();
+                 ResultSet rows = statement.executeQuery("SELECT most, least, amount, period FROM savings")) {
+                while (rows.next()) {
+                    savings.put(rows.getLong(1), rows.getLong(2), Money.rescale(rows.getLong(3), storedScale));
+                    periods.put(rows.getLong(1), rows.getLong(2), rows.getLong(4));
+                }
+            }
+            write(converted, NONE, savings, periods);
+            LOGGER.info("Converted {} balances and {} savings from scale {} to {}", converted.size(), savings.size(),
+                    storedScale, scale);
+        }
+        try (PreparedStatement statement = connection.prepareStatement("INSERT INTO meta (name, value) VALUES ('scale', ?) "
+                + "ON CONFLICT (name) DO UPDATE SET value = excluded.value")) {
+            statement.setInt(1, scale);
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Reads an account's savings and their period from pending changes or the database.
+     *
+     * @return The amount, or 0, and the period, or {@link #NO_SAVINGS}.
+     */
+    private long[] readSavings(long most, long least) {
+        synchronized (pendingLock) {
+            if (pendingSavings.containsKey(most, least)) {
+                return new long[]{pendingSavings.get(most, least, 0L), pendingSavingsPeriods.get(most, least, NO_SAVINGS)};
+            }
+            if (flushingSavings.containsKey(most, least)) {
+                return new long[]{flushingSavings.get(most, least, 0L), flushingSavingsPeriods.get(most, least, NO_SAVINGS)};
+            }
+        }
+        dbLock.lock();
+        try {
+            selectSavings.setLong(1, most);
+            selectSavings.setLong(2, least);
+            try (ResultSet rows = selectSavings.executeQuery()) {
+                return rows.next() ? new long[]{rows.getLong(1), rows.getLong(2)} : new long[]{0L, NO_SAVINGS};
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to read economy database", e);
+        } finally {
+            dbLock.unlock();
+        }
+    }
+
+    private long selectLong(PreparedStatement select, long most, long least, long defaultValue) {
+        dbLock.lock();
+        try {
+            select.setLong(1, most);
+            select.setLong(2, least);
+            try (ResultSet rows = select.executeQuery()) {
+                return rows.next() ? rows.getLong(1) : defaultValue;
+            }
+        } catch (SQLException e) {
+            // Reporting 0 would let the next change overwrite the real value
+            throw new IllegalStateException("Failed to read economy database", e);
+        } finally {
+            dbLock.unlock();
+        }
+    }
+
+    private void addSavingsBatch(AccountTable savings, AccountTable periods) throws SQLException {
+        int size = savings.size();
+        long[] most = new long[size];
+        long[] least = new long[size];
+        long[] amounts = new long[size];
+        int[] count = {0};
+        savings.forEach((entryMost, entryLeast, amount) -> {
+            int index = count[0]++;
+            most[index] = entryMost;
+            least[index] = entryLeast;
+            amounts[index] = amount;
+        });
+        for (int i = 0; i < size; i++) {
+            upsertSavings.setLong(1, most[i]);
+            upsertSavings.setLong(2, least[i]);
+            upsertSavings.setLong(3, amounts[i]);
+            upsertSavings.setLong(4, periods.get(most[i], least[i], NO_SAVINGS));
+            upsertSavings.addBatch();
+        }
+    }
+
+    private static void addBatch(PreparedStatement upsert, AccountTable changes) throws SQLException {
+        int size = changes.size();
+        long[] most = new long[size];
+        long[] least = new long[size];
+        long[] values = new long[size];
+        int[] count = {0};
+        changes.forEach((entryMost, entryLeast, value) -> {
+            int index = count[0]++;
+            most[index] = entryMost;
+            least[index] = entryLeast;
+            values[index] = value;
+        });
+        for (int i = 0; i < size; i++) {
+            upsert.setLong(1, most[i]);
+            upsert.setLong(2, least[i]);
+            upsert.setLong(3, values[i]);
+            upsert.addBatch();
+        }
+    }
+}
@@ -0,0 +1,421 @@
+/*
+ * Copyright (c) 2025 Rosti Studios. All rights reserved.
+ * Licensed under the Rosti Studios Minecraft Mod License (RSMML).
+ * For more information, see the LICENSE file in the project root
+ * or contact us via Discord: https://dsc.gg/rosti-studios
+ */
+package org.rseconomy.rs_economy;
+
+import com.mojang.logging.LogUtils;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs {@link SweepRule}s over every account without stalling the server tick.
+ * <p>
+ * Rules see an account's wallet and savings together, see
+ * {@link SavingsLedger#applySweep}, so money moved into savings is not exempt.
+ * <p>
+ * A sweep has two phases. Planning reads the stored savings and splits the latest
+ * {@link RankingSnapshot} into chunks that are evaluated in parallel on the common
+ * fork-join pool, off the server thread, and collects the accounts the rule applies to.
+ * Committing then applies the rule to those accounts on the server thread, a batch per
+ * tick, stopping as soon as the configured tick budget is used up. Each account is
+ * changed atomically from its live balance and savings with interest, so spending
+ * between planning and committing is never overdrawn; accounts that only became
+ * eligible after the snapshot, or only through interest not yet added to their stored
+ * savings, wait for the next sweep.
+ * <p>
+ * One sweep runs at a time, and due rules wait in line. The start time of every sweep
+ * is saved before it commits anything, so a sweep interrupted by a restart is not
+ * repeated: the accounts it did not reach are skipped until the rule is due again,
+ * rather than charging the others twice.
+ */
+public class SweepEngine {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    /** Ticks between checks for due rules. */
+    private static final int CHECK_INTERVAL_TICKS = 20;
+    /** Committed accounts between two looks at the clock. */
+    private static final int CLOCK_CHECK_INTERVAL = 64;
+
+    private final BalanceManager balanceManager;
+    private final SavingsLedger savingsLedger;
+    private final Path stateFile;
+    private final Properties lastRuns = new Properties();
+    private final Queue<SweepRule> due = new ArrayDeque<>();
+    private List<SweepRule> rules = List.of();
+    private Sweep current;
+    private Sweep last;
+    private int ticks;
+
+    private SweepEngine(BalanceManager balanceManager, SavingsLedger savingsLedger, Path stateFile) {
+        this.balanceManager = balanceManager;
+        this.savingsLedger = savingsLedger;
+        this.stateFile = stateFile;
+    }
+
+    /**
+     * Creates an engine for the configured rules and loads when each of them last ran.
+     *
+     * @param balanceManager The balance manager whose accounts are swept.
+     * @param savingsLedger  The savings ledger whose savings are swept with the wallets.
+     * @param stateFile      The file the start time of each rule's last sweep is kept in.
+     * @return The engine.
+     */
+    public static SweepEngine open(BalanceManager balanceManager, SavingsLedger savingsLedger, Path stateFile) {
+        SweepEngine engine = new SweepEngine(balanceManager, savingsLedger, stateFile);
+        try (InputStream in = Files.newInputStream(stateFile)) {
+            engine.lastRuns.load(in);
+        } catch (NoSuchFileException e) {
+            // No sweep has run yet
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.error("Failed to load sweep state from {}, sweep intervals restart now: {}", stateFile, e.getMessage(), e);
+            engine.lastRuns.clear();
+        }
+        engine.reload();
+        return engine;
+    }
+
+    /**
+     * Reads the rules from the configuration. A rule seen for the first time is first due
+     * one interval from now. A running sweep finishes with the rule it started with.
+     */
+    public void reload() {
+        try {
+            rules = SweepRule.parseAll(ModConfigs.SWEEP_RULES.get());
+        } catch (IllegalArgumentException e) {
+            LOGGER.error("Invalid sweep rules, no sweeps will run: {}", e.getMessage());
+            rules = List.of();
+        }
+        due.removeIf(rule -> findRule(rule.name()) == null);
+        boolean added = false;
+        for (SweepRule rule : rules) {
+            if (lastRuns.getProperty(rule.name()) == null) {
+                lastRuns.setProperty(rule.name(), Long.toString(System.currentTimeMillis()));
+                added = true;
+            }
+        }
+        if (added) {
+            saveState();
+        }
+    }
+
+    /**
+     * Starts due sweeps and commits the running one within the tick budget. Must be
+     * called on the server thread once per tick.
+     */
+    public void tick() {
+        if (++ticks >= CHECK_INTERVAL_TICKS) {
+            ticks = 0;
+            queueDueRules();
+        }
+        if (current == null) {
+            SweepRule next = due.poll();
+            if (next == null) {
+                return;
+            }
+            start(next);
+        }
+        if (current.plan == null) {
+            if (!current.planning.isDone()) {
+                return;
+            }
+            current.plan = current.planning.join();
+            current.planning = null;
+        }
+        commit(current, TimeUnit.MILLISECONDS.toNanos(ModConfigs.SWEEP_TICK_BUDGET.get()));
+        if (current.committed == current.plan.count) {
+            finish(current);
+        }
+    }
+
+    /**
+     * Queues a rule to sweep now, regardless of its interval.
+     *
+     * @param name The name of the rule.
+     * @return False if no such rule is configured.
+     */
+    public boolean runNow(String name) {
+        SweepRule rule = findRule(name);
+        if (rule == null) {
+            return false;
+        }
+        if (!due.contains(rule) && (current == null || !current.rule.name().equals(name))) {
+            due.add(rule);
+        }
+        return true;
+    }
+
+    /**
+     * Gets the names of all configured rules.
+     *
+     * @return The rule names.
+     */
+    public List<String> getRuleNames() {
+        return rules.stream().map(SweepRule::name).toList();
+    }
+
+    /**
+     * Gets the sweep that is running.
+     *
+     * @return The running sweep, or null if none is.
+     */
+    public Sweep getCurrent() {
+        return current;
+    }
+
+    /**
+     * Gets the sweep that finished last.
+     *
+     * @return The last finished sweep, or null if none finished since the server started.
+     */
+    public Sweep getLast() {
+        return last;
+    }
+
+    private void queueDueRules() {
+        long now = System.currentTimeMillis();
+        for (SweepRule rule : rules) {
+            long lastRun = Long.parseLong(lastRuns.getProperty(rule.name(), "0"));
+            boolean running = current != null && current.rule.name().equals(rule.name());
+            if (now - lastRun >= rule.intervalMillis() && !running && !due.contains(rule)) {
+                due.add(rule);
+            }
+        }
+    }
+
+    private void start(SweepRule rule) {
+        Sweep sweep = new Sweep(rule);
+        lastRuns.setProperty(rule.name(), Long.toString(System.currentTimeMillis()));
+        saveState();
+        RankingSnapshot snapshot = balanceManager.getRanking().latestSnapshot();
+        sweep.planning = ForkJoinPool.commonPool().submit(() -> {
+            AccountTable savings = new AccountTable();
+            savingsLedger.forEachStoredSavings(savings::put);
+            return new PlanTask(snapshot, savings, rule, 0, snapshot.size()).invoke();
+        });
+        current = sweep;
+    }
+
+    /**
+     * Applies the rule to planned accounts until all are done or the budget is used up.
+     */
+    private void commit(Sweep sweep, long budgetNanos) {
+        Plan plan = sweep.plan;
+        SweepRule rule = sweep.rule;
+        long deadline = System.nanoTime() + budgetNanos;
+        int index = sweep.committed;
+        while (index < plan.count) {
+            long change = savingsLedger.applySweep(plan.most[index], plan.least[index], rule);
+            if (change < 0) {
+                sweep.debited += -change;
+            } else {
+                sweep.credited += change;
+            }
+            index++;
+            if (index % CLOCK_CHECK_INTERVAL == 0 && System.nanoTime() >= deadline) {
+                break;
+            }
+        }
+        sweep.committed = index;
+    }
+
+    private void finish(Sweep sweep) {
+        sweep.finishedAt = System.nanoTime();
+        LOGGER.info("Sweep {} finished in {} ms: {} accounts, {} debited, {} credited", sweep.rule.name(),
+                TimeUnit.NANOSECONDS.toMillis(sweep.finishedAt - sweep.startedAt), sweep.committed,
+                Localization.formatAmount(sweep.debited), Localization.formatAmount(sweep.credited));
+        last = sweep;
+        current = null;
+    }
+
+    private SweepRule findRule(String name) {
+        for (SweepRule rule : rules) {
+            if (rule.name().equals(name)) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Writes the sweep start times to a temporary file that is then renamed over the target.
+     */
+    private void saveState() {
+        try {
+            Files.createDirectories(stateFile.getParent());
+            Path temp = Files.createTempFile(stateFile.getParent(), stateFile.getFileName().toString(), ".tmp");
+            try {
+                try (OutputStream out = Files.newOutputStream(temp)) {
+                    lastRuns.store(out, "RSEconomy sweeps: start time of each rule's last sweep");
+                }
+                try {
+                    Files.move(temp, stateFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, stateFile, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to save sweep state to {}: {}", stateFile, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Progress of one sweep. Read on the server thread.
+     */
+    public static final class Sweep {
+        private final SweepRule rule;
+        private final long startedAt = System.nanoTime();
+        private ForkJoinTask<Plan> planning;
+        private Plan plan;
+        private int committed;
+        private long debited;
+        private long credited;
+        private long finishedAt;
+
+        private Sweep(SweepRule rule) {
+            this.rule = rule;
+        }
+
+        /**
+         * Gets the rule being swept.
+         *
+         * @return The rule.
+         */
+        public SweepRule rule() {
+            return rule;
+        }
+
+        /**
+         * Tells whether the accounts to change are still being collected.
+         *
+         * @return True while planning.
+         */
+        public boolean isPlanning() {
+            return plan == null;
+        }
+
+        /**
+         * Gets the number of accounts the rule applied to in the snapshot.
+         *
+         * @return The planned account count, or 0 while planning.
+         */
+        public int planned() {
+            return plan != null ? plan.count : 0;
+        }
+
+        /**
+         * Gets the number of accounts changed so far.
+         *
+         * @return The committed account count.
+         */
+        public int committed() {
+            return committed;
+        }
+
+        /**
+         * Gets the money taken from accounts so far.
+         *
+         * @return The debited total in minor units.
+         */
+        public long debited() {
+            return debited;
+        }
+
+        /**
+         * Gets the money added to accounts so far.
+         *
+         * @return The credited total in minor units.
+         */
+        public long credited() {
+            return credited;
+        }
+
+        /**
+         * Gets how long the sweep has run, or ran in total once finished.
+         *
+         * @return The duration in milliseconds.
+         */
+        public long elapsedMillis() {
+            long end = finishedAt != 0 ? finishedAt : System.nanoTime();
+            return TimeUnit.NANOSECONDS.toMillis(end - startedAt);
+        }
+    }
+
+    /**
+     * The accounts a rule applies to, as parallel arrays of UUID halves.
+     */
+    private record Plan(long[] most, long[] least, int count) {}
+
+    /**
+     * Collects the accounts of a snapshot range that a rule changes, judged by balance plus
+     * stored savings, splitting the range in halves until it is small enough to scan directly.
+     * The savings table is only read once filled.
+     */
+    private static final class PlanTask extends RecursiveTask<Plan> {
+        private static final int CHUNK = 8192;
+
+        private final RankingSnapshot snapshot;
+        private final AccountTable savings;
+        private final SweepRule rule;
+        private final int from;
+        private final int to;
+
+        PlanTask(RankingSnapshot snapshot, AccountTable savings, SweepRule rule, int from, int to) {
+            this.snapshot = snapshot;
+            this.savings = savings;
+            this.rule = rule;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Plan compute() {
+            if (to - from > CHUNK) {
+                int middle = (from + to) >>> 1;
+                PlanTask left = new PlanTask(snapshot, savings, rule, from, middle);
+                left.fork();
+                Plan right = new PlanTask(snapshot, savings, rule, middle, to).compute();
+                return concat(left.join(), right);
+            }
+            long[] most = new long[to - from];
+            long[] least = new long[to - from];
+            int[] count = {0};
+            snapshot.forEach(from, to, (entryMost, entryLeast, amount) -> {
+                if (rule.delta(Money.add(amount, savings.get(entryMost, entryLeast, 0L))) != 0) {
+                    most[count[0]] = entryMost;
+                    least[count[0]] = entryLeast;
+                    count[0]++;
+                }
+            });
+            return new Plan(most, least, count[0]);
+        }
+
+        private static Plan concat(Plan a, Plan b) {
+            long[] most = Arrays.copyOf(a.most(), a.count() + b.count());
+            long[] least = Arrays.copyOf(a.least(), a.count() + b.count());
+            System.arraycopy(b.most(), 0, most, a.count(), b.count());
+            System.arraycopy(b.least(), 0, least, a.count(), b.count());
+            return new Plan(most, least, a.count() + b.count());
+        }
+    }
+}
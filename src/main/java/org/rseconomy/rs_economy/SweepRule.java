@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2025 Rosti Studios. All rights reserved.
+ * Licensed under the Rosti Studios Minecraft Mod License (RSMML).
+ * For more information, see the LICENSE file in the project root
+ * or contact us via Discord: https://dsc.gg/rosti-studios
+ */
+package org.rseconomy.rs_economy;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A periodic change applied to every account by the {@link SweepEngine}, such as a
+ * wealth tax, land upkeep or interest.
+ * <p>
+ * Rules are written as {@code <name>=<kind> <amount>[%] [above <threshold>] every <interval>},
+ * for example {@code wealth_tax=tax 1% above 100000 every 1d}. The kind is {@code tax} or
+ * {@code upkeep}, which debit, or {@code interest}, which credits. The balance a rule sees
+ * is an account's wallet plus its savings. A percentage applies to the part of the
+ * balance above the threshold; a fixed amount is applied to every account above the
+ * threshold, and a debit never takes an account below it. The interval is a
+ * number followed by {@code m}, {@code h} or {@code d}. Amounts are in major units and
+ * percentages have up to four decimal places. All arithmetic is exact on minor units,
+ * and fractions of a minor unit are dropped, in favour of the account for debits.
+ */
+public record SweepRule(String name, Kind kind, boolean percent, long amount, long threshold, long intervalMillis) {
+    /** Parts per million that make up 100%. */
+    private static final long PPM = 1_000_000;
+
+    /**
+     * What a rule does with the amount it computes.
+     */
+    public enum Kind {
+        TAX(-1), UPKEEP(-1), INTEREST(1);
+
+        private final int sign;
+
+        Kind(int sign) {
+            this.sign = sign;
+        }
+    }
+
+    /**
+     * Computes the change of one account.
+     *
+     * @param balance The account's balance in minor units.
+     * @return The signed change in minor units, 0 if the rule does not apply.
+     */
+    public long delta(long balance) {
+        if (balance <= threshold) {
+            return 0L;
+        }
+        // Cannot overflow, as the threshold is not negative
+        long base = balance - threshold;
+        long magnitude;
+        if (percent) {
+            // Split so that neither product can overflow; amount is at most PPM
+            magnitude = base / PPM * amount + base % PPM * amount / PPM;
+        } else {
+            magnitude = kind.sign < 0 ? Math.min(amount, base) : amount;
+        }
+        return kind.sign * magnitude;
+    }
+
+    /**
+     * Parses all rules of a configuration value, separated by semicolons.
+     *
+     * @param rules The configured rules; blank for none.
+     * @return The parsed rules.
+     * @throws IllegalArgumentException If a rule is malformed or a name is used twice.
+     */
+    public static List<SweepRule> parseAll(String rules) {
+        List<SweepRule> parsed = new ArrayList<>();
+        for (String rule : rules.split(";")) {
+            if (rule.isBlank()) {
+                continue;
+            }
+            SweepRule next = parse(rule);
+            if (parsed.stream().anyMatch(other -> other.name().equals(next.name()))) {
+                throw new IllegalArgumentException("Duplicate sweep rule " + next.name());
+            }
+            parsed.add(next);
+        }
+        return parsed;
+    }
+
+    /**
+     * Parses a single rule, converting amounts with the active currency scale.
+     *
+     * @param rule The rule, e.g. {@code upkeep=upkeep 50 every 7d}.
+     * @return The parsed rule.
+     * @throws IllegalArgumentException If the rule is malformed.
+     */
+    public static SweepRule parse(String rule) {
+        int equals = rule.indexOf('=');
+        if (equals <= 0) {
+            throw new IllegalArgumentException("Sweep rule needs a name: " + rule);
+        }
+        String name = rule.substring(0, equals).trim();
+        if (!name.matches("[A-Za-z0-9_-]+")) {
+            throw new IllegalArgumentException("Invalid sweep rule name: " + name);
+        }
+        String[] words = rule.substring(equals + 1).trim().toLowerCase(Locale.ROOT).split("\\s+");
+        try {
+            Kind kind = Kind.valueOf(words[0].toUpperCase(Locale.ROOT));
+            String amountWord = words[1];
+            boolean percent = amountWord.endsWith("%");
+            BigDecimal value = new BigDecimal(percent ? amountWord.substring(0, amountWord.length() - 1) : amountWord);
+            long amount = percent ? value.movePointRight(4).longValueExact() : toMinor(value);
+            if (amount < 0 || percent && amount > PPM) {
+                throw new IllegalArgumentException("Sweep amount out of range: " + amountWord);
+            }
+            int index = 2;
+            long threshold = 0;
+            if (words[index].equals("above")) {
+                threshold = toMinor(new BigDecimal(words[index + 1]));
+                index += 2;
+            }
+            if (threshold < 0 || !words[index].equals("every") || index + 2 != words.length) {
+                throw new IllegalArgumentException("Malformed sweep rule: " + rule);
+            }
+            return new SweepRule(name, kind, percent, amount, threshold, parseInterval(words[index + 1]));
+        } catch (ArithmeticException | ArrayIndexOutOfBoundsException e) {
+            // NumberFormatException is already an IllegalArgumentException
+            throw new IllegalArgumentException("Malformed sweep rule: " + rule, e);
+        }
+    }
+
+    private static long parseInterval(String interval) {
+        long count = Long.parseLong(interval.substring(0, interval.length() - 1));
+        TimeUnit unit = switch (interval.charAt(interval.length() - 1)) {
+            case 'm' -> TimeUnit.MINUTES;
+            case 'h' -> TimeUnit.HOURS;
+            case 'd' -> TimeUnit.DAYS;
+            default -> throw new IllegalArgumentException("Sweep interval needs a unit of m, h or d: " + interval);
+        };
+        if (count <= 0) {
+            throw new IllegalArgumentException("Sweep interval must be positive: " + interval);
+        }
+        return unit.toMillis(count);
+    }
+
+    private static long toMinor(BigDecimal major) {
+        return major.movePointRight(Money.getScale()).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+}
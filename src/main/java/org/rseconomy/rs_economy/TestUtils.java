@@ -1,9 +1,23 @@
 package org.rseconomy.rs_economy;
 
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtAccounter;
+import net.minecraft.nbt.NbtIo;
 import net.minecraft.server.level.ServerPlayer;
+import org.rseconomy.rs_economy.api.EconomyBatch;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
 import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 /**
  * Utility-Klasse für Testspieler und Testguthaben.
@@ -37,4 +51,280 @@ public class TestUtils {
             System.out.println("Generated " + name + " with " + money + " coins.");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Belastungstest für den BalanceManager: Mehrere Threads buchen gleichzeitig
+     * Ein- und Auszahlungen von je einer Einheit auf zufällige Konten.
+     * Für 1, 2, 4, ... bis zur Anzahl der Prozessorkerne wird der Durchsatz ausgegeben
+     * und geprüft, dass keine Buchung verloren gegangen ist.
+     * Arbeitet auf eigenen, nicht gespeicherten Daten.
+     *
+     * @param accounts            Anzahl Konten
+     * @param operationsPerThread Anzahl Buchungen pro Thread
+     */
+    public static void benchmarkConcurrentUpdates(int accounts, int operationsPerThread) {
+        UUID[] ids = new UUID[accounts];
+        for (int i = 0; i < accounts; i++) {
+            ids[i] = UUID.randomUUID();
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= cores; threads = threads < cores ? Math.min(threads * 2, cores) : threads + 1) {
+            BalanceManager balanceManager = new BalanceManager(new MemoryEconomyStorage());
+            AtomicLong expectedTotal = new AtomicLong();
+            CountDownLatch start = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(threads);
+            for (int t = 0; t < threads; t++) {
+                Thread worker = new Thread(() -> {
+                    ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                    long net = 0;
+                    try {
+                        start.await();
+                        for (int i = 0; i < operationsPerThread; i++) {
+                            UUID id = ids[rnd.nextInt(ids.length)];
+                            if (rnd.nextBoolean()) {
+                                balanceManager.addBalanceMinor(id, 1);
+                                net++;
+                            } else if (balanceManager.subtractBalanceMinor(id, 1)) {
+                                net--;
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        expectedTotal.addAndGet(net);
+                        done.countDown();
+                    }
+                }, "RSEconomy-Benchmark-" + t);
+                worker.start();
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long elapsed = System.nanoTime() - begin;
+
+            long total = 0;
+            for (UUID id : ids) {
+                total += balanceManager.getBalanceMinor(id);
+            }
+            double opsPerSecond = threads * (double) operationsPerThread / (elapsed / 1_000_000_000.0);
+            System.out.printf("%d Thread(s): %.0f Buchungen/s, %s%n", threads, opsPerSecond,
+                    total == expectedTotal.get() ? "keine verlorenen Buchungen" : "VERLORENE BUCHUNGEN: " + (expectedTotal.get() - total));
+        }
+    }
+
+    /**
+     * Prüft, dass Sammelbuchungen keine ungedeckte Abbuchung durchlassen, auch wenn sich
+     * die Abbuchungen eines Kontos bis Long.MIN_VALUE aufsummieren, und dass negative
+     * Abbuchungsbeträge abgelehnt werden. Arbeitet auf eigenen, nicht gespeicherten Daten.
+     *
+     * @return True, wenn alle Prüfungen bestanden sind
+     */
+    public static boolean checkBatchDebits() {
+        ConcurrentAccountTable table = new ConcurrentAccountTable(1, null);
+        UUID id = UUID.randomUUID();
+        long most = id.getMostSignificantBits();
+        long least = id.getLeastSignificantBits();
+        table.put(most, least, 1000L);
+        boolean ok = true;
+
+        // Zwei Abbuchungen, deren Summe bei Long.MIN_VALUE stehen bleibt
+        long[] mosts = {most, most};
+        long[] leasts = {least, least};
+        if (table.applyBatch(mosts, leasts, new long[]{-Long.MAX_VALUE, -Long.MAX_VALUE}, 2)) {
+            System.out.println("FEHLER: ungedeckte Sammelabbuchung bis Long.MIN_VALUE wurde ausgeführt");
+            ok = false;
+        }
+        if (table.applyBatch(mosts, leasts, new long[]{Long.MIN_VALUE, 0L}, 1)) {
+            System.out.println("FEHLER: Abbuchung von Long.MIN_VALUE wurde ausgeführt");
+            ok = false;
+        }
+        if (!table.applyBatch(mosts, leasts, new long[]{-600L, -400L}, 2)) {
+            System.out.println("FEHLER: gedeckte Sammelabbuchung wurde abgelehnt");
+            ok = false;
+        }
+        if (table.get(most, least, -1L) != 0L) {
+            System.out.println("FEHLER: Kontostand " + table.get(most, least, -1L) + " statt 0");
+            ok = false;
+        }
+        try {
+            EconomyBatch.create().subtractMinor(id, Long.MIN_VALUE);
+            System.out.println("FEHLER: negativer Abbuchungsbetrag wurde angenommen");
+            ok = false;
+        } catch (IllegalArgumentException e) {
+            // Erwartet
+        }
+        System.out.println(ok ? "Sammelbuchungen: alle Prüfungen bestanden" : "Sammelbuchungen: Prüfungen fehlgeschlagen");
+        return ok;
+    }
+
+    /**
+     * Vergleicht das alte Speicherformat (ein Eintrag pro Konto mit UUID-String als Schlüssel)
+     * mit dem spaltenweisen Format (Long-Arrays für UUID-Hälften und Beträge).
+     * Gibt für jede Kontoanzahl Speicher- und Ladezeit sowie die komprimierte Dateigröße aus,
+     * z.B. für 100.000 und 1.000.000 Konten. Jeder Wert ist der beste aus drei Durchläufen.
+     * Arbeitet auf eigenen, nicht gespeicherten Daten.
+     *
+     * @param accountCounts Kontoanzahlen, die gemessen werden sollen
+     */
+    public static void benchmarkStorageFormats(int... accountCounts) {
+        for (int accounts : accountCounts) {
+            EconomyData data = EconomyData.create();
+            Random rnd = new Random(accounts);
+            int today = (int) LocalDate.now().toEpochDay();
+            for (int i = 0; i < accounts; i++) {
+                UUID id = new UUID(rnd.nextLong(), rnd.nextLong());
+                data.putBalanceMinor(id.getMostSignificantBits(), id.getLeastSignificantBits(), rnd.nextInt(1_000_000));
+                // Jeder zehnte Spieler hat eine Tagesbelohnung abgeholt
+                if (i % 10 == 0) {
+                    data.setDailyRewardDay(id.getMostSignificantBits(), id.getLeastSignificantBits(), today - rnd.nextInt(30));
+                }
+            }
+
+            try {
+                // Altes Format von Hand erzeugen, da EconomyData nur noch spaltenweise speichert
+                long legacySave = Long.MAX_VALUE;
+                CompoundTag legacy = null;
+                for (int run = 0; run < 3; run++) {
+                    long begin = System.nanoTime();
+                    legacy = new CompoundTag();
+                    legacy.putInt("scale", Money.getScale());
+                    CompoundTag balancesTag = new CompoundTag();
+                    data.forEachBalance((most, least, amount) -> balancesTag.putLong(new UUID(most, least).toString(), amount));
+                    legacy.put("balances", balancesTag);
+                    CompoundTag rewardsTag = new CompoundTag();
+                    data.forEachDailyReward((most, least, day) ->
+                            rewardsTag.putString(new UUID(most, least).toString(), LocalDate.ofEpochDay(day).toString()));
+                    legacy.put("dailyRewards", rewardsTag);
+                    legacySave = Math.min(legacySave, System.nanoTime() - begin);
+                }
+                printStorageResult("Alt", accounts, legacy, legacySave);
+
+                long columnSave = Long.MAX_VALUE;
+                CompoundTag columns = null;
+                for (int run = 0; run < 3; run++) {
+                    long begin = System.nanoTime();
+                    columns = data.save(new CompoundTag(), null);
+                    columnSave = Math.min(columnSave, System.nanoTime() - begin);
+                }
+                printStorageResult("Spalten", accounts, columns, columnSave);
+            } catch (IOException e) {
+                System.out.println("Benchmark fehlgeschlagen: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Vergleicht den speicherabgebildeten Speicher (Konten außerhalb des Heaps) mit dem
+     * Heap-Speicher. Für jede Kontoanzahl werden Anlegen, zufälliges Lesen und zufälliges
+     * Buchen über den BalanceManager gemessen, dazu der belegte Heap und beim
+     * speicherabgebildeten Speicher das erneute Öffnen ohne Deserialisierung.
+     * Arbeitet auf eigenen, nicht gespeicherten Daten in einem temporären Verzeichnis.
+     *
+     * @param accountCounts Kontoanzahlen, die gemessen werden sollen, z.B. 1.000.000 und 5.000.000
+     */
+    public static void benchmarkMappedStorage(int... accountCounts) {
+        for (int accounts : accountCounts) {
+            Path directory = null;
+            try {
+                directory = Files.createTempDirectory("rs_economy_benchmark");
+                benchmarkStorage("Heap", accounts, new MemoryEconomyStorage());
+                MappedEconomyStorage mapped = MappedEconomyStorage.open(directory);
+                benchmarkStorage("Mapped", accounts, mapped);
+                mapped.close();
+                long begin = System.nanoTime();
+                MappedEconomyStorage reopened = MappedEconomyStorage.open(directory);
+                long reopen = System.nanoTime() - begin;
+                reopened.close();
+                System.out.printf("Mapped, %d Konten: Öffnen %d ms%n", accounts, reopen / 1_000_000);
+            } catch (IOException e) {
+                System.out.println("Benchmark fehlgeschlagen: " + e.getMessage());
+                return;
+            } finally {
+                deleteDirectory(directory);
+            }
+        }
+    }
+
+    /**
+     * Misst Anlegen, Lesen und Buchen auf einem Speicher und gibt das Ergebnis aus.
+     */
+    private static void benchmarkStorage(String name, int accounts, EconomyStorage storage) {
+        long heapBefore = usedHeap();
+        BalanceManager balanceManager = new BalanceManager(storage);
+        UUID[] ids = new UUID[accounts];
+        Random rnd = new Random(accounts);
+        long begin = System.nanoTime();
+        for (int i = 0; i < accounts; i++) {
+            ids[i] = new UUID(rnd.nextLong(), rnd.nextLong());
+            balanceManager.setBalanceMinor(ids[i], rnd.nextInt(1_000_000));
+        }
+        long fill = System.nanoTime() - begin;
+        // Die UUIDs selbst zählen nicht zum Speicher
+        long heap = usedHeap() - heapBefore - (long) accounts * 32;
+
+        begin = System.nanoTime();
+        long sum = 0;
+        for (int i = 0; i < accounts; i++) {
+            sum += balanceManager.getBalanceMinor(ids[rnd.nextInt(accounts)]);
+        }
+        long read = System.nanoTime() - begin;
+
+        begin = System.nanoTime();
+        for (int i = 0; i < accounts; i++) {
+            balanceManager.addBalanceMinor(ids[rnd.nextInt(accounts)], 1);
+        }
+        long update = System.nanoTime() - begin;
+        System.out.printf("%s, %d Konten: Anlegen %d ms, Lesen %d ns/Konto, Buchen %d ns/Konto, Heap %d MB (Prüfsumme %d)%n",
+                name, accounts, fill / 1_000_000, read / accounts, update / accounts, Math.max(0, heap) >> 20, sum);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void deleteDirectory(Path directory) {
+        if (directory == null) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            System.out.println("Temporäres Verzeichnis nicht gelöscht: " + directory);
+        }
+    }
+
+    /**
+     * Misst Kodieren, Dekodieren und Laden eines gespeicherten Datensatzes und gibt das Ergebnis aus.
+     */
+    private static void printStorageResult(String format, int accounts, CompoundTag tag, long saveNanos) throws IOException {
+        long encode = Long.MAX_VALUE;
+        byte[] bytes = null;
+        for (int run = 0; run < 3; run++) {
+            long begin = System.nanoTime();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            NbtIo.writeCompressed(tag, out);
+            bytes = out.toByteArray();
+            encode = Math.min(encode, System.nanoTime() - begin);
+        }
+        long load = Long.MAX_VALUE;
+        for (int run = 0; run < 3; run++) {
+            long begin = System.nanoTime();
+            CompoundTag read = NbtIo.readCompressed(new ByteArrayInputStream(bytes), NbtAccounter.unlimitedHeap());
+            EconomyData.load(read, null);
+            load = Math.min(load, System.nanoTime() - begin);
+        }
+        System.out.printf("%s, %d Konten: Speichern %d ms, Laden %d ms, Datei %d KB%n", format, accounts,
+                (saveNanos + encode) / 1_000_000, load / 1_000_000, bytes.length / 1024);
+    }
+}
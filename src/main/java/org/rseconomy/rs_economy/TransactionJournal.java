@@ -0,0 +1,461 @@
+/*
+ * Copyright (c) 2025 Rosti Studios. All rights reserved.
+ * Licensed under the Rosti Studios Minecraft Mod License (RSMML).
+ * For more information, see the LICENSE file in the project root
+ * or contact us via Discord: https://dsc.gg/rosti-studios
+ */
+package org.rseconomy.rs_economy;
+
+import com.mojang.logging.LogUtils;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only write-ahead journal of balance, savings and daily reward changes.
+ * <p>
+ * Every change written to an EconomyData shard is appended as a fixed-width record
+ * holding the new absolute value, so replaying records in order is idempotent. Records
+ * are buffered in memory and written by a background thread that forces them to disk
+ * once per commit interval (group commit), bounding the loss window after a crash to
+ * that interval without rewriting the full snapshot.
+ * <p>
+ * Each record has a sequence number. Every EconomyData shard stores the sequence the
+ * journal had reached when its snapshot was taken; on startup, records from that
+ * sequence on are replayed on top of the snapshot. After a save the journal rolls over
+ * to a new segment file and deletes segments that are covered by an earlier save.
+ * <p>
+ * Segment layout: a 16 byte header (magic, version, first sequence) followed by
+ * 29 byte records (type, UUID most, UUID least, value, CRC32C of the preceding 25 bytes).
+ * A torn or corrupt record ends the replay of its segment.
+ * <p>
+ * If writing a batch fails, none of its records are considered written: they are put
+ * back in front of the buffered records and the journal continues in a new segment
+ * starting at the first of them, so a torn record only ends the old segment. Until a
+ * write succeeds again, {@link #truncateBefore} keeps every segment.
+ */
+public class TransactionJournal implements AutoCloseable {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final int MAGIC = 0x52534A4C; // "RSJL"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int RECORD_BYTES = 29;
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    /** Record type for an absolute balance in minor units. */
+    public static final byte TYPE_BALANCE = 1;
+    /** Record type for a daily reward claim date as epoch day. */
+    public static final byte TYPE_DAILY_REWARD = 2;
+    /** Record type for the interest period of a savings change; always followed by its {@link #TYPE_SAVINGS}. */
+    public static final byte TYPE_SAVINGS_PERIOD = 3;
+    /** Record type for an absolute savings amount in minor units, completing the preceding period record. */
+    public static final byte TYPE_SAVINGS = 4;
+    /** Record type for the balance of a move to or from savings; only applied with the savings records that follow it. */
+    public static final byte TYPE_SAVINGS_TRANSFER = 5;
+
+    private final Path directory;
+    private final long commitIntervalNanos;
+    private final Thread writer;
+    private volatile boolean closed;
+
+    // Guarded by bufferLock
+    private final Object bufferLock = new Object();
+    private final CRC32C checksum = new CRC32C();
+    private ByteBuffer pending = ByteBuffer.allocate(256 * RECORD_BYTES);
+    private long nextSequence;
+
+    // Guarded by ioLock
+    private final ReentrantLock ioLock = new ReentrantLock();
+    private ByteBuffer spare = ByteBuffer.allocate(256 * RECORD_BYTES);
+    // Null after a failed write until a new segment could be opened
+    private FileChannel channel;
+    private long segmentStart;
+    private boolean writeFailed;
+
+    private TransactionJournal(Path directory, long nextSequence, long commitIntervalMillis) throws IOException {
+        this.directory = directory;
+        this.nextSequence = nextSequence;
+        this.commitIntervalNanos = commitIntervalMillis * 1_000_000L;
+        openSegment(nextSequence);
+        this.writer = new Thread(this::runWriter, "RSEconomy-Journal");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Opens the journal in the given directory, replaying existing records first.
+     *
+     * @param directory            The directory holding the segment files.
+     * @param commitIntervalMillis The maximum time between a change and its fsync.
+     * @param fromSequence         The first sequence to replay, as stored with the snapshot.
+     *                             New records are never numbered below it.
+     * @param replayer             Receives every intact record from fromSequence on, in order.
+     * @return The opened journal, ready to append after the last replayed record.
+     * @throws IOException If the directory or a new segment cannot be created.
+     */
+    public static TransactionJournal open(Path directory, long commitIntervalMillis, long fromSequence,
+                                          RecordConsumer replayer) throws IOException {
+        Files.createDirectories(directory);
+        long nextSequence = fromSequence;
+        int replayed = 0;
+        for (Path segment : listSegments(directory)) {
+            long[] result = replaySegment(segment, fromSequence, replayer);
+            nextSequence = Math.max(nextSequence, result[0]);
+            replayed += (int) result[1];
+        }
+        if (replayed > 0) {
+            LOGGER.info("Replayed {} journal records from {}", replayed, directory);
+        }
+        return new TransactionJournal(directory, nextSequence, commitIntervalMillis);
+    }
+
+    /**
+     * Appends a balance change.
+     *
+     * @param most   The most significant bits of the player's UUID.
+     * @param least  The least significant bits of the player's UUID.
+     * @param amount The new balance in minor units.
+     */
+    public void logBalance(long most, long least, long amount) {
+        append(TYPE_BALANCE, most, least, amount);
+    }
+
+    /**
+     * Appends a daily reward claim.
+     *
+     * @param most     The most significant bits of the player's UUID.
+     * @param least    The least significant bits of the player's UUID.
+     * @param epochDay The claim date as epoch day.
+     */
+    public void logDailyReward(long most, long least, long epochDay) {
+        append(TYPE_DAILY_REWARD, most, least, epochDay);
+    }
+
+    /**
+     * Appends a savings change as two consecutive records, the period first. A replay
+     * that ends between them drops the change rather than pairing the amount with
+     * another period.
+     *
+     * @param most   The most significant bits of the player's UUID.
+     * @param least  The least significant bits of the player's UUID.
+     * @param amount The new savings in minor units.
+     * @param period The interest period the savings are up to date for.
+     */
+    public void logSavings(long most, long least, long amount, int period) {
+        synchronized (bufferLock) {
+            append(TYPE_SAVINGS_PERIOD, most, least, period);
+            append(TYPE_SAVINGS, most, least, amount);
+        }
+    }
+
+    /**
+     * Appends a move between a wallet and savings as three consecutive records: the new
+     * balance, then the savings change as in {@link #logSavings}. A replay applies the
+     * balance only together with the savings, so it never keeps one without the other.
+     *
+     * @param most    The most significant bits of the player's UUID.
+     * @param least   The least significant bits of the player's UUID.
+     * @param balance The new balance in minor units.
+     * @param amount  The new savings in minor units.
+     * @param period  The interest period the savings are up to date for.
+     */
+    public void logBalanceAndSavings(long most, long least, long balance, long amount, int period) {
+        synchronized (bufferLock) {
+            append(TYPE_SAVINGS_TRANSFER, most, least, balance);
+            append(TYPE_SAVINGS_PERIOD, most, least, period);
+            append(TYPE_SAVINGS, most, least, amount);
+        }
+    }
+
+    /**
+     * Gets the sequence number the next record will receive. A snapshot taken after this
+     * call contains the effect of every record with a lower sequence.
+     *
+     * @return The next sequence number.
+     */
+    public long nextSequence() {
+        synchronized (bufferLock) {
+            return nextSequence;
+        }
+    }
+
+    /**
+     * Rolls over to a new segment and deletes every segment whose records all have a
+     * sequence below the given one.
+     *
+     * @param sequence The sequence covered by a completed save.
+     */
+    public void truncateBefore(long sequence) {
+        if (closed) {
+            return;
+        }
+        ioLock.lock();
+        try {
+            rollOver();
+            if (writeFailed) {
+                LOGGER.warn("Keeping all economy journal segments until writing the journal succeeds again");
+                return;
+            }
+            List<Path> segments = listSegments(directory);
+            for (int i = 0; i + 1 < segments.size(); i++) {
+                // A segment ends where the next one starts
+                if (segmentStart(segments.get(i + 1)) <= sequence) {
+                    Files.deleteIfExists(segments.get(i));
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to truncate economy journal: {}", e.getMessage(), e);
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    /**
+     * Writes and forces all buffered records, then stops the writer thread.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        ioLock.lock();
+        try {
+            flushLocked();
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to close economy journal: {}", e.getMessage(), e);
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    /**
+     * Receives records read from the journal.
+     */
+    @FunctionalInterface
+    public interface RecordConsumer {
+        void accept(long sequence, byte type, long most, long least, long value);
+    }
+
+    private void append(byte type, long most, long least, long value) {
+        synchronized (bufferLock) {
+            if (pending.remaining() < RECORD_BYTES) {
+                ByteBuffer grown = ByteBuffer.allocate(pending.capacity() * 2);
+                pending.flip();
+                grown.put(pending);
+                pending = grown;
+            }
+            int start = pending.position();
+            pending.put(type).putLong(most).putLong(least).putLong(value);
+            checksum.reset();
+            checksum.update(pending.array(), start, RECORD_BYTES - 4);
+            pending.putInt((int) checksum.getValue());
+            nextSequence++;
+        }
+    }
+
+    private void runWriter() {
+        while (!closed) {
+            LockSupport.parkNanos(this, commitIntervalNanos);
+            ioLock.lock();
+            try {
+                flushLocked();
+            } catch (IOException e) {
+                LOGGER.error("Failed to write economy journal: {}", e.getMessage(), e);
+            } finally {
+                ioLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Swaps out the pending buffer and writes it to the current segment. Caller holds ioLock.
+     */
+    private void flushLocked() throws IOException {
+        ByteBuffer toWrite;
+        long first;
+        synchronized (bufferLock) {
+            if (pending.position() == 0) {
+                return;
+            }
+            toWrite = pending;
+            first = nextSequence - pending.position() / RECORD_BYTES;
+            pending = spare;
+        }
+        writeAndForce(toWrite, first);
+    }
+
+    /**
+     * Writes the pending records to the current segment and starts a new one at the
+     * next sequence. Caller holds ioLock.
+     */
+    private void rollOver() throws IOException {
+        ByteBuffer toWrite;
+        long first;
+        long start;
+        synchronized (bufferLock) {
+            start = nextSequence;
+            if (start == segmentStart && channel != null) {
+                // Nothing was appended since the segment was opened
+                return;
+            }
+            toWrite = pending;
+            first = start - pending.position() / RECORD_BYTES;
+            pending = spare;
+        }
+        writeAndForce(toWrite, first);
+        channel.close();
+        channel = null;
+        openSegment(start);
+    }
+
+    /**
+     * Writes and forces a batch of records starting at the given sequence. On failure the
+     * batch is put back in front of the pending records and a new segment is started at
+     * its first record, so that it is written again in full by the next flush. Caller
+     * holds ioLock.
+     */
+    private void writeAndForce(ByteBuffer toWrite, long first) throws IOException {
+        toWrite.flip();
+        try {
+            if (channel == null) {
+                openSegment(first);
+            }
+            while (toWrite.hasRemaining()) {
+                channel.write(toWrite);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            writeFailed = true;
+            toWrite.rewind();
+            synchronized (bufferLock) {
+                ByteBuffer merged = ByteBuffer.allocate(toWrite.limit() + pending.capacity());
+                merged.put(toWrite);
+                pending.flip();
+                merged.put(pending);
+                pending.clear();
+                spare = pending;
+                pending = merged;
+            }
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException closeFailure) {
+                    e.addSuppressed(closeFailure);
+                }
+                channel = null;
+            }
+            try {
+                // Replaces the old segment if it held nothing but this batch
+                openSegment(first);
+            } catch (IOException openFailure) {
+                e.addSuppressed(openFailure);
+            }
+            throw e;
+        }
+        toWrite.clear();
+        spare = toWrite;
+        writeFailed = false;
+    }
+
+    /**
+     * Creates a segment starting at the given sequence and makes it the current one.
+     * Leaves no current segment if it cannot be created.
+     */
+    private void openSegment(long start) throws IOException {
+        Path file = directory.resolve(String.format("%016x", start) + SEGMENT_SUFFIX);
+        FileChannel opened = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putLong(start).flip();
+            while (header.hasRemaining()) {
+                opened.write(header);
+            }
+            opened.force(true);
+        } catch (IOException e) {
+            opened.close();
+            throw e;
+        }
+        channel = opened;
+        segmentStart = start;
+    }
+
+    private static List<Path> listSegments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX)).forEach(segments::add);
+        }
+        segments.removeIf(p -> segmentStart(p) < 0);
+        segments.sort((a, b) -> Long.compareUnsigned(segmentStart(a), segmentStart(b)));
+        return segments;
+    }
+
+    private static long segmentStart(Path segment) {
+        String name = segment.getFileName().toString();
+        try {
+            return Long.parseUnsignedLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()), 16);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Replays one segment.
+     *
+     * @return The sequence following the last intact record, and the number of records replayed.
+     */
+    private static long[] replaySegment(Path segment, long fromSequence, RecordConsumer replayer) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(segment));
+        if (data.remaining() < HEADER_BYTES) {
+            // Crashed while a new segment was being created; it holds no records
+            return new long[]{0, 0};
+        }
+        if (data.getInt() != MAGIC || data.getInt() != VERSION) {
+            LOGGER.warn("Ignoring economy journal segment with invalid header: {}", segment);
+            return new long[]{0, 0};
+        }
+        long sequence = data.getLong();
+        long records = 0;
+        CRC32C crc = new CRC32C();
+        while (data.remaining() >= RECORD_BYTES) {
+            int start = data.position();
+            crc.reset();
+            crc.update(data.array(), start, RECORD_BYTES - 4);
+            byte type = data.get();
+            long most = data.getLong();
+            long least = data.getLong();
+            long value = data.getLong();
+            if (data.getInt() != (int) crc.getValue()) {
+                LOGGER.warn("Economy journal segment {} is corrupt after {} records; ignoring the rest", segment, records);
+                break;
+            }
+            if (sequence >= fromSequence) {
+                replayer.accept(sequence, type, most, least, value);
+                records++;
+            }
+            sequence++;
+        }
+        return new long[]{sequence, records};
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2025 Rosti Studios. All rights reserved.
+ * Licensed under the Rosti Studios Minecraft Mod License (RSMML).
+ * For more information, see the LICENSE file in the project root
+ * or contact us via Discord: https://dsc.gg/rosti-studios
+ */
+package org.rseconomy.rs_economy.api;
+
+import org.rseconomy.rs_economy.RSEconomy;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous variant of {@link EconomyAPI} for callers outside the server thread,
+ * such as web handlers, Discord bridges or virtual threads.
+ * <p>
+ * All methods may be called from any thread at any time. Calls made before the server
+ * has started are queued and complete once it is ready instead of failing. When the
+ * {@code balances.concurrent} option is enabled, calls are served directly on the
+ * calling thread; otherwise they are run in bulk on the server thread at the end of the
+ * next tick.
+ * <p>
+ * Non-async dependent stages (e.g. {@code thenAccept}) may run on the server thread,
+ * so use the {@code *Async} variants for slow follow-up work.
+ */
+public class AsyncEconomyAPI {
+
+    /**
+     * Retrieves the balance of a player.
+     *
+     * @param playerId The UUID of the player.
+     * @return A future completed with the player's current balance.
+     */
+    public static CompletableFuture<Double> getBalance(UUID playerId) {
+        return RSEconomy.getTaskQueue().submit(manager -> manager.getBalance(playerId));
+    }
+
+    /**
+     * Retrieves the balance of a player in minor units.
+     *
+     * @param playerId The UUID of the player.
+     * @return A future completed with the player's current balance in minor units.
+     */
+    public static CompletableFuture<Long> getBalanceMinor(UUID playerId) {
+        return RSEconomy.getTaskQueue().submit(manager -> manager.getBalanceMinor(playerId));
+    }
+
+    /**
+     * Adds an amount to a player's balance.
+     *
+     * @param playerId The UUID of the player.
+     * @param amount   The amount to add.
+     * @return A future completed once the amount has been added.
+     */
+    public static CompletableFuture<Void> addBalance(UUID playerId, double amount) {
+        return RSEconomy.getTaskQueue().submit(manager -> {
+            manager.addBalance(playerId, amount);
+            return null;
+        });
+    }
+
+    /**
+     * Adds an amount of minor units to a player's balance.
+     *
+     * @param playerId The UUID of the player.
+     * @param amount   The amount to add in minor units.
+     * @return A future completed once the amount has been added.
+     */
+    public static CompletableFuture<Void> addBalanceMinor(UUID playerId, long amount) {
+        return RSEconomy.getTaskQueue().submit(manager -> {
+            manager.addBalanceMinor(playerId, amount);
+            return null;
+        });
+    }
+
+    /**
+     * Subtracts an amount from a player's balance if sufficient funds are available.
+     *
+     * @param playerId The UUID of the player.
+     * @param amount   The amount to subtract.
+     * @return A future completed with true if the subtraction was successful, false if insufficient funds.
+     */
+    public static CompletableFuture<Boolean> subtractBalance(UUID playerId, double amount) {
+        return RSEconomy.getTaskQueue().submit(manager -> manager.subtractBalance(playerId, amount));
+    }
+
+    /**
+     * Subtracts an amount of minor units from a player's balance if sufficient funds are available.
+     *
+     * @param playerId The UUID of the player.
+     * @param amount   The amount to subtract in minor units.
+     * @return A future completed with true if the subtraction was successful, false if insufficient funds.
+     */
+    public static CompletableFuture<Boolean> subtractBalanceMinor(UUID playerId, long amount) {
+        return RSEconomy.getTaskQueue().submit(manager -> manager.subtractBalanceMinor(playerId, amount));
+    }
+
+    /**
+     * Transfers an amount from one player to another as one atomic operation.
+     *
+     * @param fromId The UUID of the sending player.
+     * @param toId   The UUID of the receiving player.
+     * @param amount The amount to transfer.
+     * @return A future completed with true if the transfer was successful, false if insufficient funds.
+     */
+    public static CompletableFuture<Boolean> transfer(UUID fromId, UUID toId, double amount) {
+        return RSEconomy.getTaskQueue().submit(manager -> manager.transfer(fromId, toId, amount));
+    }
+
+    /**
+     * Transfers an amount of minor units from one player to another as one atomic operation.
+     *
+     * @param fromId The UUID of the sending player.
+     * @param toId   The UUID of the receiving player.
+     * @param amount The amount to transfer in minor units.
+     * @return A future completed with true if the transfer was successful, false if insufficient funds.
+     */
+    public static CompletableFuture<Boolean> transferMinor(UUID fromId, UUID toId, long amount) {
+        return RSEconomy.getTaskQueue().submit(manager -> manager.transferMinor(fromId, toId, amount));
+    }
+
+    /**
+     * Applies a batch of balance changes as one atomic operation.
+     * The batch is copied, so it may be reused as soon as this method returns.
+     *
+     * @param batch The batch to apply.
+     * @return A future completed with true if all changes were applied, false if a debit was not covered.
+     */
+    public static CompletableFuture<Boolean> applyBatch(EconomyBatch batch) {
+        EconomyBatch copy = batch.copy();
+        return RSEconomy.getTaskQueue().submit(manager ->
+                manager.applyBatch(copy.most(), copy.least(), copy.deltas(), copy.size()));
+    }
+}
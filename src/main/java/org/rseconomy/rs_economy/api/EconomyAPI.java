@@ -6,7 +6,11 @@
  */
 package org.rseconomy.rs_economy.api;
 
+import org.rseconomy.rs_economy.BalanceHistogram;
+import org.rseconomy.rs_economy.Localization;
+import org.rseconomy.rs_economy.Money;
 import org.rseconomy.rs_economy.RSEconomy;
+import org.rseconomy.rs_economy.RankingSnapshot;
 
 import java.util.UUID;
 
@@ -14,6 +18,10 @@ import java.util.UUID;
  * Provides an API for interacting with the RSEconomy mod's economy system.
  * This class allows external mods to manage player balances.
  * <p>
+ * Balances are stored as a whole number of minor units (see {@link #getCurrencyScale()}).
+ * The {@code *Minor} methods work on those units directly and are exact; the double
+ * methods convert to and from them, rounding to the nearest minor unit.
+ * <p>
  * Note: This API should only be used after the server has started.
  * Using it before initialization will result in a NullPointerException.
  */
@@ -60,4 +68,272 @@ public class EconomyAPI {
         var balanceManager = instance.getBalanceManager();
         return balanceManager != null && balanceManager.subtractBalance(playerId, amount);
     }
-}
\ No newline at end of file
+
+    /**
+     * Transfers an amount from one player to another if the sender has sufficient funds.
+     * The debit and the credit happen as one atomic operation, so the money is never
+     * missing from or present in both accounts, even when called from several threads.
+     *
+     * @param fromId The UUID of the sending player.
+     * @param toId   The UUID of the receiving player.
+     * @param amount The amount to transfer.
+     * @return True if the transfer was successful, false if insufficient funds, a negative amount or balance manager not initialized.
+     */
+    public static boolean transfer(UUID fromId, UUID toId, double amount) {
+        var instance = RSEconomy.getInstance();
+        if (instance == null) return false;
+        var balanceManager = instance.getBalanceManager();
+        return balanceManager != null && balanceManager.transfer(fromId, toId, amount);
+    }
+
+    /**
+     * Applies a batch of balance changes as one atomic operation.
+     * If any player's net change is a debit their balance does not cover, nothing is applied.
+     *
+     * @param batch The batch to apply.
+     * @return True if all changes were applied, false if a debit was not covered or balance manager not initialized.
+     * @see EconomyBatch
+     */
+    public static boolean applyBatch(EconomyBatch batch) {
+        var instance = RSEconomy.getInstance();
+        if (instance == null) return false;
+        var balanceManager = instance.getBalanceManager();
+        return balanceManager != null
+                && balanceManager.applyBatch(batch.most(), batch.least(), batch.deltas(), batch.size());
+    }
+
+    /**
+     * Gets the number of decimal places balances are stored with.
+     * One major unit equals 10^scale minor units.
+     *
+     * @return The currency scale.
+     */
+    public static int getCurrencyScale() {
+        return Money.getScale();
+    }
+
+    /**
+     * Retrieves the balance of a player in minor units.
+     *
+     * @param playerId The UUID of the player.
+     * @return The player's current balance in minor units, or 0 if the balance manager is not initialized.
+     */
+    public static long getBalanceMinor(UUID playerId) {
+        var instance = RSEconomy.getInstance();
+        if (instance == null) return 0L;
+        var balanceManager = instance.getBalanceManager();
+        return balanceManager != null ? balanceManager.getBalanceMinor(playerId) : 0L;
+    }
+
+    /**
+     * Adds an amount of minor units to a player's balance.
+     *
+     * @param playerId The UUID of the player.
+     * @param amount   The amount to add in minor units.
+     * @throws NullPointerException if the balance manager is not initialized (server not started).
+     */
+    public static void addBalanceMinor(UUID playerId, long amount) {
+        var balanceManager = RSEconomy.getInstance().getBalanceManager();
+        if (balanceManager != null) {
+            balanceManager.addBalanceMinor(playerId, amount);
+        }
+    }
+
+    /**
+     * Subtracts an amount of minor units from a player's balance if sufficient funds are available.
+     *
+     * @param playerId The UUID of the player.
+     * @param amount   The amount to subtract in minor units.
+     * @return True if the subtraction was successful, false if insufficient funds or balance manager not initialized.
+     */
+    public static boolean subtractBalanceMinor(UUID playerId, long amount) {
+        var instance = RSEconomy.getInstance();
+        if (instance == null) return false;
+        var balanceManager = instance.getBalanceManager();
+        return balanceManager != null && balanceManager.subtractBalanceMinor(playerId, amount);
+    }
+
+    /**
+     * Transfers an amount of minor units from one player to another if the sender has sufficient funds.
+     * The debit and the credit happen as one atomic operation.
+     *
+     * @param fromId The UUID of the sending player.
+     * @param toId   The UUID of the receiving player.
+     * @param amount The amount to transfer in minor units.
+     * @return True if the transfer was successful, false if insufficient funds, a negative amount or balance manager not initialized.
+     */
+    public static boolean transferMinor(UUID fromId, UUID toId, long amount) {
+        var instance = RSEconomy.getInstance();
+        if (instance == null) return false;
+        var balanceManager = instance.getBalanceManager();
+        return balanceManager != null && balanceManager.transferMinor(fromId, toId, amount);
+    }
+
+    /**
+     * Retrieves a player's savings, including all interest earned so far.
+     *
+     * @param playerId The UUID of the player.
+     * @return The savings in minor units, or 0 if the server has not started.
+     */
+    public static long getSavingsMinor(UUID playerId) {
+        var instance = RSEconomy.getInstance();
+        if (instance == null) return 0L;
+        var savingsLedger = instance.getSavingsLedger();
+        return savingsLedger != null ? savingsLedger.getSavingsMinor(playerId) : 0L;
+    }
+
+    /**
+     * Moves an amount from a player's balance into their savings.
+     *
+     * @param playerId The UUID of the player.
+     * @param amount   The amount in minor units.
+     * @return True if moved, false if the balance does not cover it or the server has not started.
+     */
+    public static boolean depositSavingsMinor(UUID playerId, long amount) {
+        var instance = RSEconomy.getInstance();
+        if (instance == null) return false;
+        var savingsLedger = instance.getSavingsLedger();
+        return savingsLedger != null && savingsLedger.deposit(playerId, amount);
+    }
+
+    /**
+     * Moves an amount from a player's savings into their balance.
+     *
+     * @param playerId The UUID of the player.
+     * @param amount   The amount in minor units.
+     * @return True if moved, false if the savings do not cover it or the server has not started.
+     */
+    public static boolean withdrawSavingsMinor(UUID playerId, long amount) {
+        var instance = RSEconomy.getInstance();
+        if (instance == null) return false;
+        var savingsLedger = instance.getSavingsLedger();
+        return savingsLedger != null && savingsLedger.withdraw(playerId, amount);
+    }
+
+    /**
+     * Estimates the share of accounts that have a lower balance than the given player.
+     * The estimate is within about 1% of the player's balance and needs no sorting.
+     *
+     * @param playerId The UUID of the player.
+     * @return The percentile from 0 to 100, or 0.0 if the balance manager is not initialized.
+     */
+    public static double getPercentile(UUID playerId) {
+        var instance = RSEconomy.getInstance();
+        if (instance == null) return 0.0;
+        var balanceManager = instance.getBalanceManager();
+        return balanceManager != null ? balanceManager.getPercentile(playerId) : 0.0;
+    }
+
+    /**
+     * Estimates the balance in minor units below which the given share of accounts lies.
+     *
+     * @param quantile The share from 0 to 1, e.g. 0.5 for the median balance.
+     * @return The estimated balance in minor units, or 0 if the balance manager is not initialized.
+     */
+    public static long getBalanceQuantileMinor(double quantile) {
+        var instance = RSEconomy.getInstance();
+        if (instance == null) return 0L;
+        var balanceManager = instance.getBalanceManager();
+        return balanceManager != null ? balanceManager.getDistribution().quantile(quantile) : 0L;
+    }
+
+    /**
+     * Visits the buckets of the balance histogram in ascending order of balance. Bucket
+     * bounds are in minor units and grow by about 2% per bucket; empty buckets are skipped.
+     *
+     * @param consumer Receives the bounds and account count of each bucket.
+     */
+    public static void forEachBalanceBucket(BalanceHistogram.BucketConsumer consumer) {
+        var instance = RSEconomy.getInstance();
+        if (instance == null) return;
+        var balanceManager = instance.getBalanceManager();
+        if (balanceManager != null) {
+            balanceManager.getDistribution().forEachBucket(consumer);
+        }
+    }
+
+    /**
+     * Gets the richest accounts. The result is a view of the shared ranking snapshot,
+     * which may be up to about a second behind the live ranking; nothing is copied, so
+     * this is cheap enough to call every tick.
+     *
+     * @param limit The maximum number of accounts.
+     * @return The top accounts in rank order, or null if the balance manager is not initialized.
+     */
+    public static RankingSnapshot.View getTop(int limit) {
+        return getPage(0, limit);
+    }
+
+    /**
+     * Gets a range of ranks. The result is a view of the shared ranking snapshot, which
+     * may be up to about a second behind the live ranking; nothing is copied.
+     *
+     * @param offset The 0-based rank to start at.
+     * @param limit  The maximum number of accounts.
+     * @return The accounts in rank order, empty if offset is past the last rank, or null if the balance manager is not initialized.
+     */
+    public static RankingSnapshot.View getPage(int offset, int limit) {
+        var instance = RSEconomy.getInstance();
+        if (instance == null) return null;
+        var balanceManager = instance.getBalanceManager();
+        return balanceManager != null ? balanceManager.getRanking().latestSnapshot().view(offset, limit) : null;
+    }
+
+    /**
+     * Gets the shared ranking snapshot, for callers that combine several queries and
+     * need them to agree with each other. It may be up to about a second behind the live ranking.
+     *
+     * @return The snapshot, or null if the balance manager is not initialized.
+     */
+    public static RankingSnapshot getRankingSnapshot() {
+        var instance = RSEconomy.getInstance();
+        if (instance == null) return null;
+        var balanceManager = instance.getBalanceManager();
+        return balanceManager != null ? balanceManager.getRanking().latestSnapshot() : null;
+    }
+
+    /**
+     * Gets the current rank of a player, where 1 is the highest balance.
+     *
+     * @param playerId The UUID of the player.
+     * @return The 1-based rank, or -1 if the player has no account or the balance manager is not initialized.
+     */
+    public static int getRank(UUID playerId) {
+        var instance = RSEconomy.getInstance();
+        if (instance == null) return -1;
+        var balanceManager = instance.getBalanceManager();
+        return balanceManager != null ? balanceManager.getRanking().rankOf(playerId) : -1;
+    }
+
+    /**
+     * Gets the number of accounts in the ranking.
+     *
+     * @return The account count, or 0 if the balance manager is not initialized.
+     */
+    public static int getAccountCount() {
+        var instance = RSEconomy.getInstance();
+        if (instance == null) return 0;
+        var balanceManager = instance.getBalanceManager();
+        return balanceManager != null ? balanceManager.getRanking().size() : 0;
+    }
+
+    /**
+     * Formats an amount the way RSEconomy shows balances, with grouping and no trailing zeros, e.g. 1,234.5.
+     *
+     * @param minor The amount in minor units.
+     * @return The formatted amount, without currency name.
+     */
+    public static String formatAmount(long minor) {
+        return Localization.formatAmount(minor);
+    }
+
+    /**
+     * Formats an amount in a short form for scoreboards and similar, e.g. 1.2M.
+     *
+     * @param minor The amount in minor units.
+     * @return The formatted amount, without currency name.
+     */
+    public static String formatAmountCompact(long minor) {
+        return Localization.formatCompact(minor);
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2025 Rosti Studios. All rights reserved.
+ * Licensed under the Rosti Studios Minecraft Mod License (RSMML).
+ * For more information, see the LICENSE file in the project root
+ * or contact us via Discord: https://dsc.gg/rosti-studios
+ */
+package org.rseconomy.rs_economy.api;
+
+import org.rseconomy.rs_economy.Money;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Collects balance changes for many players and applies them as one atomic operation.
+ * <p>
+ * Example:
+ * <pre>{@code
+ * boolean applied = EconomyBatch.create()
+ *         .add(winner, 500)
+ *         .add(runnerUp, 250)
+ *         .subtract(host, 750)
+ *         .apply();
+ * }</pre>
+ * Changes to the same player are summed. If any player's net change is a debit their
+ * balance does not cover, nothing is applied. A batch can be applied again after more
+ * changes are added, or reused after {@link #clear()}.
+ */
+public final class EconomyBatch {
+    private long[] most;
+    private long[] least;
+    private long[] deltas;
+    private int size;
+
+    private EconomyBatch(int expectedSize) {
+        int capacity = Math.max(8, expectedSize);
+        this.most = new long[capacity];
+        this.least = new long[capacity];
+        this.deltas = new long[capacity];
+    }
+
+    /**
+     * Creates an empty batch.
+     *
+     * @return The new batch.
+     */
+    public static EconomyBatch create() {
+        return new EconomyBatch(16);
+    }
+
+    /**
+     * Creates an empty batch sized for the given number of changes.
+     *
+     * @param expectedSize The number of changes the batch should hold without growing.
+     * @return The new batch.
+     */
+    public static EconomyBatch create(int expectedSize) {
+        return new EconomyBatch(expectedSize);
+    }
+
+    /**
+     * Adds an amount to a player's balance when the batch is applied.
+     *
+     * @param playerId The UUID of the player.
+     * @param amount   The amount to add.
+     * @return This batch.
+     */
+    public EconomyBatch add(UUID playerId, double amount) {
+        return addMinor(playerId, Money.toMinor(amount));
+    }
+
+    /**
+     * Subtracts an amount from a player's balance when the batch is applied.
+     *
+     * @param playerId The UUID of the player.
+     * @param amount   The amount to subtract; not negative.
+     * @return This batch.
+     * @throws IllegalArgumentException If the amount is negative.
+     */
+    public EconomyBatch subtract(UUID playerId, double amount) {
+        return subtractMinor(playerId, Money.toMinor(amount));
+    }
+
+    /**
+     * Adds an amount of minor units to a player's balance when the batch is applied.
+     *
+     * @param playerId The UUID of the player.
+     * @param amount   The signed amount to add in minor units.
+     * @return This batch.
+     */
+    public EconomyBatch addMinor(UUID playerId, long amount) {
+        if (size == deltas.length) {
+            int capacity = size << 1;
+            most = Arrays.copyOf(most, capacity);
+            least = Arrays.copyOf(least, capacity);
+            deltas = Arrays.copyOf(deltas, capacity);
+        }
+        most[size] = playerId.getMostSignificantBits();
+        least[size] = playerId.getLeastSignificantBits();
+        deltas[size] = amount;
+        size++;
+        return this;
+    }
+
+    /**
+     * Subtracts an amount of minor units from a player's balance when the batch is applied.
+     *
+     * @param playerId The UUID of the player.
+     * @param amount   The amount to subtract in minor units; not negative.
+     * @return This batch.
+     * @throws IllegalArgumentException If the amount is negative.
+     */
+    public EconomyBatch subtractMinor(UUID playerId, long amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Amount to subtract must not be negative: " + amount);
+        }
+        return addMinor(playerId, -amount);
+    }
+
+    /**
+     * Gets the number of changes in this batch.
+     *
+     * @return The number of changes.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all changes from this batch.
+     *
+     * @return This batch.
+     */
+    public EconomyBatch clear() {
+        size = 0;
+        return this;
+    }
+
+    /**
+     * Applies this batch. Equivalent to {@link EconomyAPI#applyBatch(EconomyBatch)}.
+     *
+     * @return True if all changes were applied, false if a debit was not covered or the balance manager is not initialized.
+     */
+    public boolean apply() {
+        return EconomyAPI.applyBatch(this);
+    }
+
+    EconomyBatch copy() {
+        EconomyBatch copy = new EconomyBatch(size);
+        System.arraycopy(most, 0, copy.most, 0, size);
+        System.arraycopy(least, 0, copy.least, 0, size);
+        System.arraycopy(deltas, 0, copy.deltas, 0, size);
+        copy.size = size;
+        return copy;
+    }
+
+    long[] most() {
+        return most;
+    }
+
+    long[] least() {
+        return least;
+    }
+
+    long[] deltas() {
+        return deltas;
+    }
+}
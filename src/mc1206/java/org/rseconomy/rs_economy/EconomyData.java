@@ -8,21 +8,30 @@ package org.rseconomy.rs_economy;
 
 import net.minecraft.core.HolderLookup;
 import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.Tag;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.world.level.saveddata.SavedData;
 
 import java.time.LocalDate;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Version-specific implementation for Minecraft 1.20.6
  * Uses older APIs compatible with this version.
  */
 public class EconomyData extends SavedData {
-    private final Map<UUID, Double> balances = new HashMap<>();
-    private final Map<UUID, LocalDate> dailyRewards = new HashMap<>();
+    private final ConcurrentAccountTable balances = new ConcurrentAccountTable(BalanceManager.lockStripes(), null);
+    // Epoch day of each player's last daily reward claim
+    private final ConcurrentAccountTable dailyRewards = new ConcurrentAccountTable(BalanceManager.lockStripes(), null);
+    // Savings and the interest period each account's savings are up to date for
+    private final SavingsTable savings = new SavingsTable(BalanceManager.lockStripes());
+    private volatile TransactionJournal journal;
+    private long journalSequence;
+    // Counts changes so a save that raced with one can be detected; see hasUnsavedChanges()
+    private final AtomicLong changeCount = new AtomicLong();
+    private volatile long savedChangeCount;
+    private volatile boolean savedExternally;
 
     public static EconomyData create() {
         return new EconomyData();
@@ -30,14 +39,60 @@ public class EconomyData extends SavedData {
 
     public static EconomyData load(CompoundTag tag, HolderLookup.Provider provider) {
         EconomyData data = new EconomyData();
+        data.journalSequence = tag.getLong("journalSequence");
 
-        // Load balances - 1.20.6 compatible
+        int scale = tag.contains("scale") ? tag.getInt("scale") : Money.getScale();
+        if (tag.getInt("version") >= 2) {
+            loadColumns(data, tag, scale);
+        } else {
+            loadLegacy(data, tag, scale);
+        }
+
+        return data;
+    }
+
+    private static void loadColumns(EconomyData data, CompoundTag tag, int scale) {
+        CompoundTag balancesTag = tag.getCompound("balances");
+        long[] most = balancesTag.getLongArray("most");
+        long[] least = balancesTag.getLongArray("least");
+        long[] amounts = balancesTag.getLongArray("amounts");
+        int count = Math.min(most.length, Math.min(least.length, amounts.length));
+        for (int i = 0; i < count; i++) {
+            data.balances.put(most[i], least[i], Money.rescale(amounts[i], scale));
+        }
+
+        CompoundTag rewardsTag = tag.getCompound("dailyRewards");
+        long[] rewardMost = rewardsTag.getLongArray("most");
+        long[] rewardLeast = rewardsTag.getLongArray("least");
+        int[] rewardDays = rewardsTag.getIntArray("days");
+        int rewardCount = Math.min(rewardMost.length, Math.min(rewardLeast.length, rewardDays.length));
+        for (int i = 0; i < rewardCount; i++) {
+            data.dailyRewards.put(rewardMost[i], rewardLeast[i], rewardDays[i]);
+        }
+
+        CompoundTag savingsTag = tag.getCompound("savings");
+        long[] savingsMost = savingsTag.getLongArray("most");
+        long[] savingsLeast = savingsTag.getLongArray("least");
+        long[] savingsAmounts = savingsTag.getLongArray("amounts");
+        int[] savingsPeriods = savingsTag.getIntArray("periods");
+        int savingsCount = Math.min(Math.min(savingsMost.length, savingsLeast.length),
+                Math.min(savingsAmounts.length, savingsPeriods.length));
+        for (int i = 0; i < savingsCount; i++) {
+            data.savings.put(savingsMost[i], savingsLeast[i], Money.rescale(savingsAmounts[i], scale), savingsPeriods[i]);
+        }
+    }
+
+    private static void loadLegacy(EconomyData data, CompoundTag tag, int scale) {
+        // Balances are keyed by UUID string - 1.20.6 compatible
         if (tag.contains("balances")) {
             CompoundTag balancesTag = tag.getCompound("balances");
             for (String key : balancesTag.getAllKeys()) {
                 try {
                     UUID uuid = UUID.fromString(key);
-                    double amount = balancesTag.getDouble(key);
+                    // Balances written before fixed-point storage are doubles in major units
+                    long amount = balancesTag.getTagType(key) == Tag.TAG_DOUBLE
+                            ? Money.toMinor(balancesTag.getDouble(key))
+                            : Money.rescale(balancesTag.getLong(key), scale);
                     data.balances.put(uuid, amount);
                 } catch (IllegalArgumentException e) {
                     // Skip invalid UUID entries
@@ -45,7 +100,7 @@ public class EconomyData extends SavedData {
             }
         }
 
-        // Load daily rewards - 1.20.6 compatible
+        // Daily rewards are ISO dates keyed by UUID string - 1.20.6 compatible
         if (tag.contains("dailyRewards")) {
             CompoundTag rewardsTag = tag.getCompound("dailyRewards");
             for (String key : rewardsTag.getAllKeys()) {
@@ -53,61 +108,202 @@ public class EconomyData extends SavedData {
                     UUID uuid = UUID.fromString(key);
                     String dateStr = rewardsTag.getString(key);
                     if (dateStr != null && !dateStr.isEmpty()) {
-                        LocalDate date = LocalDate.parse(dateStr);
-                        data.dailyRewards.put(uuid, date);
+                        data.dailyRewards.put(uuid, LocalDate.parse(dateStr).toEpochDay());
                     }
                 } catch (IllegalArgumentException e) {
                     // Skip invalid UUID entries
                 }
             }
         }
-
-        return data;
     }
 
     @Override
     public CompoundTag save(CompoundTag tag, HolderLookup.Provider provider) {
-        CompoundTag balancesTag = new CompoundTag();
-        balances.forEach((uuid, amount) -> balancesTag.putDouble(uuid.toString(), amount));
-        tag.put("balances", balancesTag);
+        return snapshot().write(tag);
+    }
+
+    // Copies the data for saving; the journal position is taken before any balance is read,
+    // so replaying from it over this snapshot is complete
+    public EconomySnapshot snapshot() {
+        savedChangeCount = changeCount.get();
+        TransactionJournal current = journal;
+        if (current != null) {
+            journalSequence = current.nextSequence();
+        }
+        long[][] columns = balances.toColumns();
+
+        long[][] rewardColumns = dailyRewards.toColumns();
+        int[] rewardDays = new int[rewardColumns[2].length];
+        for (int i = 0; i < rewardDays.length; i++) {
+            rewardDays[i] = (int) rewardColumns[2][i];
+        }
 
-        CompoundTag rewardsTag = new CompoundTag();
-        dailyRewards.forEach((uuid, date) -> rewardsTag.putString(uuid.toString(), date.toString()));
-        tag.put("dailyRewards", rewardsTag);
+        long[][] savingsColumns = savings.toColumns();
+        int[] periods = new int[savingsColumns[3].length];
+        for (int i = 0; i < periods.length; i++) {
+            periods[i] = (int) savingsColumns[3][i];
+        }
+        return new EconomySnapshot(journalSequence, Money.getScale(), columns[0], columns[1], columns[2],
+                rewardColumns[0], rewardColumns[1], rewardDays,
+                savingsColumns[0], savingsColumns[1], savingsColumns[2], periods);
+    }
 
-        return tag;
+    // While saved externally, vanilla never sees this data as dirty and leaves writing it to AsyncEconomySaver
+    @Override
+    public boolean isDirty() {
+        return !savedExternally && super.isDirty();
+    }
+
+    public void setSavedExternally(boolean savedExternally) {
+        this.savedExternally = savedExternally;
+    }
+
+    public boolean needsSave() {
+        return super.isDirty() || hasUnsavedChanges();
     }
 
     public static EconomyData get(ServerLevel level) {
+        return get(level, "rs_economy");
+    }
+
+    public static EconomyData get(ServerLevel level, String name) {
         return level.getDataStorage().computeIfAbsent(
                 new SavedData.Factory<>(EconomyData::create, EconomyData::load),
-                "rs_economy"
+                name
         );
     }
 
     public void setBalance(UUID uuid, double amount) {
+        setBalanceMinor(uuid, Money.toMinor(amount));
+    }
+
+    public void setBalanceMinor(UUID uuid, long amount) {
         balances.put(uuid, amount);
+        changeCount.incrementAndGet();
+        TransactionJournal current = journal;
+        if (current != null) {
+            current.logBalance(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), amount);
+        }
         setDirty();
     }
 
+    // Does not mark the data dirty; callers batching several updates call setDirty() once
+    public void putBalanceMinor(long most, long least, long amount) {
+        balances.put(most, least, amount);
+        changeCount.incrementAndGet();
+        TransactionJournal current = journal;
+        if (current != null) {
+            current.logBalance(most, least, amount);
+        }
+    }
+
     public double getBalance(UUID uuid) {
-        return balances.getOrDefault(uuid, 0.0);
+        return Money.toMajor(getBalanceMinor(uuid));
+    }
+
+    public long getBalanceMinor(UUID uuid) {
+        return balances.get(uuid, 0L);
     }
 
-    public void setDailyReward(UUID uuid, LocalDate date) {
-        dailyRewards.put(uuid, date);
+    public long getBalanceMinor(long most, long least) {
+        return balances.get(most, least, 0L);
+    }
+
+    public boolean hasBalance(long most, long least) {
+        return balances.containsKey(most, least);
+    }
+
+    public void setDailyRewardDay(long most, long least, int epochDay) {
+        dailyRewards.put(most, least, epochDay);
+        changeCount.incrementAndGet();
+        TransactionJournal current = journal;
+        if (current != null) {
+            current.logDailyReward(most, least, epochDay);
+        }
+        setDirty();
+    }
+
+    // Returns EconomyStorage.NO_CLAIM if the player never claimed
+    public int getDailyRewardDay(long most, long least) {
+        return (int) dailyRewards.get(most, least, EconomyStorage.NO_CLAIM);
+    }
+
+    // Called under the account's savings lock, which keeps journal records in the order of the changes
+    public void putSavings(long most, long least, long amount, int period) {
+        savings.put(most, least, amount, period);
+        changeCount.incrementAndGet();
+        TransactionJournal current = journal;
+        if (current != null) {
+            current.logSavings(most, least, amount, period);
+        }
         setDirty();
     }
 
-    public LocalDate getDailyReward(UUID uuid) {
-        return dailyRewards.get(uuid);
+    // Called under the account's balance and savings locks; logged as one unit so a replay keeps both or neither
+    public void putBalanceAndSavings(long most, long least, long balance, long amount, int period) {
+        balances.put(most, least, balance);
+        savings.put(most, least, amount, period);
+        changeCount.incrementAndGet();
+        TransactionJournal current = journal;
+        if (current != null) {
+            current.logBalanceAndSavings(most, least, balance, amount, period);
+        }
+        setDirty();
     }
 
-    public Map<UUID, Double> getBalances() {
-        return new HashMap<>(balances);
+    public long getSavingsMinor(long most, long least) {
+        return savings.getAmount(most, least);
     }
 
-    public Map<UUID, LocalDate> getDailyRewards() {
-        return new HashMap<>(dailyRewards);
+    // Returns EconomyStorage.NO_SAVINGS if the player never had savings
+    public int getSavingsPeriod(long most, long least) {
+        return savings.getPeriod(most, least);
+    }
+
+    public boolean hasSavings(long most, long least) {
+        return savings.containsKey(most, least);
+    }
+
+    public void forEachSavings(AccountTable.EntryConsumer consumer) {
+        savings.forEach(consumer);
+    }
+
+    public void forEachDailyReward(AccountTable.EntryConsumer consumer) {
+        dailyRewards.forEach(consumer);
+    }
+
+    public void forEachBalance(AccountTable.EntryConsumer consumer) {
+        balances.forEach(consumer);
+    }
+
+    // Changes made after this call are appended to the journal
+    public void setJournal(TransactionJournal journal) {
+        this.journal = journal;
+    }
+
+    public long getJournalSequence() {
+        return journalSequence;
+    }
+
+    public void setJournalSequence(long journalSequence) {
+        this.journalSequence = journalSequence;
+        setDirty();
+    }
+
+    // True if a change was made after the last save started, even if that save cleared the dirty flag
+    public boolean hasUnsavedChanges() {
+        return changeCount.get() != savedChangeCount;
+    }
+
+    public boolean isEmpty() {
+        return balances.size() == 0 && dailyRewards.size() == 0 && savings.size() == 0;
+    }
+
+    public void clear() {
+        balances.clear();
+        dailyRewards.clear();
+        savings.clear();
+        changeCount.incrementAndGet();
+        setDirty();
     }
 }
\ No newline at end of file
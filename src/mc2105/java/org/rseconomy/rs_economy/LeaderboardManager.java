@@ -14,34 +14,43 @@ import java.util.*;
 /**
  * Version-specific implementation for Minecraft 1.21.5+
  * Uses newer APIs and reflection for private field access.
+ * <p>
+ * Players are ranked by wallet balance only; savings are not included.
  */
 public class LeaderboardManager {
     private final BalanceManager balanceManager;
-    private static final List<Map.Entry<UUID, Double>> cachedRanking = new ArrayList<>();
-    private static long lastCacheTime = 0;
-    private static final long CACHE_DURATION = 30000; // 30 seconds
 
     public LeaderboardManager(BalanceManager balanceManager) {
         this.balanceManager = balanceManager;
     }
 
+    /**
+     * Gets a snapshot of the ranking of all players by balance, with constant-time
+     * rank and balance lookups. This is the shared snapshot published about once a
+     * second, so it may lag the live ranking slightly but never costs a copy.
+     *
+     * @return The ranking snapshot.
+     */
+    public RankingSnapshot getSnapshot() {
+        return balanceManager.getRanking().latestSnapshot();
+    }
+
     /**
      * Gets the sorted ranking of all players by balance.
+     * Copies the current ranking snapshot, which is already in order.
      *
      * @return A list of UUID-balance pairs sorted by balance descending.
+     * @deprecated Allocates an entry per account on every call; use {@link #getSnapshot()},
+     * which is shared and pages without copying.
      */
+    @Deprecated
     public List<Map.Entry<UUID, Double>> getSortedBalances() {
-        long currentTime = System.currentTimeMillis();
-        if (currentTime - lastCacheTime > CACHE_DURATION) {
-            EconomyData data = EconomyData.get(null); // Will be called with proper level in production
-            if (data != null) {
-                cachedRanking.clear();
-                cachedRanking.addAll(data.getBalances().entrySet());
-                cachedRanking.sort((a, b) -> Double.compare(b.getValue(), a.getValue()));
-            }
-            lastCacheTime = currentTime;
+        RankingSnapshot snapshot = getSnapshot();
+        List<Map.Entry<UUID, Double>> sorted = new ArrayList<>(snapshot.size());
+        for (int rank = 1; rank <= snapshot.size(); rank++) {
+            sorted.add(Map.entry(snapshot.playerAt(rank), Money.toMajor(snapshot.balanceAt(rank))));
         }
-        return new ArrayList<>(cachedRanking);
+        return sorted;
     }
 
     /**
@@ -51,9 +60,8 @@ public class LeaderboardManager {
      * @param page   The page number (1-based).
      */
     public void openLeaderboard(ServerPlayer player, int page) {
-        List<Map.Entry<UUID, Double>> ranking = getSortedBalances();
         MinecraftServer server = getServer(player);
-        LeaderboardMenuProvider.open(player, server, ranking, page);
+        LeaderboardMenuProvider.open(player, server, balanceManager, page);
     }
 
     // 1.21.5+ compatible server access